@@ -0,0 +1,41 @@
+package com.laioffer.backend.benchmark;
+
+import com.laioffer.backend.security.JwtHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class JwtHandlerBenchmark {
+
+    private JwtHandler jwtHandler;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        jwtHandler = new JwtHandler(Base64.getEncoder().encodeToString(secret));
+        token = jwtHandler.generateToken("benchmark-user");
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return jwtHandler.generateToken("benchmark-user");
+    }
+
+    @Benchmark
+    public String parseUsername() {
+        return jwtHandler.parseUsername(token);
+    }
+}
@@ -0,0 +1,91 @@
+package com.laioffer.backend.benchmark;
+
+import com.laioffer.backend.search.TrigramIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Typeahead over a million generated POI names; sampled so the report has p99 (target: under 5 ms).
+// Queries are prefixes of the indexed words, from one letter up, with and without a centre point
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class POITypeaheadBenchmark {
+
+    private static final String[] COMMON = {"cafe", "musee", "hotel", "restaurant", "bistro", "boulangerie",
+            "pont", "place", "rue", "saint", "parc", "jardin", "eglise", "gare", "le", "la", "de", "du"};
+
+    @Param({"1000000"})
+    public int size;
+
+    private TrigramIndex<String> index;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        // Pseudo-words with a skewed frequency, a rough stand-in for real place names
+        String[] vocabulary = new String[60_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 4 + random.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+
+        List<TrigramIndex.Entry<String>> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            StringBuilder name = new StringBuilder();
+            if (random.nextBoolean()) {
+                name.append(COMMON[random.nextInt(COMMON.length)]).append(' ');
+            }
+            int words = 1 + random.nextInt(3);
+            for (int j = 0; j < words; j++) {
+                name.append(pick(vocabulary, random)).append(' ');
+            }
+            String text = name.toString().trim();
+            entries.add(new TrigramIndex.Entry<>(i, text, COMMON[random.nextInt(COMMON.length)],
+                    random.nextDouble() * 140 - 70, random.nextDouble() * 360 - 180, text));
+        }
+        index = TrigramIndex.of(entries);
+
+        queries = new String[1024];
+        for (int i = 0; i < queries.length; i++) {
+            String word = pick(vocabulary, random);
+            queries[i] = word.substring(0, 1 + random.nextInt(word.length()));
+        }
+    }
+
+    @Benchmark
+    public Object search() {
+        return index.search(nextQuery(), 10, Double.NaN, Double.NaN, 5000);
+    }
+
+    @Benchmark
+    public Object searchNear() {
+        return index.search(nextQuery(), 10, 48.8566, 2.3522, 5000);
+    }
+
+    private String nextQuery() {
+        next = (next + 1) & (queries.length - 1);
+        return queries[next];
+    }
+
+    private static String pick(String[] vocabulary, Random random) {
+        return vocabulary[(int) Math.min(vocabulary.length - 1, Math.abs(random.nextGaussian()) * 8000)];
+    }
+}
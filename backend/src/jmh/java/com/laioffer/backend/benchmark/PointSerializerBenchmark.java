@@ -0,0 +1,46 @@
+package com.laioffer.backend.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.laioffer.backend.serialization.PointSerializer;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PointSerializerBenchmark {
+
+    private final PointSerializer serializer = new PointSerializer();
+    private final JsonFactory jsonFactory = new ObjectMapper().getFactory();
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+    private Point point;
+
+    @Setup
+    public void setUp() {
+        point = new GeometryFactory(new PrecisionModel(), 4326).createPoint(new Coordinate(2.2945, 48.8584));
+    }
+
+    @Benchmark
+    public int serialize() throws IOException {
+        out.reset();
+        try (JsonGenerator gen = jsonFactory.createGenerator(out)) {
+            serializer.serialize(point, gen, null);
+        }
+        return out.size();
+    }
+}
@@ -0,0 +1,53 @@
+package com.laioffer.backend.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.laioffer.backend.entity.PointType;
+import com.laioffer.backend.entity.TripPoint;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// A /api/trip-points response and a mapper configured like the application's, shared by the serialisation benchmarks
+final class TripPointFixtures {
+
+    private TripPointFixtures() {
+    }
+
+    static ObjectMapper objectMapper(JsonFactory factory) {
+        return new ObjectMapper(factory)
+                .findAndRegisterModules()
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+
+    // size points spread over a week, every field filled in
+    static List<TripPoint> tripPoints(int size) {
+        GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+        List<TripPoint> points = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            points.add(TripPoint.builder()
+                    .id((long) i)
+                    .name("Point " + i)
+                    .date(LocalDate.of(2025, 5, 1).plusDays(i % 7))
+                    .visitOrder(i / 7 + 1)
+                    .pointType(PointType.VISIT)
+                    .plannedDuration(60)
+                    .plannedTime(LocalTime.of(9, 30))
+                    .location(geometryFactory.createPoint(new Coordinate(2.35 + i * 1e-4, 48.85)))
+                    .locationName("Somewhere in Paris")
+                    .notes("Bring a camera")
+                    .createdAt(LocalDateTime.of(2025, 1, 1, 12, 0))
+                    .build());
+        }
+        return points;
+    }
+}
@@ -0,0 +1,64 @@
+package com.laioffer.backend.benchmark;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.laioffer.backend.entity.TripPoint;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// JSON vs CBOR for a /api/trip-points response: encode and decode time, and the payload size as an auxiliary counter
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TripPointWireFormatBenchmark {
+
+    @Param({"json", "cbor"})
+    public String format;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private ObjectMapper objectMapper;
+    private List<TripPoint> points;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        JsonFactory factory = "cbor".equals(format) ? new CBORFactory() : new JsonFactory();
+        objectMapper = TripPointFixtures.objectMapper(factory);
+        points = TripPointFixtures.tripPoints(size);
+        encoded = objectMapper.writeValueAsBytes(points);
+    }
+
+    // Reported next to the timings of encode as the "bytes" secondary result
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Payload {
+        public long bytes;
+    }
+
+    @Benchmark
+    public byte[] encode(Payload payload) throws Exception {
+        byte[] bytes = objectMapper.writeValueAsBytes(points);
+        payload.bytes = bytes.length;
+        return bytes;
+    }
+
+    // Generic tree decode, as a client without the entity classes would do
+    @Benchmark
+    public Object decode() throws Exception {
+        return objectMapper.readTree(encoded);
+    }
+}
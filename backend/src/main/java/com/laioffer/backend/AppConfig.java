@@ -5,6 +5,9 @@ import com.google.auth.oauth2.ServiceAccountCredentials;
 import com.google.cloud.storage.Storage;
 import com.google.cloud.storage.StorageOptions;
 import com.laioffer.backend.security.JwtAuthenticationFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpStatus;
@@ -28,9 +31,14 @@ import java.io.IOException;
 public class AppConfig {
 
     private final JwtAuthenticationFilter jwtAuthFilter;
+    // -1 when actuator shares the API port
+    private final int managementPort;
 
-    public AppConfig(JwtAuthenticationFilter jwtAuthFilter) {
+    public AppConfig(JwtAuthenticationFilter jwtAuthFilter,
+                     @Value("${server.port:8080}") int serverPort,
+                     @Value("${management.server.port:-1}") int managementPort) {
         this.jwtAuthFilter = jwtAuthFilter;
+        this.managementPort = managementPort > 0 && managementPort != serverPort ? managementPort : -1;
     }
 
     @Bean
@@ -43,6 +51,10 @@ public class AppConfig {
         return new BCryptPasswordEncoder();
     }
 
+    private boolean isManagementRequest(HttpServletRequest request) {
+        return request.getLocalPort() == managementPort && request.getRequestURI().startsWith("/actuator/");
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -50,7 +62,10 @@ public class AppConfig {
                 .csrf(csrf -> csrf.disable())
                 .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
                 .authorizeHttpRequests(auth -> auth
-                        .requestMatchers("/auth/login", "/auth/register").permitAll()  // Only these are permitted without auth
+                        .requestMatchers("/auth/login", "/auth/register", "/auth/availability").permitAll()  // Only these are permitted without auth
+                        .requestMatchers("/actuator/health").permitAll()  // Probes
+                        .requestMatchers(this::isManagementRequest).permitAll()  // Metrics scraper, on the unpublished management port
+                        .requestMatchers("/files/**").permitAll()  // Public images when using local storage
                         .anyRequest().authenticated()  // All other requests require authentication
                 )
                 .exceptionHandling(ex -> ex
@@ -87,6 +102,7 @@ public class AppConfig {
 
 
     @Bean
+    @ConditionalOnProperty(name = "travelplanner.storage.type", havingValue = "gcs", matchIfMissing = true)
     public Storage storage() throws IOException {
         try {
             // 首先尝试从环境变量指定的路径加载凭证
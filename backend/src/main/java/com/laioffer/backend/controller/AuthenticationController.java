@@ -1,9 +1,13 @@
 package com.laioffer.backend.controller;
 
 
+import com.laioffer.backend.security.AuthThrottle;
 import com.laioffer.backend.security.JwtHandler;
+import com.laioffer.backend.security.UserPrincipal;
 import com.laioffer.backend.service.AuthenticationService;
+import com.laioffer.backend.service.UserAvailabilityService;
 import com.laioffer.backend.entity.User;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -18,10 +22,15 @@ public class AuthenticationController {
 
     private final AuthenticationService authenticationService;
     private final JwtHandler jwtHandler;
+    private final AuthThrottle authThrottle;
+    private final UserAvailabilityService userAvailabilityService;
 
-    public AuthenticationController(AuthenticationService authService, JwtHandler jwtHandler) {
+    public AuthenticationController(AuthenticationService authService, JwtHandler jwtHandler, AuthThrottle authThrottle,
+                                    UserAvailabilityService userAvailabilityService) {
         this.authenticationService = authService;
         this.jwtHandler = jwtHandler;
+        this.authThrottle = authThrottle;
+        this.userAvailabilityService = userAvailabilityService;
     }
 
     public static record RegisterRequest(String username, String email, String password) {}
@@ -30,23 +39,44 @@ public class AuthenticationController {
     public static record UpdateInfoRequest(Long id, String username, String email, String password) {}
     public static record UserResponse(Long id, String username, String email, String imageUrl,String token) {}
     public static record UpdatePasswordReqeust(Long id, String oldPassword, String newPassword) {}
+    public static record AvailabilityResponse(Boolean usernameAvailable, Boolean emailAvailable) {}
 
     @PostMapping("/register")
     @ResponseStatus(HttpStatus.CREATED)
     public void register(
-            @RequestBody RegisterRequest body
+            @RequestBody RegisterRequest body,
+            HttpServletRequest request
     ) {
+        authThrottle.check(body.username(), request.getRemoteAddr());
         authenticationService.register(body.username(), body.email(), body.password());
     }
 
     @PostMapping("/login")
-    public LoginResponse login(@RequestBody LoginRequest body) {
+    public LoginResponse login(@RequestBody LoginRequest body, HttpServletRequest request) {
+        authThrottle.check(body.username(), request.getRemoteAddr());
         String token = authenticationService.login(body.username(), body.password());
         return new LoginResponse(token);
     }
 
+    // Advisory check for the signup form; register still enforces uniqueness.
+    // Throttled per IP: unauthenticated, and every answer reveals whether an account exists
+    @GetMapping("/availability")
+    public AvailabilityResponse availability(@RequestParam(value = "username", required = false) String username,
+                                             @RequestParam(value = "email", required = false) String email,
+                                             HttpServletRequest request) {
+        authThrottle.checkLookup(request.getRemoteAddr());
+        return new AvailabilityResponse(
+                username != null ? !userAvailabilityService.isUsernameTaken(username) : null,
+                email != null ? !userAvailabilityService.isEmailTaken(email) : null
+        );
+    }
+
     @GetMapping("/me")
-    public UserResponse getCurrentUser(@AuthenticationPrincipal User user) {
+    public UserResponse getCurrentUser(@AuthenticationPrincipal UserPrincipal principal) {
+        return toResponse(authenticationService.getUser(principal.id()));
+    }
+
+    private UserResponse toResponse(User user) {
         return new UserResponse(user.getId(),
                 user.getUsername(),
                 user.getEmail(),
@@ -56,14 +86,20 @@ public class AuthenticationController {
     }
 
     @PutMapping("/updateInfo")
-    public ResponseEntity<UserResponse> update(@RequestBody UpdateInfoRequest body) {
+    public ResponseEntity<UserResponse> update(@RequestBody UpdateInfoRequest body,
+                                               @AuthenticationPrincipal UserPrincipal principal,
+                                               HttpServletRequest request) {
+        authThrottle.check(principal.getUsername(), request.getRemoteAddr());
         User user = authenticationService.updateInfo(body.id(), body.username(), body.email(), body.password());
-        UserResponse userResponse = getCurrentUser(user);
+        UserResponse userResponse = toResponse(user);
         return ResponseEntity.ok(userResponse);
     }
 
     @PutMapping("/updatePassword")
-    public ResponseEntity<UserResponse> updatePassword(@RequestBody UpdatePasswordReqeust body) {
+    public ResponseEntity<UserResponse> updatePassword(@RequestBody UpdatePasswordReqeust body,
+                                                       @AuthenticationPrincipal UserPrincipal principal,
+                                                       HttpServletRequest request) {
+        authThrottle.check(principal.getUsername(), request.getRemoteAddr());
         User user = authenticationService.updatePassword(body.id(), body.oldPassword(), body.newPassword() );
         UserResponse userResponse = new UserResponse(user.getId(),
                 user.getUsername(),
@@ -77,9 +113,16 @@ public class AuthenticationController {
     @PutMapping("/updateAvatar")
     public ResponseEntity<UserResponse> updateAvatar(@RequestParam("image") MultipartFile image,
                                                      @RequestParam("username") String username) {
-        User user = authenticationService.updateAvatar(username, image);
-        UserResponse userResponse = getCurrentUser(user);
-        return ResponseEntity.ok(userResponse);
+        AuthenticationService.AvatarUpload upload = authenticationService.updateAvatar(username, image);
+        User user = upload.user();
+        UserResponse userResponse = new UserResponse(user.getId(),
+                user.getUsername(),
+                user.getEmail(),
+                upload.pendingUrl(),
+                jwtHandler.generateToken(user.getUsername())
+        );
+        // Thumbnails are produced in the background; imageUrl resolves once they are stored
+        return ResponseEntity.accepted().body(userResponse);
     }
 
 }
@@ -0,0 +1,56 @@
+package com.laioffer.backend.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Strong entity tags built from a resource kind, its id and a version counter.
+// The same version always serializes to the same bytes, which is what a strong tag promises;
+// JSON and CBOR bodies differ, so the negotiated format is part of the tag (responses Vary on Accept).
+final class ETags {
+
+    private ETags() {
+    }
+
+    static String of(String kind, Long id, long version, WebRequest request) {
+        String suffix = prefersCbor(request.getHeader(HttpHeaders.ACCEPT)) ? "-cbor" : "";
+        return "\"" + kind + "-" + id + "-" + version + suffix + "\"";
+    }
+
+    // Mirrors content negotiation for the two formats we produce: highest quality first, then the more
+    // specific type, then Accept order; a wildcard resolves to JSON
+    static boolean prefersCbor(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        List<MediaType> types;
+        try {
+            types = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        types.sort(Comparator.comparingDouble(MediaType::getQualityValue).reversed()
+                .thenComparing(ETags::wildcards));
+        for (MediaType type : types) {
+            if (type.getQualityValue() == 0) {
+                break;
+            }
+            if (type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR)) {
+                return true;
+            }
+            if (type.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int wildcards(MediaType type) {
+        return (type.isWildcardType() ? 1 : 0) + (type.isWildcardSubtype() ? 1 : 0);
+    }
+}
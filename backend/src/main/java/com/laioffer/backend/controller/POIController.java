@@ -0,0 +1,86 @@
+package com.laioffer.backend.controller;
+
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.service.POIService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/pois")
+@RequiredArgsConstructor
+public class POIController {
+
+    private final POIService poiService;
+
+    // Read endpoints below answer in CBOR too when the client asks for application/cbor
+
+    @GetMapping("/{id}")
+    public ResponseEntity<POI> getPOI(@PathVariable Long id) {
+        return ResponseEntity.ok(poiService.getPOIById(id));
+    }
+
+    @GetMapping("/nearby")
+    public ResponseEntity<List<POI>> getNearbyPOIs(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "1000") double radius) {
+        return ResponseEntity.ok(poiService.getNearbyPOIs(lat, lng, radius));
+    }
+
+    // Typeahead over POI names and categories; lat/lng, when both given, favour nearby matches
+    @GetMapping("/search")
+    public ResponseEntity<List<POI>> searchPOIs(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lng) {
+        if (q.isBlank() || q.length() > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "q must be 1 to 100 characters");
+        }
+        if (limit < 1 || limit > 50) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and 50");
+        }
+        return ResponseEntity.ok(poiService.searchPOIs(q, limit, lat, lng));
+    }
+
+    // n closest POIs to a point, with their distance in metres
+    @GetMapping("/nearest")
+    public ResponseEntity<List<POIService.NearestPOI>> getNearestPOIs(
+            @RequestParam double lat,
+            @RequestParam double lng,
+            @RequestParam(defaultValue = "10") int n,
+            @RequestParam(required = false) POIType type,
+            @RequestParam(required = false) String category) {
+        if (n < 1 || n > 100) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "n must be between 1 and 100");
+        }
+        return ResponseEntity.ok(poiService.getNearestPOIs(lat, lng, n, type, category));
+    }
+
+    // Map markers for a viewport: bbox is minLng,minLat,maxLng,maxLat
+    @GetMapping("/clusters")
+    public ResponseEntity<POIService.ClusterResponse> getClusters(
+            @RequestParam double[] bbox,
+            @RequestParam int zoom) {
+        if (bbox.length != 4
+                || bbox[1] < -90 || bbox[3] > 90 || bbox[1] > bbox[3]
+                || bbox[0] < -180 || bbox[0] > 180 || bbox[2] < -180 || bbox[2] > 180) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "bbox must be minLng,minLat,maxLng,maxLat");
+        }
+        if (zoom < 0 || zoom > 30) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "zoom must be between 0 and 30");
+        }
+        return ResponseEntity.ok(poiService.getClusters(bbox[0], bbox[1], bbox[2], bbox[3], zoom));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<POI>> getPOIsByType(@RequestParam POIType type) {
+        return ResponseEntity.ok(poiService.getActivePOIsByType(type));
+    }
+}
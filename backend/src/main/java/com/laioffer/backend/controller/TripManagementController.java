@@ -3,12 +3,19 @@ package com.laioffer.backend.controller;
 import com.laioffer.backend.entity.Trip;
 import com.laioffer.backend.entity.User;
 import com.laioffer.backend.repository.UserRepository;
+import com.laioffer.backend.service.ItineraryService;
+import com.laioffer.backend.service.TripExportService;
 import com.laioffer.backend.service.TripManagementService;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -22,12 +29,19 @@ public class TripManagementController {
 
     private final TripManagementService tripManagementService;
     private final UserRepository userRepository;
+    private final ItineraryService itineraryService;
+    private final TripExportService tripExportService;
 
     public static record CreateRequest(Long userId, String name, String startDate, String endDate, BigDecimal total_Budget, String destination) {}
 
-    public TripManagementController(TripManagementService tripManagementService, UserRepository userRepository) {
+    public TripManagementController(TripManagementService tripManagementService,
+                                    UserRepository userRepository,
+                                    ItineraryService itineraryService,
+                                    TripExportService tripExportService) {
         this.tripManagementService = tripManagementService;
         this.userRepository = userRepository;
+        this.itineraryService = itineraryService;
+        this.tripExportService = tripExportService;
     }
 
     @PostMapping
@@ -58,13 +72,57 @@ public class TripManagementController {
         }
     }
 
+    // Strong ETag from the trip's version; If-None-Match is answered with 304 after a single version lookup
     @GetMapping("/{tripId}")
-    public ResponseEntity<?> getTripById(@PathVariable Long tripId) {
+    public ResponseEntity<?> getTripById(@PathVariable Long tripId, WebRequest request) {
+        Optional<Long> version = tripManagementService.getTripVersion(tripId);
+        if (version.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Trip not found.");
+        }
+        String etag = ETags.of("trip", tripId, version.get(), request);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
         Optional<Trip> tripOptional = tripManagementService.getTripById(tripId);
         if (tripOptional.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Trip not found.");
         }
-        return ResponseEntity.ok(tripOptional.get());
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(tripOptional.get());
+    }
+
+    // Trip, points grouped by day and the stay for each night in one response
+    @GetMapping("/{tripId}/itinerary")
+    public ResponseEntity<?> getItinerary(@PathVariable Long tripId) {
+        Optional<ItineraryService.Itinerary> itinerary = itineraryService.getItinerary(tripId);
+        if (itinerary.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Trip not found.");
+        }
+        return ResponseEntity.ok(itinerary.get());
+    }
+
+    // Trip points as a GeoJSON FeatureCollection or a GPX route per day, streamed to the client
+    @GetMapping("/{tripId}/export")
+    public ResponseEntity<?> exportTrip(@PathVariable Long tripId,
+                                        @RequestParam(defaultValue = "geojson") String format) {
+        TripExportService.Format exportFormat;
+        try {
+            exportFormat = TripExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Format must be geojson or gpx.");
+        }
+        if (tripManagementService.getTripById(tripId).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Trip not found.");
+        }
+
+        StreamingResponseBody body = out -> tripExportService.export(tripId, exportFormat, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("trip-" + tripId + "." + exportFormat.getExtension())
+                        .build()
+                        .toString())
+                .body(body);
     }
 
     @DeleteMapping("/{tripId}")
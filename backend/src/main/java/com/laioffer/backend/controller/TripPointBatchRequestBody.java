@@ -0,0 +1,23 @@
+package com.laioffer.backend.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// One change set for a single trip, applied in one transaction
+public record TripPointBatchRequestBody(
+        Long trip,
+        List<Upsert> upserts,   // id == null creates a point, otherwise updates it
+        List<Long> deletes,
+        List<Reorder> reorders) {
+
+    public record Upsert(
+            Long id,
+            TripPointRequestBody point
+    ) {}
+
+    public record Reorder(
+            Long id,
+            LocalDate date,     // optional, moves the point to another day
+            Integer visitOrder
+    ) {}
+}
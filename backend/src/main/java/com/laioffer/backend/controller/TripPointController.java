@@ -1,23 +1,42 @@
 package com.laioffer.backend.controller;
 
 import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.service.DayScheduleService;
+import com.laioffer.backend.service.RouteOptimizationService;
 import com.laioffer.backend.service.TripPointService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/trip-points")
 @RequiredArgsConstructor
 public class TripPointController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+
     private final TripPointService tripPointService;
+    private final RouteOptimizationService routeOptimizationService;
+    private final DayScheduleService dayScheduleService;
+
+    // Arrival and departure of each point of one day, with overlaps, unreachable gaps and over-long days flagged
+    @GetMapping("/schedule")
+    public ResponseEntity<DayScheduleService.DayScheduleView> getDaySchedule(
+            @RequestParam Long tripId,
+            @RequestParam LocalDate date) {
+        return ResponseEntity.ok(dayScheduleService.getSchedule(tripId, date));
+    }
 
     // Get a trip point by id
     @GetMapping("/{id}")
@@ -26,29 +45,52 @@ public class TripPointController {
         return ResponseEntity.ok(tripPoint);
     }
 
-    // Get all trip points for a given trip
-    // Can provide either one of tripId or day, or both
-    @GetMapping
+    // Get all trip points for a given trip, optionally only one day of it.
+    // Tagged with the trip's points version, so an unchanged list is a 304 without loading any row.
+    @GetMapping(params = "tripId")
     public ResponseEntity<List<TripPoint>> getTripPoints(
-            @RequestParam(required = false) Long tripId,
-            @RequestParam(required = false) LocalDate date) {
-        if (tripId == null && date == null) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Either tripId or dayNumber must be provided");
+            @RequestParam Long tripId,
+            @RequestParam(required = false) LocalDate date,
+            WebRequest request) {
+        // Read before the rows: a change in between then only costs the client one extra full response
+        Optional<Long> version = tripPointService.getPointsVersion(tripId);
+        String etag = version.map(v -> ETags.of("points", tripId, v, request)).orElse(null);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
         }
 
         List<TripPoint> tripPoints;
-        if (tripId != null) {
-            // If dayNumber is provided, filter by trip and day
-            if (date != null) {
-                tripPoints = tripPointService.getTripPointsByTripIdAndDay(tripId, date);
-            } else {
-                tripPoints = tripPointService.getTripPointsByTripId(tripId);
-            }
+        if (date != null) {
+            tripPoints = tripPointService.getTripPointsByTripIdAndDay(tripId, date);
         } else {
-            // If only dayNumber is provided, return trip points for that day (across all trips)
-            tripPoints = tripPointService.getTripPointsByDay(date);
+            tripPoints = tripPointService.getTripPointsByTripId(tripId);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (etag != null) {
+            response.eTag(etag).varyBy(HttpHeaders.ACCEPT);
+        }
+        return response.body(tripPoints);
+    }
+
+    // Trip points for a day across all trips. Paged by an opaque cursor,
+    // or with stream=true written out as a single JSON array without buffering the rows
+    @GetMapping(params = "!tripId")
+    public ResponseEntity<?> getTripPointsByDay(
+            @RequestParam(required = false) LocalDate date,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "false") boolean stream) {
+        if (date == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Either tripId or date must be provided");
         }
-        return ResponseEntity.ok(tripPoints);
+        if (stream) {
+            StreamingResponseBody body = out -> tripPointService.streamTripPointsByDay(date, out);
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+        }
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        return ResponseEntity.ok(tripPointService.getTripPointsByDay(date, cursor, limit));
     }
 
     // Create a new trip point
@@ -57,6 +99,23 @@ public class TripPointController {
         return tripPointService.createTripPoint(body);
     }
 
+    // Create, update, delete and reorder many points of one trip in a single call
+    @PostMapping("/batch")
+    public ResponseEntity<List<TripPoint>> applyBatch(@RequestBody TripPointBatchRequestBody body) {
+        if (body.trip() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "trip must be provided");
+        }
+        return ResponseEntity.ok(tripPointService.applyBatch(body));
+    }
+
+    // Reorder the points of a trip (or of one of its days) into a short route
+    @PostMapping("/optimize")
+    public ResponseEntity<List<TripPoint>> optimizeRoute(
+            @RequestParam Long tripId,
+            @RequestParam(required = false) LocalDate date) {
+        return ResponseEntity.ok(routeOptimizationService.optimize(tripId, date));
+    }
+
     // Update an existing trip point
     @PutMapping("/{id}")
     public ResponseEntity<TripPoint> updateTripPoint(@PathVariable Long id, @RequestBody TripPointRequestBody body) {
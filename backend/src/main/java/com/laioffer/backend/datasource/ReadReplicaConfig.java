@@ -0,0 +1,108 @@
+package com.laioffer.backend.datasource;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Read-only transactions on read replicas. Off by default; when on, the primary pool is still built
+// from spring.datasource (and spring.datasource.hikari), and the replica pools copy its credentials and timeouts,
+// except for a short connection timeout of their own.
+@Configuration
+@ConditionalOnProperty(name = "travelplanner.read-replicas.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public RecentWrites recentWrites(@Value("${travelplanner.read-replicas.max-lag-ms:5000}") long maxLagMillis,
+                                     @Value("${travelplanner.read-replicas.max-tracked-users:100000}") long maxUsers) {
+        return new RecentWrites(maxUsers, TimeUnit.MILLISECONDS.toNanos(maxLagMillis) * 2);
+    }
+
+    @Bean
+    public ReplicaPool replicaPool(HikariDataSource primaryDataSource,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${travelplanner.read-replicas.urls:}") String[] urls,
+                                   @Value("${travelplanner.read-replicas.username:}") String username,
+                                   @Value("${travelplanner.read-replicas.password:}") String password,
+                                   @Value("${travelplanner.read-replicas.pool-size:10}") int poolSize,
+                                   @Value("${travelplanner.read-replicas.balancing:round-robin}") String balancing,
+                                   @Value("${travelplanner.read-replicas.max-lag-ms:5000}") long maxLagMillis,
+                                   @Value("${travelplanner.read-replicas.connection-timeout-ms:500}") long connectionTimeoutMillis) {
+        List<String> replicaUrls = Arrays.stream(urls).map(String::trim).filter(url -> !url.isEmpty()).toList();
+        if (replicaUrls.isEmpty()) {
+            throw new IllegalStateException("travelplanner.read-replicas.urls is empty");
+        }
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica-" + (i + 1));
+            config.setJdbcUrl(replicaUrls.get(i));
+            config.setDriverClassName(primaryDataSource.getDriverClassName());
+            config.setUsername(username.isEmpty() ? primaryDataSource.getUsername() : username);
+            config.setPassword(username.isEmpty() ? primaryDataSource.getPassword() : password);
+            // A read waiting on a replica that is down or saturated should fail over to the primary quickly
+            config.setConnectionTimeout(connectionTimeoutMillis);
+            config.setValidationTimeout(Math.min(primaryDataSource.getValidationTimeout(), connectionTimeoutMillis));
+            config.setIdleTimeout(primaryDataSource.getIdleTimeout());
+            config.setMaxLifetime(primaryDataSource.getMaxLifetime());
+            config.setMaximumPoolSize(poolSize);
+            config.setReadOnly(true);
+            // Start even if a replica is down; the poller brings it into rotation once it answers
+            config.setInitializationFailTimeout(-1);
+            config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.add(new HikariDataSource(config));
+        }
+        return new ReplicaPool(primaryDataSource, pools, ReplicaPool.Balancing.parse(balancing),
+                TimeUnit.MILLISECONDS.toNanos(maxLagMillis), meterRegistry);
+    }
+
+    // What JPA, schema init and everything else injecting a DataSource gets
+    @Bean
+    @Primary
+    public ReplicaRoutingDataSource dataSource(HikariDataSource primaryDataSource, ReplicaPool replicaPool,
+                                               RecentWrites recentWrites, MeterRegistry meterRegistry) {
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaPool, recentWrites, meterRegistry);
+    }
+
+    // A read-write transaction joining a read-only one would run on the read-only one's connection, which may
+    // be a replica; fail it up front instead. Read-write commits also feed read-your-writes.
+    @Bean
+    public TransactionManagerCustomizer<AbstractPlatformTransactionManager> replicaTransactionManagerCustomizer(
+            RecentWrites recentWrites) {
+        return transactionManager -> {
+            transactionManager.setValidateExistingTransaction(true);
+            transactionManager.addListener(new TransactionExecutionListener() {
+                @Override
+                public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+                    if (commitFailure == null) {
+                        recentWrites.afterCommit(transaction);
+                    }
+                }
+            });
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.laioffer.backend.datasource;
+
+import com.laioffer.backend.cache.LruCache;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.TransactionExecution;
+
+// When each signed-in user last committed a read-write transaction, so their own reads can wait for a
+// replica that has caught up with it. Times are System.nanoTime() values.
+public class RecentWrites {
+
+    public static final long NEVER = Long.MIN_VALUE;
+
+    private final LruCache<String, Long> lastWrites;
+    private final long horizonNanos;
+
+    // Writes older than the horizon no longer matter: no replica that far behind is used anyway
+    public RecentWrites(long maxUsers, long horizonNanos) {
+        this.lastWrites = new LruCache<>(maxUsers, time -> 1);
+        this.horizonNanos = horizonNanos;
+    }
+
+    public void afterCommit(TransactionExecution transaction) {
+        if (transaction.isReadOnly()) {
+            return;
+        }
+        String user = currentUser();
+        if (user != null) {
+            lastWrites.put(user, System.nanoTime());
+        }
+    }
+
+    public long lastWrite(String user) {
+        Long time = lastWrites.get(user);
+        return time != null && System.nanoTime() - time < horizonNanos ? time : NEVER;
+    }
+
+    // Name of the user the current request runs for, or null outside an authenticated request
+    public static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+}
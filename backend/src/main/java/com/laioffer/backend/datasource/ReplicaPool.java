@@ -0,0 +1,205 @@
+package com.laioffer.backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The read replicas, how far behind the primary each one is, and which one takes the next read.
+// Every poll samples the primary's WAL position first and then each replica's replay position; a replica
+// that has replayed past a sample holds every commit made before that sample was taken. That gives each
+// replica a "caught up to" time, which is all read-your-writes needs: a user's read may go to a replica
+// caught up past their last commit. An instance that isn't replaying (not a standby, e.g. a second
+// independent Postgres in tests) can't report a position and is assumed to be exactly max-lag behind.
+// Whether a replica is in rotation at all is judged separately, by how recently a poll found it within max lag.
+public class ReplicaPool implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaPool.class);
+
+    private static final String PRIMARY_POSITION_SQL = "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), '0/0')::bigint";
+    private static final String REPLAY_POSITION_SQL = "SELECT pg_wal_lsn_diff(pg_last_wal_replay_lsn(), '0/0')::bigint";
+    private static final int MAX_SAMPLES = 1024;
+
+    public enum Balancing {
+        ROUND_ROBIN,
+        LEAST_CONNECTIONS;
+
+        // Accepts the property spelling, e.g. "least-connections"
+        public static Balancing parse(String value) {
+            return valueOf(value.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final Balancing balancing;
+    private final long maxLagNanos;
+    private final AtomicInteger next = new AtomicInteger();
+    // {time, position} of recent primary samples, oldest first; only the polling thread touches it
+    private final ArrayDeque<long[]> primarySamples = new ArrayDeque<>();
+
+    public ReplicaPool(DataSource primary, List<HikariDataSource> replicas, Balancing balancing, long maxLagNanos,
+                       MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(dataSource -> new Replica(dataSource, maxLagNanos)).toList();
+        this.balancing = balancing;
+        this.maxLagNanos = maxLagNanos;
+        for (Replica replica : this.replicas) {
+            Gauge.builder("db.replica.lag", replica, ReplicaPool::lagSeconds)
+                    .tag("pool", replica.dataSource.getPoolName())
+                    .description("How far behind the primary the replica is known to be; NaN while unreachable")
+                    .baseUnit("seconds")
+                    .register(meterRegistry);
+        }
+    }
+
+    // A replica for a read of a user whose last write committed at lastWrite, or null to use the primary
+    Replica choose(long lastWrite) {
+        long now = System.nanoTime();
+        int size = replicas.size();
+        if (balancing == Balancing.ROUND_ROBIN) {
+            int start = Math.floorMod(next.getAndIncrement(), size);
+            for (int i = 0; i < size; i++) {
+                Replica replica = replicas.get((start + i) % size);
+                if (replica.serves(lastWrite, now)) {
+                    return replica;
+                }
+            }
+            return null;
+        }
+        Replica best = null;
+        for (Replica replica : replicas) {
+            if (replica.serves(lastWrite, now) && (best == null || replica.activeConnections() < best.activeConnections())) {
+                best = replica;
+            }
+        }
+        return best;
+    }
+
+    List<Replica> replicas() {
+        return replicas;
+    }
+
+    // Taken out of rotation until the next successful poll
+    void markDown(Replica replica, SQLException cause) {
+        if (replica.up) {
+            logger.warn("Read replica {} is unavailable, reading from the primary", replica.dataSource.getPoolName(), cause);
+        }
+        replica.up = false;
+    }
+
+    @Scheduled(fixedDelayString = "${travelplanner.read-replicas.poll-interval-ms:250}")
+    public void poll() {
+        long sampledAt = System.nanoTime();
+        Long primaryPosition;
+        try {
+            primaryPosition = position(primary, PRIMARY_POSITION_SQL);
+        } catch (SQLException e) {
+            // lastPolledAt stops advancing, so replicas age out of rotation as this goes on
+            logger.warn("Could not read the primary WAL position", e);
+            return;
+        }
+        primarySamples.addLast(new long[]{sampledAt, primaryPosition});
+        while (primarySamples.size() > MAX_SAMPLES
+                || sampledAt - primarySamples.peekFirst()[0] > 2 * maxLagNanos) {
+            primarySamples.removeFirst();
+        }
+
+        for (Replica replica : replicas) {
+            try {
+                Long replayed = position(replica.dataSource, REPLAY_POSITION_SQL);
+                if (replayed == null) {
+                    replica.caughtUpTo = sampledAt - maxLagNanos;
+                    replica.lastPolledAt = sampledAt;
+                } else {
+                    replica.caughtUpTo = Math.max(replica.caughtUpTo, caughtUpTo(replayed));
+                    // A standby further behind than max lag stays out until it catches up
+                    if (replica.caughtUpTo != RecentWrites.NEVER && sampledAt - replica.caughtUpTo <= maxLagNanos) {
+                        replica.lastPolledAt = sampledAt;
+                    }
+                }
+                if (!replica.up) {
+                    logger.info("Read replica {} is available", replica.dataSource.getPoolName());
+                }
+                replica.up = true;
+            } catch (SQLException e) {
+                markDown(replica, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.dataSource.close();
+        }
+    }
+
+    // Time of the newest primary sample the replica has replayed past
+    private long caughtUpTo(long replayed) {
+        Iterator<long[]> newestFirst = primarySamples.descendingIterator();
+        while (newestFirst.hasNext()) {
+            long[] sample = newestFirst.next();
+            if (sample[1] <= replayed) {
+                return sample[0];
+            }
+        }
+        return RecentWrites.NEVER;
+    }
+
+    private static Long position(DataSource dataSource, String sql) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            resultSet.next();
+            long position = resultSet.getLong(1);
+            return resultSet.wasNull() ? null : position;
+        }
+    }
+
+    private static double lagSeconds(Replica replica) {
+        if (!replica.up || replica.caughtUpTo == RecentWrites.NEVER) {
+            return Double.NaN;
+        }
+        return (System.nanoTime() - replica.caughtUpTo) / 1e9;
+    }
+
+    static final class Replica {
+        final HikariDataSource dataSource;
+        private final long maxLagNanos;
+        // Every primary commit before this System.nanoTime() value is visible on the replica
+        volatile long caughtUpTo = RecentWrites.NEVER;
+        // Last poll that reached the replica and found it within max lag
+        volatile long lastPolledAt = RecentWrites.NEVER;
+        // Down until the first poll gets through
+        volatile boolean up;
+
+        Replica(HikariDataSource dataSource, long maxLagNanos) {
+            this.dataSource = dataSource;
+            this.maxLagNanos = maxLagNanos;
+        }
+
+        // Freshness is measured against now: polls that fail or stall don't keep a replica in rotation.
+        // caughtUpTo only decides whether the user's own last write is visible there yet
+        boolean serves(long lastWrite, long now) {
+            long polledAt = lastPolledAt;
+            return up && polledAt != RecentWrites.NEVER && now - polledAt <= maxLagNanos && caughtUpTo > lastWrite;
+        }
+
+        int activeConnections() {
+            return dataSource.getHikariPoolMXBean() != null ? dataSource.getHikariPoolMXBean().getActiveConnections() : 0;
+        }
+    }
+}
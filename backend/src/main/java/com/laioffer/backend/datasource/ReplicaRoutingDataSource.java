@@ -0,0 +1,227 @@
+package com.laioffer.backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+// Sends read-only transactions of signed-in users to a replica and everything else to the primary.
+// Hibernate is handed a proxy connection and the physical one is only borrowed at the first statement,
+// after Spring has marked the transaction read-only or not. It goes back to its pool when the transaction
+// ends, so the next transaction is routed afresh: with open-in-view a request keeps one session (and one
+// proxy) across transactions, and a write after a read must not land on the replica the read used.
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private final HikariDataSource primary;
+    private final ReplicaPool replicas;
+    private final RecentWrites recentWrites;
+    private final Counter replicaReads;
+    private final Counter primaryReads;
+
+    public ReplicaRoutingDataSource(HikariDataSource primary, ReplicaPool replicas, RecentWrites recentWrites,
+                                    MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.recentWrites = recentWrites;
+        this.replicaReads = Counter.builder("db.reads").tag("target", "replica")
+                .description("Read-only transactions by where they ran")
+                .register(meterRegistry);
+        this.primaryReads = Counter.builder("db.reads").tag("target", "primary")
+                .description("Read-only transactions by where they ran")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new RoutingConnection(primary.isAutoCommit()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLException("Credentials are fixed per pool");
+    }
+
+    // Pool metrics and health checks look for the Hikari pool behind the DataSource bean
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || primary.isWrapperFor(iface);
+    }
+
+    // Anonymous requests (sign-up then sign-in) and background jobs have nothing to key read-your-writes
+    // on, so they read from the primary
+    private Connection readConnection() throws SQLException {
+        String user = RecentWrites.currentUser();
+        ReplicaPool.Replica replica = user != null ? replicas.choose(recentWrites.lastWrite(user)) : null;
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                replicas.markDown(replica, e);
+            }
+        }
+        primaryReads.increment();
+        return primary.getConnection();
+    }
+
+    private final class RoutingConnection implements InvocationHandler {
+
+        private Connection target;
+        private boolean readOnly;
+        private boolean autoCommit;
+        private Integer isolation;
+        private boolean closed;
+
+        RoutingConnection(boolean autoCommit) {
+            this.autoCommit = autoCommit;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Routing connection" + (target != null ? " to " + target : "");
+                case "unwrap":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return proxy;
+                    }
+                    break;
+                case "isWrapperFor":
+                    if (((Class<?>) args[0]).isInstance(proxy)) {
+                        return true;
+                    }
+                    break;
+                case "isReadOnly":
+                    return readOnly;
+                case "setReadOnly":
+                    boolean newReadOnly = (Boolean) args[0];
+                    // Outside a transaction a change of mind just means a different pool next time
+                    if (target != null && autoCommit && newReadOnly != readOnly) {
+                        release();
+                    }
+                    readOnly = newReadOnly;
+                    if (target != null) {
+                        target.setReadOnly(readOnly);
+                    }
+                    return null;
+                case "getAutoCommit":
+                    return autoCommit;
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    if (target != null) {
+                        target.setAutoCommit(autoCommit);
+                        // Switching auto-commit on commits, so the transaction is over
+                        if (autoCommit) {
+                            release();
+                        }
+                    }
+                    return null;
+                case "getTransactionIsolation":
+                    if (isolation != null) {
+                        return isolation;
+                    }
+                    break;
+                case "setTransactionIsolation":
+                    isolation = (Integer) args[0];
+                    if (target != null) {
+                        target.setTransactionIsolation(isolation);
+                    }
+                    return null;
+                case "commit":
+                case "rollback":
+                    if (target == null) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        // Not after a rollback to a savepoint: the transaction goes on
+                        if (args == null) {
+                            release();
+                        }
+                    }
+                case "getWarnings":
+                    if (target == null) {
+                        return null;
+                    }
+                    break;
+                case "clearWarnings":
+                    if (target == null) {
+                        return null;
+                    }
+                    break;
+                case "close":
+                    closed = true;
+                    release();
+                    return null;
+                case "isClosed":
+                    return closed;
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed");
+            }
+            try {
+                return method.invoke(target(), args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+
+        private Connection target() throws SQLException {
+            if (target == null) {
+                Connection connection = readOnly ? readConnection() : primary.getConnection();
+                try {
+                    if (connection.getAutoCommit() != autoCommit) {
+                        connection.setAutoCommit(autoCommit);
+                    }
+                    if (isolation != null) {
+                        connection.setTransactionIsolation(isolation);
+                    }
+                    if (readOnly) {
+                        connection.setReadOnly(true);
+                    }
+                } catch (SQLException e) {
+                    connection.close();
+                    throw e;
+                }
+                target = connection;
+            }
+            return target;
+        }
+
+        // Back to its pool, which resets auto-commit, isolation and read-only on the way in
+        private void release() throws SQLException {
+            if (target != null) {
+                Connection connection = target;
+                target = null;
+                connection.close();
+            }
+        }
+    }
+}
@@ -8,13 +8,21 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.CacheLayout;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.QueryCacheLayout;
 import org.locationtech.jts.geom.Point;
 
 import java.time.LocalDateTime;
 
 // POI.java
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+// Cached query results hold the full rows, so a cached findAllActive never turns into one load per id
+@QueryCacheLayout(layout = CacheLayout.FULL)
 @Table(name = "poi")
 @Data
 @NoArgsConstructor
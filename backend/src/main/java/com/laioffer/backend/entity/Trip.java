@@ -6,6 +6,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -13,6 +15,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "trips")
 @Data
 @NoArgsConstructor
@@ -48,5 +52,13 @@ public class Trip {
     @Column(name = "created_at")
     @CreationTimestamp
     private LocalDateTime createdAt;
+
+    // Bumped by Hibernate on every update of the trip row; the trip's ETag.
+    // The points list has its own counter, trips.points_version, deliberately not mapped here:
+    // it is bumped with a native update so point changes never evict this entity from the cache.
+    // Clients see it only through the ETag.
+    @Version
+    @JsonIgnore
+    private Long version;
 }
 
@@ -5,12 +5,16 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "trip_accommodation")
 @Data
 @NoArgsConstructor
@@ -46,6 +50,12 @@ public class TripAccommodation {
         return !date.isBefore(checkInDate) && !date.isAfter(checkOutDate);
     }
 
+    // The night of date is spent here (check-out day itself is not a night)
+    @Transient
+    public boolean coversNight(LocalDate date) {
+        return !date.isBefore(checkInDate) && date.isBefore(checkOutDate);
+    }
+
     @Transient
     public long getNumberOfNights() {
         return ChronoUnit.DAYS.between(checkInDate, checkOutDate);
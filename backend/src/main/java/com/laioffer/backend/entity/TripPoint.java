@@ -24,8 +24,10 @@ import java.time.LocalTime;
 @Builder
 @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
 public class TripPoint {
+    // Sequence + pooled optimizer so inserts can be JDBC-batched (IDENTITY forces one round trip per row)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trip_points_seq")
+    @SequenceGenerator(name = "trip_points_seq", sequenceName = "trip_points_id_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,368 @@
+package com.laioffer.backend.geo;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Hierarchical greedy point clustering per zoom level, in the spirit of supercluster.
+// Points are projected to Web Mercator in [0, 1]; at zoom z two things merge when they are within
+// radiusPixels / (extent * 2^z) of each other. Unlike supercluster the hierarchy is kept incrementally:
+// a new point joins the nearest cluster in reach at the deepest zoom that has one (and every ancestor
+// of it), and only gets fresh singleton clusters below that. Removal walks the same chain back up.
+// Incremental inserts drift a little from a from-scratch build, so callers rebuild now and then.
+public class ClusterIndex {
+
+    public record Cluster(double lat, double lng, int count, long pointId, int[] typeCounts) {
+
+        public boolean isPoint() {
+            return count == 1;
+        }
+    }
+
+    public record Result(int zoom, List<Cluster> clusters) {
+    }
+
+    private final int minZoom;
+    private final int maxZoom;
+    private final double radiusPixels;
+    private final int extent;
+    private final int typeCount;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // levels[z - minZoom] holds the clusters of zoom z; the last level holds the points themselves
+    private final Level[] levels;
+    private final Map<Long, Node> points = new HashMap<>();
+
+    public ClusterIndex(int minZoom, int maxZoom, double radiusPixels, int extent, int typeCount) {
+        if (minZoom < 0 || maxZoom < minZoom || maxZoom > 24) {
+            throw new IllegalArgumentException("Zoom range must be within [0, 24]");
+        }
+        if (radiusPixels <= 0 || extent <= 0 || typeCount <= 0) {
+            throw new IllegalArgumentException("Radius, extent and type count must be positive");
+        }
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.radiusPixels = radiusPixels;
+        this.extent = extent;
+        this.typeCount = typeCount;
+        this.levels = new Level[maxZoom - minZoom + 2];
+        for (int z = minZoom; z <= maxZoom + 1; z++) {
+            levels[z - minZoom] = new Level(radius(z));
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return points.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int minZoom() {
+        return minZoom;
+    }
+
+    public int maxZoom() {
+        return maxZoom;
+    }
+
+    // Inserts or moves the point with the given id; type is an index in [0, typeCount)
+    public void put(long id, double lat, double lng, int type) {
+        if (type < 0 || type >= typeCount) {
+            throw new IllegalArgumentException("Unknown type " + type);
+        }
+        double x = projectX(lng);
+        double y = projectY(lat);
+        lock.writeLock().lock();
+        try {
+            Node existing = points.remove(id);
+            if (existing != null) {
+                detach(existing);
+            }
+            Node point = new Node(id, x, y, maxZoom + 1, type, null);
+            point.add(x, y, type);
+            level(maxZoom + 1).add(point);
+            points.put(id, point);
+
+            Node child = point;
+            for (int z = maxZoom; z >= minZoom; z--) {
+                Node nearest = level(z).nearest(x, y);
+                if (nearest != null) {
+                    nearest.adopt(child);
+                    for (Node ancestor = nearest; ancestor != null; ancestor = ancestor.parent) {
+                        ancestor.add(x, y, type);
+                    }
+                    return;
+                }
+                Node cluster = new Node(-1, x, y, z, -1, new int[typeCount]);
+                cluster.add(x, y, type);
+                cluster.adopt(child);
+                level(z).add(cluster);
+                child = cluster;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Node point = points.remove(id);
+            if (point == null) {
+                return false;
+            }
+            detach(point);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Clusters whose centre lies in the box at the given zoom. When that is more than maxResults the
+    // zoom is lowered until it fits, so a huge viewport never produces a huge answer.
+    // minLng > maxLng means the box crosses the antimeridian.
+    public Result query(double minLng, double minLat, double maxLng, double maxLat, int zoom, int maxResults) {
+        int z = Math.max(minZoom, Math.min(zoom, maxZoom + 1));
+        double minY = projectY(maxLat);
+        double maxY = projectY(minLat);
+        double[][] xRanges = minLng <= maxLng
+                ? new double[][]{{projectX(minLng), projectX(maxLng)}}
+                : new double[][]{{projectX(minLng), 1.0}, {0.0, projectX(maxLng)}};
+
+        lock.readLock().lock();
+        try {
+            while (true) {
+                List<Node> found = new ArrayList<>();
+                for (double[] range : xRanges) {
+                    level(z).collect(range[0], minY, range[1], maxY, found);
+                }
+                if (found.size() <= maxResults || z == minZoom) {
+                    List<Cluster> clusters = new ArrayList<>(Math.min(found.size(), maxResults));
+                    for (int i = 0; i < found.size() && i < maxResults; i++) {
+                        clusters.add(toCluster(found.get(i)));
+                    }
+                    return new Result(z, clusters);
+                }
+                z--;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Takes the point out of every cluster above it, dropping clusters that end up empty
+    private void detach(Node point) {
+        level(point.zoom).remove(point);
+        Node child = point;
+        boolean childEmpty = true;
+        for (Node ancestor = point.parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.subtract(point.x, point.y, point.type);
+            if (childEmpty) {
+                ancestor.release(child);
+            }
+            childEmpty = ancestor.count == 0;
+            if (childEmpty) {
+                level(ancestor.zoom).remove(ancestor);
+            }
+            child = ancestor;
+        }
+    }
+
+    private Cluster toCluster(Node node) {
+        if (node.count == 1) {
+            Node point = node;
+            while (point.children != null) {
+                point = point.children.get(0);
+            }
+            int[] types = new int[typeCount];
+            types[point.type] = 1;
+            return new Cluster(unprojectY(point.y), unprojectX(point.x), 1, point.id, types);
+        }
+        return new Cluster(unprojectY(node.sumY / node.count), unprojectX(node.sumX / node.count),
+                node.count, -1, node.typeCounts.clone());
+    }
+
+    private Level level(int zoom) {
+        return levels[zoom - minZoom];
+    }
+
+    private double radius(int zoom) {
+        return radiusPixels / (extent * Math.pow(2, zoom));
+    }
+
+    static double projectX(double lng) {
+        return lng / 360.0 + 0.5;
+    }
+
+    static double projectY(double lat) {
+        double sin = Math.sin(Math.toRadians(lat));
+        double y = 0.5 - 0.25 * Math.log((1 + sin) / (1 - sin)) / Math.PI;
+        return y < 0 ? 0 : y > 1 ? 1 : y;
+    }
+
+    static double unprojectX(double x) {
+        return (x - 0.5) * 360.0;
+    }
+
+    static double unprojectY(double y) {
+        return Math.toDegrees(Math.atan(Math.sinh(Math.PI * (1 - 2 * y))));
+    }
+
+    // A point (children == null) or a cluster. The seed is where it was created and decides its grid cell;
+    // the reported position is the running centroid of its points.
+    private static final class Node {
+        final long id;
+        final double x;
+        final double y;
+        final int zoom;
+        final int type;
+        final int[] typeCounts;
+        final List<Node> children;
+        Node parent;
+        int indexInParent;
+        double sumX;
+        double sumY;
+        int count;
+
+        Node(long id, double x, double y, int zoom, int type, int[] typeCounts) {
+            this.id = id;
+            this.x = x;
+            this.y = y;
+            this.zoom = zoom;
+            this.type = type;
+            this.typeCounts = typeCounts;
+            this.children = typeCounts != null ? new ArrayList<>(2) : null;
+        }
+
+        void add(double px, double py, int pointType) {
+            sumX += px;
+            sumY += py;
+            count++;
+            if (typeCounts != null) {
+                typeCounts[pointType]++;
+            }
+        }
+
+        void subtract(double px, double py, int pointType) {
+            sumX -= px;
+            sumY -= py;
+            count--;
+            typeCounts[pointType]--;
+        }
+
+        void adopt(Node child) {
+            child.parent = this;
+            child.indexInParent = children.size();
+            children.add(child);
+        }
+
+        // Swap-remove so dropping a child is O(1) even under a cluster with thousands of them
+        void release(Node child) {
+            int last = children.size() - 1;
+            Node moved = children.get(last);
+            children.set(child.indexInParent, moved);
+            moved.indexInParent = child.indexInParent;
+            children.remove(last);
+            child.parent = null;
+        }
+    }
+
+    // Grid of nodes keyed by cells one cluster radius wide, so "anything within r" is the 3x3 block around a cell
+    private static final class Level {
+        final double radius;
+        final Map<Long, List<Node>> cells = new HashMap<>();
+
+        Level(double radius) {
+            this.radius = radius;
+        }
+
+        void add(Node node) {
+            cells.computeIfAbsent(key(cell(node.x), cell(node.y)), k -> new ArrayList<>(2)).add(node);
+        }
+
+        void remove(Node node) {
+            long key = key(cell(node.x), cell(node.y));
+            List<Node> cell = cells.get(key);
+            if (cell != null) {
+                cell.remove(node);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+
+        // Closest node whose seed is within one radius of (x, y)
+        Node nearest(double x, double y) {
+            int cx = cell(x);
+            int cy = cell(y);
+            Node best = null;
+            double bestDistance = radius * radius;
+            for (int i = cx - 1; i <= cx + 1; i++) {
+                for (int j = cy - 1; j <= cy + 1; j++) {
+                    List<Node> cell = cells.get(key(i, j));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (Node node : cell) {
+                        double dx = node.x - x;
+                        double dy = node.y - y;
+                        double distance = dx * dx + dy * dy;
+                        if (distance <= bestDistance) {
+                            bestDistance = distance;
+                            best = node;
+                        }
+                    }
+                }
+            }
+            return best;
+        }
+
+        // Centroids may sit up to about two radii from their seed, so the cell walk is widened by that much
+        void collect(double minX, double minY, double maxX, double maxY, List<Node> out) {
+            int fromX = cell(minX) - 2;
+            int toX = cell(maxX) + 2;
+            int fromY = cell(minY) - 2;
+            int toY = cell(maxY) + 2;
+            long cellsToVisit = (long) (toX - fromX + 1) * (toY - fromY + 1);
+            if (cellsToVisit > cells.size()) {
+                for (List<Node> cell : cells.values()) {
+                    collect(cell, minX, minY, maxX, maxY, out);
+                }
+                return;
+            }
+            for (int i = fromX; i <= toX; i++) {
+                for (int j = fromY; j <= toY; j++) {
+                    List<Node> cell = cells.get(key(i, j));
+                    if (cell != null) {
+                        collect(cell, minX, minY, maxX, maxY, out);
+                    }
+                }
+            }
+        }
+
+        private static void collect(List<Node> cell, double minX, double minY, double maxX, double maxY,
+                                    List<Node> out) {
+            for (Node node : cell) {
+                double cx = node.sumX / node.count;
+                double cy = node.sumY / node.count;
+                if (cx >= minX && cx <= maxX && cy >= minY && cy <= maxY) {
+                    out.add(node);
+                }
+            }
+        }
+
+        private int cell(double coordinate) {
+            return (int) Math.floor(coordinate / radius);
+        }
+
+        private static long key(int cx, int cy) {
+            return ((long) cx << 32) | (cy & 0xffffffffL);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.laioffer.backend.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Fixed-size lat/lng grid over primitive coordinate arrays.
+// Each entry lives in a slot; cells only keep slot numbers, so a radius query touches
+// the covering cells and a couple of double[] reads per candidate.
+public class GeoGridIndex<T> {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Above this many cells a query just scans every slot instead of walking the grid
+    private static final int MAX_CELLS_PER_QUERY = 4096;
+
+    private final double cellSizeDegrees;
+    private final int columns;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private double[] lats = new double[INITIAL_CAPACITY];
+    private double[] lngs = new double[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int slotCount;
+
+    private final IntList freeSlots = new IntList();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private final Map<Long, IntList> cells = new HashMap<>();
+
+    public GeoGridIndex(double cellSizeDegrees) {
+        if (cellSizeDegrees <= 0 || cellSizeDegrees > 90) {
+            throw new IllegalArgumentException("Cell size must be in (0, 90] degrees");
+        }
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.columns = (int) Math.ceil(360.0 / cellSizeDegrees);
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Inserts or moves the entry with the given id
+    public void put(long id, double lat, double lng, T value) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotById.get(id);
+            if (existing != null) {
+                removeSlot(id, existing);
+            }
+            int slot = freeSlots.isEmpty() ? nextSlot() : freeSlots.removeLast();
+            ids[slot] = id;
+            lats[slot] = lat;
+            lngs[slot] = lng;
+            values[slot] = value;
+            slotById.put(id, slot);
+            cells.computeIfAbsent(cellKey(lat, lng), k -> new IntList()).add(slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.get(id);
+            if (slot == null) {
+                return false;
+            }
+            removeSlot(id, slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // All values within radiusMeters (great-circle) of the given centre
+    public List<T> withinRadius(double lat, double lng, double radiusMeters) {
+        List<T> result = new ArrayList<>();
+        if (radiusMeters < 0) {
+            return result;
+        }
+        double dLat = GeoUtils.metersToLatDegrees(radiusMeters);
+        double minLat = Math.max(-90.0, lat - dLat);
+        double maxLat = Math.min(90.0, lat + dLat);
+        // Widest longitude span is at the bbox edge closest to a pole
+        double dLng = GeoUtils.metersToLngDegrees(radiusMeters, Math.max(Math.abs(minLat), Math.abs(maxLat)));
+
+        lock.readLock().lock();
+        try {
+            int minRow = row(minLat);
+            int maxRow = row(maxLat);
+            int colSpan = dLng >= 180.0 ? columns : Math.min(columns, column(lng + dLng) - column(lng - dLng) + 1);
+            long cellsToVisit = (long) (maxRow - minRow + 1) * colSpan;
+
+            if (cellsToVisit > MAX_CELLS_PER_QUERY) {
+                for (int slot = 0; slot < slotCount; slot++) {
+                    collect(slot, lat, lng, radiusMeters, result);
+                }
+                return result;
+            }
+
+            int firstCol = dLng >= 180.0 ? 0 : column(lng - dLng);
+            for (int r = minRow; r <= maxRow; r++) {
+                for (int i = 0; i < colSpan; i++) {
+                    IntList cell = cells.get(key(r, Math.floorMod(firstCol + i, columns)));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int j = 0; j < cell.size; j++) {
+                        collect(cell.items[j], lat, lng, radiusMeters, result);
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(int slot, double lat, double lng, double radiusMeters, List<T> result) {
+        Object value = values[slot];
+        if (value != null && GeoUtils.haversine(lat, lng, lats[slot], lngs[slot]) <= radiusMeters) {
+            result.add((T) value);
+        }
+    }
+
+    private void removeSlot(long id, int slot) {
+        IntList cell = cells.get(cellKey(lats[slot], lngs[slot]));
+        if (cell != null) {
+            cell.removeValue(slot);
+            if (cell.isEmpty()) {
+                cells.remove(cellKey(lats[slot], lngs[slot]));
+            }
+        }
+        values[slot] = null;
+        slotById.remove(id);
+        freeSlots.add(slot);
+    }
+
+    private int nextSlot() {
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            lats = Arrays.copyOf(lats, capacity);
+            lngs = Arrays.copyOf(lngs, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        return slotCount++;
+    }
+
+    private long cellKey(double lat, double lng) {
+        return key(row(lat), column(lng));
+    }
+
+    private int row(double lat) {
+        return (int) Math.floor((lat + 90.0) / cellSizeDegrees);
+    }
+
+    private int column(double lng) {
+        return (int) Math.floor((lng + 180.0) / cellSizeDegrees);
+    }
+
+    private long key(int row, int column) {
+        return ((long) row << 32) | (Math.floorMod(column, columns) & 0xffffffffL);
+    }
+
+    // Minimal growable int array, avoids boxing slot numbers per cell
+    private static final class IntList {
+        private int[] items = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        int removeLast() {
+            return items[--size];
+        }
+
+        void removeValue(int value) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == value) {
+                    items[i] = items[--size];
+                    return;
+                }
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.laioffer.backend.geo;
+
+public final class GeoUtils {
+
+    // Mean earth radius, same sphere PostGIS uses for geography when use_spheroid = false
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private GeoUtils() {
+    }
+
+    // Great-circle distance between two WGS84 coordinates, in metres
+    public static double haversine(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double sinLat = Math.sin(dLat / 2);
+        double sinLng = Math.sin(dLng / 2);
+        double a = sinLat * sinLat
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * sinLng * sinLng;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // Latitude span (degrees) covered by a distance in metres
+    public static double metersToLatDegrees(double meters) {
+        return Math.toDegrees(meters / EARTH_RADIUS_METERS);
+    }
+
+    // Longitude span (degrees) covered by a distance in metres at the given latitude
+    public static double metersToLngDegrees(double meters, double lat) {
+        double cos = Math.cos(Math.toRadians(lat));
+        if (cos < 1e-9) {
+            return 360.0;
+        }
+        return Math.min(360.0, Math.toDegrees(meters / (EARTH_RADIUS_METERS * cos)));
+    }
+}
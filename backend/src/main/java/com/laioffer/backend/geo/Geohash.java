@@ -0,0 +1,81 @@
+package com.laioffer.backend.geo;
+
+// Geohash cells addressed by (row, column) at a given precision, so covering a box is plain arithmetic.
+// Bits alternate longitude first, as in the standard base-32 encoding.
+public final class Geohash {
+
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+    public static final int MAX_PRECISION = 12;
+
+    public record Cell(String hash, double minLat, double minLng, double maxLat, double maxLng) {
+    }
+
+    private Geohash() {
+    }
+
+    public static String encode(double lat, double lng, int precision) {
+        return encode(row(lat, precision), column(lng, precision), precision);
+    }
+
+    public static Cell cell(long row, long column, int precision) {
+        double height = cellHeightDegrees(precision);
+        double width = cellWidthDegrees(precision);
+        double minLat = row * height - 90.0;
+        double minLng = column * width - 180.0;
+        return new Cell(encode(row, column, precision), minLat, minLng, minLat + height, minLng + width);
+    }
+
+    public static long rows(int precision) {
+        return 1L << latBits(precision);
+    }
+
+    public static long columns(int precision) {
+        return 1L << lngBits(precision);
+    }
+
+    public static long row(double lat, int precision) {
+        long rows = rows(precision);
+        return Math.max(0, Math.min(rows - 1, (long) Math.floor((lat + 90.0) / 180.0 * rows)));
+    }
+
+    public static long column(double lng, int precision) {
+        long columns = columns(precision);
+        return Math.max(0, Math.min(columns - 1, (long) Math.floor((lng + 180.0) / 360.0 * columns)));
+    }
+
+    public static double cellHeightDegrees(int precision) {
+        return 180.0 / rows(precision);
+    }
+
+    public static double cellWidthDegrees(int precision) {
+        return 360.0 / columns(precision);
+    }
+
+    private static String encode(long row, long column, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be within [1, " + MAX_PRECISION + "]");
+        }
+        int lngBit = lngBits(precision);
+        int latBit = latBits(precision);
+        char[] hash = new char[precision];
+        for (int i = 0; i < precision; i++) {
+            int value = 0;
+            for (int b = 0; b < 5; b++) {
+                // Bit number within the whole hash decides which coordinate it comes from
+                boolean fromLng = (i * 5 + b) % 2 == 0;
+                long bit = fromLng ? (column >>> --lngBit) & 1 : (row >>> --latBit) & 1;
+                value = (value << 1) | (int) bit;
+            }
+            hash[i] = BASE32.charAt(value);
+        }
+        return new String(hash);
+    }
+
+    private static int lngBits(int precision) {
+        return (precision * 5 + 1) / 2;
+    }
+
+    private static int latBits(int precision) {
+        return precision * 5 / 2;
+    }
+}
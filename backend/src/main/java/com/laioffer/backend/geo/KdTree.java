@@ -0,0 +1,228 @@
+package com.laioffer.backend.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// 3-d tree over points on the unit sphere, for exact k-nearest-neighbour queries.
+// Straight-line (chord) distance between unit vectors grows with great-circle distance, so the nearest
+// by chord are the nearest on the sphere, with no special cases at the poles or the antimeridian.
+// Inserts hang new leaves off the existing tree and removals leave tombstones; the tree is rebuilt
+// balanced once those make up half of it, or an insert lands far deeper than a balanced tree would go.
+public class KdTree<T> {
+
+    public record Entry<T>(long id, double lat, double lng, T value) {
+    }
+
+    public record Neighbor<T>(long id, T value, double distanceMeters) {
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Node<T>> nodes = new HashMap<>();
+    private Node<T> root;
+    private int tombstones;
+    private int unbalancedInserts;
+
+    // Bulk load straight into a balanced tree
+    public static <T> KdTree<T> of(List<Entry<T>> entries) {
+        KdTree<T> tree = new KdTree<>();
+        for (Entry<T> entry : entries) {
+            tree.nodes.put(entry.id(), new Node<>(entry.id(), entry.lat(), entry.lng(), entry.value()));
+        }
+        tree.rebuild();
+        return tree;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodes.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Inserts or moves the entry with the given id
+    public void put(long id, double lat, double lng, T value) {
+        lock.writeLock().lock();
+        try {
+            Node<T> existing = nodes.remove(id);
+            if (existing != null) {
+                existing.deleted = true;
+                tombstones++;
+            }
+            Node<T> node = new Node<>(id, lat, lng, value);
+            nodes.put(id, node);
+            int depth = insert(node);
+            unbalancedInserts++;
+            if (depth > 2 * (32 - Integer.numberOfLeadingZeros(nodes.size())) + 8) {
+                rebuild();
+            } else {
+                rebalanceIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Node<T> node = nodes.remove(id);
+            if (node == null) {
+                return false;
+            }
+            node.deleted = true;
+            tombstones++;
+            rebalanceIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Up to k entries accepted by the filter, closest first
+    @SuppressWarnings("unchecked")
+    public List<Neighbor<T>> nearest(double lat, double lng, int k, Predicate<T> filter) {
+        if (k <= 0) {
+            return List.of();
+        }
+        double[] target = toUnitVector(lat, lng);
+        // Max-heap on chord distance: the head is the worst of the current best k
+        PriorityQueue<Candidate<T>> best = new PriorityQueue<>(k + 1,
+                Comparator.comparingDouble((Candidate<T> c) -> c.chordSquared).reversed());
+
+        lock.readLock().lock();
+        try {
+            search(root, target, k, filter, best);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        // Polled worst first, so fill from the back
+        Neighbor<T>[] result = new Neighbor[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            Candidate<T> candidate = best.poll();
+            double chord = Math.sqrt(candidate.chordSquared);
+            double meters = 2 * Math.asin(Math.min(1.0, chord / 2)) * GeoUtils.EARTH_RADIUS_METERS;
+            result[i] = new Neighbor<>(candidate.node.id, candidate.node.value, meters);
+        }
+        return Arrays.asList(result);
+    }
+
+    private void search(Node<T> node, double[] target, int k, Predicate<T> filter, PriorityQueue<Candidate<T>> best) {
+        if (node == null) {
+            return;
+        }
+        if (!node.deleted && filter.test(node.value)) {
+            double dx = node.point[0] - target[0];
+            double dy = node.point[1] - target[1];
+            double dz = node.point[2] - target[2];
+            double chordSquared = dx * dx + dy * dy + dz * dz;
+            if (best.size() < k) {
+                best.add(new Candidate<>(node, chordSquared));
+            } else if (chordSquared < best.peek().chordSquared) {
+                best.poll();
+                best.add(new Candidate<>(node, chordSquared));
+            }
+        }
+        double diff = target[node.axis] - node.point[node.axis];
+        Node<T> near = diff < 0 ? node.left : node.right;
+        Node<T> far = diff < 0 ? node.right : node.left;
+        search(near, target, k, filter, best);
+        if (best.size() < k || diff * diff < best.peek().chordSquared) {
+            search(far, target, k, filter, best);
+        }
+    }
+
+    // Returns the depth the node was attached at
+    private int insert(Node<T> node) {
+        if (root == null) {
+            node.axis = 0;
+            root = node;
+            return 0;
+        }
+        Node<T> current = root;
+        int depth = 1;
+        while (true) {
+            boolean left = node.point[current.axis] < current.point[current.axis];
+            Node<T> next = left ? current.left : current.right;
+            if (next == null) {
+                node.axis = (current.axis + 1) % 3;
+                if (left) {
+                    current.left = node;
+                } else {
+                    current.right = node;
+                }
+                return depth;
+            }
+            current = next;
+            depth++;
+        }
+    }
+
+    private void rebalanceIfNeeded() {
+        int live = nodes.size();
+        if (tombstones + unbalancedInserts > Math.max(64, live / 2)) {
+            rebuild();
+        }
+    }
+
+    private void rebuild() {
+        List<Node<T>> items = new ArrayList<>(nodes.values());
+        for (Node<T> node : items) {
+            node.left = null;
+            node.right = null;
+        }
+        root = build(items, 0, items.size(), 0);
+        tombstones = 0;
+        unbalancedInserts = 0;
+    }
+
+    // Median split on the cycling axis; a sort per level keeps it simple, O(n log^2 n) is fine for a rebuild
+    private Node<T> build(List<Node<T>> items, int from, int to, int axis) {
+        if (from >= to) {
+            return null;
+        }
+        items.subList(from, to).sort(Comparator.comparingDouble(node -> node.point[axis]));
+        int mid = (from + to) >>> 1;
+        Node<T> node = items.get(mid);
+        node.axis = axis;
+        node.left = build(items, from, mid, (axis + 1) % 3);
+        node.right = build(items, mid + 1, to, (axis + 1) % 3);
+        return node;
+    }
+
+    private static double[] toUnitVector(double lat, double lng) {
+        double phi = Math.toRadians(lat);
+        double lambda = Math.toRadians(lng);
+        double cosPhi = Math.cos(phi);
+        return new double[]{cosPhi * Math.cos(lambda), cosPhi * Math.sin(lambda), Math.sin(phi)};
+    }
+
+    private record Candidate<T>(Node<T> node, double chordSquared) {
+    }
+
+    private static final class Node<T> {
+        final long id;
+        final double[] point;
+        final T value;
+        int axis;
+        boolean deleted;
+        Node<T> left;
+        Node<T> right;
+
+        Node(long id, double lat, double lng, T value) {
+            this.id = id;
+            this.point = toUnitVector(lat, lng);
+            this.value = value;
+        }
+    }
+}
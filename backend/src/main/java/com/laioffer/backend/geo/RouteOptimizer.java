@@ -0,0 +1,293 @@
+package com.laioffer.backend.geo;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Orders the stops of one day as a short open path.
+// Pinned stops (time anchors, meals, transport) keep their positions in the day; timed ones are
+// sorted by plannedTime among their own positions. Free stops fill the remaining slots by cheapest
+// insertion and are then improved with relocation, exchange and 2-opt moves until nothing improves
+// or the deadline passes. Every phase checks the deadline, and each route shorter than the last is
+// published as soon as it is complete, so a caller that stops waiting still has the best one so far.
+public final class RouteOptimizer {
+
+    public record Stop(long id, double lat, double lng, boolean pinned, LocalTime plannedTime) {
+    }
+
+    private RouteOptimizer() {
+    }
+
+    // stops must be in the current visiting order; deadline is a System.nanoTime() value.
+    // onImproved first gets the current order (with timed stops sorted), then every shorter route found.
+    public static List<Stop> optimize(List<Stop> stops, long deadlineNanos, Consumer<List<Stop>> onImproved) {
+        Stop[] layout = anchoredLayout(stops);
+        List<Stop> free = stops.stream().filter(stop -> !stop.pinned()).toList();
+
+        Best best = new Best(fill(layout, free), onImproved);
+        List<Stop> route = cheapestInsertion(layout, free, deadlineNanos);
+        best.offer(route);
+
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadlineNanos) {
+            improved = relocate(route, deadlineNanos) | exchange(route, deadlineNanos) | twoOpt(route, deadlineNanos);
+            best.offer(route);
+        }
+        return best.route;
+    }
+
+    public static double pathLength(List<Stop> route) {
+        double total = 0;
+        for (int i = 1; i < route.size(); i++) {
+            total += distance(route.get(i - 1), route.get(i));
+        }
+        return total;
+    }
+
+    private static final class Best {
+        private final Consumer<List<Stop>> listener;
+        private List<Stop> route;
+        private double length;
+
+        Best(List<Stop> initial, Consumer<List<Stop>> listener) {
+            this.listener = listener;
+            this.route = List.copyOf(initial);
+            this.length = pathLength(initial);
+            listener.accept(route);
+        }
+
+        void offer(List<Stop> candidate) {
+            double candidateLength = pathLength(candidate);
+            if (candidateLength < length - 1e-6) {
+                route = List.copyOf(candidate);
+                length = candidateLength;
+                listener.accept(route);
+            }
+        }
+    }
+
+    // Pinned stops at their positions, with the timed ones re-sorted among their own positions; free slots null
+    private static Stop[] anchoredLayout(List<Stop> stops) {
+        Stop[] layout = new Stop[stops.size()];
+        Iterator<Stop> timed = stops.stream()
+                .filter(stop -> stop.pinned() && stop.plannedTime() != null)
+                .sorted(Comparator.comparing(Stop::plannedTime))
+                .iterator();
+        for (int i = 0; i < stops.size(); i++) {
+            Stop stop = stops.get(i);
+            if (stop.pinned()) {
+                layout[i] = stop.plannedTime() != null ? timed.next() : stop;
+            }
+        }
+        return layout;
+    }
+
+    // The free slots taken by free in order
+    private static List<Stop> fill(Stop[] layout, List<Stop> free) {
+        List<Stop> route = new ArrayList<>(layout.length);
+        Iterator<Stop> next = free.iterator();
+        for (Stop slot : layout) {
+            route.add(slot != null ? slot : next.next());
+        }
+        return route;
+    }
+
+    // Each free stop goes to the cheapest gap of a run of free slots that still has room.
+    // Past the deadline the rest keep their current order in the slots left.
+    private static List<Stop> cheapestInsertion(Stop[] layout, List<Stop> free, long deadlineNanos) {
+        List<Run> runs = new ArrayList<>();
+        for (int i = 0; i < layout.length; i++) {
+            if (layout[i] == null && (i == 0 || layout[i - 1] != null)) {
+                int end = i;
+                while (end < layout.length && layout[end] == null) {
+                    end++;
+                }
+                runs.add(new Run(i > 0 ? layout[i - 1] : null, end < layout.length ? layout[end] : null, end - i));
+            }
+        }
+
+        for (Stop stop : free) {
+            Run bestRun = null;
+            int bestGap = 0;
+            double bestCost = Double.MAX_VALUE;
+            boolean inTime = System.nanoTime() < deadlineNanos;
+            for (Run run : runs) {
+                if (run.stops.size() == run.capacity) {
+                    continue;
+                }
+                if (!inTime) {
+                    bestRun = run;
+                    bestGap = run.stops.size();
+                    break;
+                }
+                for (int gap = 0; gap <= run.stops.size(); gap++) {
+                    double cost = run.insertionCost(gap, stop);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestRun = run;
+                        bestGap = gap;
+                    }
+                }
+            }
+            bestRun.stops.add(bestGap, stop);
+        }
+
+        List<Stop> route = new ArrayList<>(layout.length);
+        Iterator<Run> run = runs.iterator();
+        for (int i = 0; i < layout.length; i++) {
+            if (layout[i] != null) {
+                route.add(layout[i]);
+            } else if (i == 0 || layout[i - 1] != null) {
+                route.addAll(run.next().stops);
+            }
+        }
+        return route;
+    }
+
+    // A run of consecutive free slots between two pinned stops (null at either end of the day)
+    private static final class Run {
+        private final Stop before;
+        private final Stop after;
+        private final int capacity;
+        private final List<Stop> stops = new ArrayList<>();
+
+        Run(Stop before, Stop after, int capacity) {
+            this.before = before;
+            this.after = after;
+            this.capacity = capacity;
+        }
+
+        double insertionCost(int gap, Stop stop) {
+            return cost(gap > 0 ? stops.get(gap - 1) : before, stop, gap < stops.size() ? stops.get(gap) : after);
+        }
+    }
+
+    // Extra distance of putting stop in front of route[gap]
+    private static double insertionCost(List<Stop> route, int gap, Stop stop) {
+        return cost(gap > 0 ? route.get(gap - 1) : null, stop, gap < route.size() ? route.get(gap) : null);
+    }
+
+    private static double cost(Stop before, Stop stop, Stop after) {
+        double cost = 0;
+        if (before != null) {
+            cost += distance(before, stop);
+        }
+        if (after != null) {
+            cost += distance(stop, after);
+        }
+        if (before != null && after != null) {
+            cost -= distance(before, after);
+        }
+        return cost;
+    }
+
+    // Moves single free stops to a cheaper slot of their own run, so no pinned stop shifts
+    private static boolean relocate(List<Stop> route, long deadlineNanos) {
+        boolean improved = false;
+        for (int i = 0; i < route.size() && System.nanoTime() < deadlineNanos; i++) {
+            Stop stop = route.get(i);
+            if (stop.pinned()) {
+                continue;
+            }
+            int start = i;
+            while (start > 0 && !route.get(start - 1).pinned()) {
+                start--;
+            }
+            int end = i + 1;
+            while (end < route.size() && !route.get(end).pinned()) {
+                end++;
+            }
+            route.remove(i);
+            // The run now spans start .. end - 2, so its gaps are start .. end - 1
+            int bestGap = i;
+            double bestCost = insertionCost(route, i, stop);
+            for (int gap = start; gap < end; gap++) {
+                double cost = insertionCost(route, gap, stop);
+                if (cost < bestCost - 1e-6) {
+                    bestCost = cost;
+                    bestGap = gap;
+                }
+            }
+            route.add(bestGap, stop);
+            improved |= bestGap != i;
+        }
+        return improved;
+    }
+
+    // Swaps two free stops, possibly from different runs, when that shortens the path
+    private static boolean exchange(List<Stop> route, long deadlineNanos) {
+        boolean improved = false;
+        for (int i = 0; i < route.size() && System.nanoTime() < deadlineNanos; i++) {
+            if (route.get(i).pinned()) {
+                continue;
+            }
+            for (int j = i + 1; j < route.size(); j++) {
+                if (route.get(j).pinned()) {
+                    continue;
+                }
+                double before = touching(route, i, j);
+                Collections.swap(route, i, j);
+                if (touching(route, i, j) < before - 1e-6) {
+                    improved = true;
+                } else {
+                    Collections.swap(route, i, j);
+                }
+            }
+        }
+        return improved;
+    }
+
+    // Length of the edges at positions i < j
+    private static double touching(List<Stop> route, int i, int j) {
+        double length = edge(route, i - 1, i) + edge(route, i, i + 1) + edge(route, j, j + 1);
+        if (j - 1 != i) {
+            length += edge(route, j - 1, j);
+        }
+        return length;
+    }
+
+    // Reverses runs of consecutive free stops when that shortens the path
+    private static boolean twoOpt(List<Stop> route, long deadlineNanos) {
+        boolean improved = false;
+        for (int i = 0; i < route.size(); i++) {
+            if (route.get(i).pinned()) {
+                continue;
+            }
+            for (int j = i + 1; j < route.size() && !route.get(j).pinned(); j++) {
+                if (System.nanoTime() >= deadlineNanos) {
+                    return improved;
+                }
+                double before = edge(route, i - 1, i) + edge(route, j, j + 1);
+                double after = edge(route, i - 1, j) + edge(route, i, j + 1);
+                if (after < before - 1e-6) {
+                    reverse(route, i, j);
+                    improved = true;
+                }
+            }
+        }
+        return improved;
+    }
+
+    private static double edge(List<Stop> route, int a, int b) {
+        if (a < 0 || b >= route.size()) {
+            return 0;
+        }
+        return distance(route.get(a), route.get(b));
+    }
+
+    private static void reverse(List<Stop> route, int from, int to) {
+        while (from < to) {
+            Stop tmp = route.get(from);
+            route.set(from++, route.get(to));
+            route.set(to--, tmp);
+        }
+    }
+
+    private static double distance(Stop a, Stop b) {
+        return GeoUtils.haversine(a.lat(), a.lng(), b.lat(), b.lng());
+    }
+}
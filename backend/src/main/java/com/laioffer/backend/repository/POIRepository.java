@@ -2,8 +2,12 @@ package com.laioffer.backend.repository;
 
 import com.laioffer.backend.entity.POI;
 import com.laioffer.backend.entity.POIType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -12,15 +16,24 @@ import java.util.Optional;
 
 @Repository
 public interface POIRepository extends JpaRepository<POI, Long> {
+    // Query cache region for the active-POI lists; writes through Hibernate invalidate it via the
+    // update timestamps, writes that bypass it (COPY import) must evict it explicitly
+    String ACTIVE_QUERY_REGION = "poi-active-queries";
+
     // Find active POI by ID
     @Query("SELECT p FROM POI p WHERE p.id = :id AND p.isActive = true")
     Optional<POI> findActiveById(@Param("id") Long id);
 
     // Find all active POIs
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ACTIVE_QUERY_REGION)
+    })
     @Query("SELECT p FROM POI p WHERE p.isActive = true")
     List<POI> findAllActive();
 
-    // Soft delete
+    // Soft delete. A bulk update: it empties the whole POI cache region, prefer changing the entity
+    @Modifying
     @Query("UPDATE POI p SET p.isActive = false, p.deletedAt = CURRENT_TIMESTAMP WHERE p.id = :id")
     void softDelete(@Param("id") Long id);
 
@@ -37,9 +50,10 @@ public interface POIRepository extends JpaRepository<POI, Long> {
     );
 
     // Find nearby active POIs within radius
+    // Cast to geography so the radius is in metres rather than degrees of the 4326 geometry
     @Query(value = "SELECT * FROM poi " +
             "WHERE is_active = true " +
-            "AND ST_DWithin(location, ST_SetSRID(ST_MakePoint(:lng, :lat), 4326), :radiusInMeters)",
+            "AND ST_DWithin(CAST(location AS geography), CAST(ST_SetSRID(ST_MakePoint(:lng, :lat), 4326) AS geography), :radiusInMeters)",
             nativeQuery = true)
     List<POI> findNearbyPOIs(
             @Param("lat") double lat,
@@ -47,7 +61,95 @@ public interface POIRepository extends JpaRepository<POI, Long> {
             @Param("radiusInMeters") double radiusInMeters
     );
 
+    // Row of a nearest-neighbour query; distance in metres on the sphere
+    interface POIDistance {
+        Long getId();
+
+        Double getDistance();
+    }
+
+    // n closest active POIs, optionally of one type and/or category. <-> on geography is an index-assisted
+    // KNN scan over idx_poi_location_geog, so the LIMIT stops the walk instead of sorting every row
+    @Query(value = "SELECT id, CAST(location AS geography) <-> CAST(ST_SetSRID(ST_MakePoint(:lng, :lat), 4326) AS geography) AS distance " +
+            "FROM poi " +
+            "WHERE is_active = true " +
+            "AND (CAST(:type AS varchar) IS NULL OR poi_type = CAST(:type AS varchar)) " +
+            "AND (CAST(:category AS varchar) IS NULL OR category = CAST(:category AS varchar)) " +
+            "ORDER BY CAST(location AS geography) <-> CAST(ST_SetSRID(ST_MakePoint(:lng, :lat), 4326) AS geography) " +
+            "LIMIT :n",
+            nativeQuery = true)
+    List<POIDistance> findNearest(
+            @Param("lat") double lat,
+            @Param("lng") double lng,
+            @Param("n") int n,
+            @Param("type") String type,
+            @Param("category") String category
+    );
+
+    // Fallback name search while the in-memory typeahead index is not available; a sequential scan
+    @Query(value = "SELECT * FROM poi " +
+            "WHERE is_active = true " +
+            "AND (name ILIKE :pattern OR category ILIKE :pattern) " +
+            "ORDER BY length(name) " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<POI> searchByName(@Param("pattern") String pattern, @Param("limit") int limit);
+
+    // Active POIs inside a lng/lat box; && against the envelope uses the GiST index on location
+    @Query(value = "SELECT * FROM poi " +
+            "WHERE is_active = true " +
+            "AND location && ST_MakeEnvelope(:minLng, :minLat, :maxLng, :maxLat, 4326)",
+            nativeQuery = true)
+    List<POI> findActiveInBox(
+            @Param("minLng") double minLng,
+            @Param("minLat") double minLat,
+            @Param("maxLng") double maxLng,
+            @Param("maxLat") double maxLat
+    );
+
+    // One grid cell of clusterActiveInBox: its POI count, their mean position, the lowest id (the POI itself
+    // when count is 1) and the per-type counts as "TYPE:n,TYPE:n"
+    interface GridCluster {
+        Long getCount();
+
+        Double getLng();
+
+        Double getLat();
+
+        Long getId();
+
+        String getTypes();
+    }
+
+    // Active POIs in a lng/lat box grouped into square cells of cellSize on the unit Web Mercator square,
+    // the same projection and cell width ClusterIndex uses. Only the groups leave the database, at most limit
+    // of them; latitudes are clamped to the Mercator range first, as the in-memory index does
+    @Query(value = "SELECT CAST(sum(n) AS bigint) AS count, sum(sum_lng) / sum(n) AS lng, sum(sum_lat) / sum(n) AS lat, " +
+            "min(min_id) AS id, string_agg(poi_type || ':' || n, ',') AS types " +
+            "FROM (SELECT floor((ST_X(location) / 360 + 0.5) / :cellSize) AS cx, " +
+            "floor((0.5 - ln(tan(pi() / 4 + radians(greatest(least(ST_Y(location), 85.0511), -85.0511)) / 2)) / (2 * pi())) / :cellSize) AS cy, " +
+            "poi_type, count(*) AS n, sum(ST_X(location)) AS sum_lng, sum(ST_Y(location)) AS sum_lat, min(id) AS min_id " +
+            "FROM poi " +
+            "WHERE is_active = true " +
+            "AND location && ST_MakeEnvelope(:minLng, :minLat, :maxLng, :maxLat, 4326) " +
+            "GROUP BY cx, cy, poi_type) typed " +
+            "GROUP BY cx, cy " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<GridCluster> clusterActiveInBox(
+            @Param("minLng") double minLng,
+            @Param("minLat") double minLat,
+            @Param("maxLng") double maxLng,
+            @Param("maxLat") double maxLat,
+            @Param("cellSize") double cellSize,
+            @Param("limit") int limit
+    );
+
     // Find active POIs by type
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = ACTIVE_QUERY_REGION)
+    })
     @Query("SELECT p FROM POI p WHERE p.poiType = :type AND p.isActive = true")
     List<POI> findActiveByType(@Param("type") POIType type);
 
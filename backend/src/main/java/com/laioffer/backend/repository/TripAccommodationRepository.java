@@ -4,16 +4,15 @@ import com.laioffer.backend.entity.TripAccommodation;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
-import java.time.LocalDate;
 import java.util.List;
-import java.util.Optional;
 
 @Repository
 public interface TripAccommodationRepository extends JpaRepository<TripAccommodation, Long> {
     List<TripAccommodation> findByTripId(Long tripId);
     List<TripAccommodation> findByTripIdOrderByCheckInDate(Long tripId);
 
-    @Query("SELECT ta FROM TripAccommodation ta WHERE ta.trip.id = :tripId " +
-            "AND :date BETWEEN ta.checkInDate AND ta.checkOutDate")
-    Optional<TripAccommodation> findByTripIdAndDate(Long tripId, LocalDate date);
+    // Fetch the POI in the same statement, it is lazy on the entity
+    @Query("SELECT ta FROM TripAccommodation ta JOIN FETCH ta.poi WHERE ta.trip.id = :tripId " +
+            "ORDER BY ta.checkInDate")
+    List<TripAccommodation> findWithPoiByTripId(Long tripId);
 }
\ No newline at end of file
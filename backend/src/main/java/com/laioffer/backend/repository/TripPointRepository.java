@@ -2,20 +2,27 @@ package com.laioffer.backend.repository;
 
 import com.laioffer.backend.entity.PointType;
 import com.laioffer.backend.entity.TripPoint;
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface TripPointRepository extends JpaRepository<TripPoint, Long> {
     // Existing queries
     List<TripPoint> findByTripIdAndDate(Long tripId, LocalDate Date);
     List<TripPoint> findByTripIdOrderByDateAsc(Long tripId);
+    List<TripPoint> findByTripIdOrderByDateAscVisitOrderAsc(Long tripId);
 
     // Get all trip points for a given trip
     List<TripPoint> findByTripId(Long tripId);
@@ -23,9 +30,39 @@ public interface TripPointRepository extends JpaRepository<TripPoint, Long> {
     // Get trip points by trip id and a specific point type (if needed)
     List<TripPoint> findByTripIdAndPointType(Long tripId, PointType pointType);
 
-    // Get trip points for a specific day across all trips
-    @Query("SELECT tp FROM TripPoint tp WHERE tp.date = :date ORDER BY tp.trip.id, tp.visitOrder")
-    List<TripPoint> findByDay(@Param("date") LocalDate date);
+    // One page of the trip points on a day across all trips, keyset-paginated on (trip_id, visit_order, id).
+    // A null visit_order sorts last, as it did with the plain ORDER BY; idx_trip_points_day_keyset backs this.
+    @Query(value = "SELECT * FROM trip_points " +
+            "WHERE date = :date " +
+            "AND (trip_id, COALESCE(visit_order, 2147483647), id) > (:tripId, :visitOrder, :id) " +
+            "ORDER BY trip_id, COALESCE(visit_order, 2147483647), id " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<TripPoint> findDayPage(
+            @Param("date") LocalDate date,
+            @Param("tripId") long tripId,
+            @Param("visitOrder") int visitOrder,
+            @Param("id") long id,
+            @Param("limit") int limit
+    );
+
+    // Same ordering as findDayPage, fetched through a server-side cursor; needs an open transaction
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT tp FROM TripPoint tp WHERE tp.date = :date " +
+            "ORDER BY tp.trip.id, COALESCE(tp.visitOrder, 2147483647), tp.id")
+    Stream<TripPoint> streamByDay(@Param("date") LocalDate date);
+
+    // Whole trip in itinerary order through a server-side cursor, for exports; needs an open transaction
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT tp FROM TripPoint tp WHERE tp.trip.id = :tripId " +
+            "ORDER BY tp.date, COALESCE(tp.visitOrder, 2147483647), tp.id")
+    Stream<TripPoint> streamByTripId(@Param("tripId") Long tripId);
 
     //remove all trip points by trip id
     @Modifying
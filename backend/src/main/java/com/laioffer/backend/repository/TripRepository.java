@@ -1,7 +1,15 @@
 package com.laioffer.backend.repository;
 
 import com.laioffer.backend.entity.Trip;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -11,4 +19,23 @@ public interface TripRepository extends JpaRepository<Trip, Long> {
     List<Trip> findByUserId(Long userId);
     List<Trip> findByUserIdOrderByStartDateDesc(Long userId);
     Optional<Trip> findById(Long tripId);
+
+    // Row lock on the trip, so changes that check its other rows first (overlapping stays) run one at a time
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Trip t WHERE t.id = :id")
+    Optional<Trip> findByIdForUpdate(@Param("id") Long id);
+
+    // Primary-key lookups of a single column, enough to answer a conditional GET
+    @Query("SELECT t.version FROM Trip t WHERE t.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    @Query(value = "SELECT points_version FROM trips WHERE id = :id", nativeQuery = true)
+    Optional<Long> findPointsVersionById(@Param("id") Long id);
+
+    // Declared as touching trip_points only: points_version isn't Trip state, so cached Trips stay valid.
+    // A JPQL bulk update (or an undeclared native one) would empty the whole Trip cache region.
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "trip_points"))
+    @Query(value = "UPDATE trips SET points_version = points_version + 1 WHERE id = :id", nativeQuery = true)
+    int bumpPointsVersion(@Param("id") Long id);
 }
\ No newline at end of file
@@ -3,7 +3,12 @@ package com.laioffer.backend.repository;
 import com.laioffer.backend.entity.User;
 import lombok.NonNull;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -14,4 +19,16 @@ public interface UserRepository extends JpaRepository<User, Long> {
     boolean existsByUsername(String username);
     boolean existsById(@NonNull Long id);
 
+    // Touches only image_url so a finishing avatar upload can't overwrite a concurrent profile edit
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.imageUrl = :imageUrl WHERE u.id = :id")
+    int updateImageUrl(@Param("id") Long id, @Param("imageUrl") String imageUrl);
+
+    @Query("SELECT u.imageUrl FROM User u WHERE u.imageUrl IS NOT NULL")
+    List<String> findAllImageUrls();
+
+    @Query("SELECT u.username, u.email FROM User u")
+    List<Object[]> findAllUsernamesAndEmails();
+
 }
\ No newline at end of file
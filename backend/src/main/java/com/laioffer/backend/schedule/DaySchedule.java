@@ -0,0 +1,249 @@
+package com.laioffer.backend.schedule;
+
+import com.laioffer.backend.geo.GeoUtils;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Arrival and departure of every stop of one day, from travel-time estimates between consecutive stops.
+// A stop with a plannedTime starts then, or as soon as it can be reached; one without starts as soon as
+// the previous stop is left and the travel done. Each stop depends only on the stops before it, so an edit
+// at position k keeps 0..k-1 and recomputes forward only until a later stop comes out exactly as before
+// (typically the next fixed-time stop with enough slack absorbs the change). Immutable; edits return a copy.
+public final class DaySchedule {
+
+    public record Settings(LocalTime dayStart,
+                           int defaultDurationMinutes,
+                           double walkingSpeedKmh,
+                           double maxWalkingMeters,
+                           double transitSpeedKmh,
+                           int transitOverheadMinutes,
+                           double detourFactor,
+                           int maxDayMinutes) {
+
+        // Straight-line distance stretched to a street route; walked when short, otherwise transit plus a fixed overhead
+        public int travelMinutes(double meters) {
+            double routed = meters * detourFactor;
+            if (routed <= maxWalkingMeters) {
+                return (int) Math.ceil(routed / (walkingSpeedKmh * 1000 / 60));
+            }
+            return transitOverheadMinutes + (int) Math.ceil(routed / (transitSpeedKmh * 1000 / 60));
+        }
+    }
+
+    // lat / lng may be null: no travel is estimated to or from a stop without a location
+    public record Stop(long id, Integer visitOrder, Double lat, Double lng, LocalTime plannedTime,
+                       Integer durationMinutes) {
+
+        boolean located() {
+            return lat != null && lng != null;
+        }
+    }
+
+    // Minutes after midnight of the day; past 1440 is the next morning
+    public record Visit(long id, int arrivalMinute, int departureMinute, int travelMinutes, int waitMinutes) {
+    }
+
+    public enum IssueType {
+        // The previous stop is still going at this one's planned time
+        OVERLAP,
+        // The gap before this one's planned time is shorter than the travel to it
+        UNREACHABLE,
+        // Longer than maxDayMinutes, or ending after midnight
+        DAY_TOO_LONG
+    }
+
+    // pointId is null for the whole day; minutes is by how much it is off
+    public record Issue(IssueType type, Long pointId, int minutes, String message) {
+    }
+
+    // Same order as the itinerary: visitOrder with nulls last, then id
+    private static final Comparator<Stop> ORDER = Comparator
+            .comparing(Stop::visitOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(Stop::id);
+
+    private final Settings settings;
+    private final Stop[] stops;
+    private final int[] travel;
+    private final int[] arrival;
+    private final int[] departure;
+    private final int recomputed;
+
+    private DaySchedule(Settings settings, Stop[] stops, DaySchedule previous, int from) {
+        this.settings = settings;
+        this.stops = stops;
+        int n = stops.length;
+        this.travel = new int[n];
+        this.arrival = new int[n];
+        this.departure = new int[n];
+        if (previous != null) {
+            System.arraycopy(previous.travel, 0, travel, 0, from);
+            System.arraycopy(previous.arrival, 0, arrival, 0, from);
+            System.arraycopy(previous.departure, 0, departure, 0, from);
+        }
+
+        // Past both edited positions stop i here is stop i + shift of the previous schedule
+        int shift = previous != null ? previous.stops.length - n : 0;
+        int i = from;
+        while (i < n) {
+            compute(i);
+            int j = i + shift;
+            boolean converged = previous != null && j >= 0 && j < previous.stops.length
+                    && previous.stops[j] == stops[i] && stops[i].located()
+                    && previous.arrival[j] == arrival[i] && previous.departure[j] == departure[i];
+            i++;
+            if (converged) {
+                System.arraycopy(previous.travel, j + 1, travel, i, n - i);
+                System.arraycopy(previous.arrival, j + 1, arrival, i, n - i);
+                System.arraycopy(previous.departure, j + 1, departure, i, n - i);
+                break;
+            }
+        }
+        this.recomputed = i - from;
+    }
+
+    public static DaySchedule of(List<Stop> stops, Settings settings) {
+        Stop[] sorted = stops.toArray(new Stop[0]);
+        Arrays.sort(sorted, ORDER);
+        return new DaySchedule(settings, sorted, null, 0);
+    }
+
+    // Inserts the stop, or replaces (and if its visitOrder changed, moves) the one with the same id
+    public DaySchedule withStop(Stop stop) {
+        int removed = indexOf(stop.id());
+        List<Stop> list = new ArrayList<>(Arrays.asList(stops));
+        if (removed >= 0) {
+            list.remove(removed);
+        }
+        int inserted = insertionPoint(list, stop);
+        list.add(inserted, stop);
+        int from = removed >= 0 ? Math.min(removed, inserted) : inserted;
+        return new DaySchedule(settings, list.toArray(new Stop[0]), this, from);
+    }
+
+    public DaySchedule withoutStop(long id) {
+        int removed = indexOf(id);
+        if (removed < 0) {
+            return this;
+        }
+        List<Stop> list = new ArrayList<>(Arrays.asList(stops));
+        list.remove(removed);
+        return new DaySchedule(settings, list.toArray(new Stop[0]), this, removed);
+    }
+
+    public int size() {
+        return stops.length;
+    }
+
+    // How many stops the edit that produced this schedule had to recompute
+    public int recomputedStops() {
+        return recomputed;
+    }
+
+    public List<Visit> visits() {
+        List<Visit> visits = new ArrayList<>(stops.length);
+        for (int i = 0; i < stops.length; i++) {
+            visits.add(new Visit(stops[i].id(), arrival[i], departure[i], travel[i], waitMinutes(i)));
+        }
+        return visits;
+    }
+
+    public List<Issue> issues() {
+        List<Issue> issues = new ArrayList<>();
+        for (int i = 1; i < stops.length; i++) {
+            LocalTime planned = stops[i].plannedTime();
+            if (planned == null) {
+                continue;
+            }
+            int start = minuteOf(planned);
+            if (departure[i - 1] > start) {
+                issues.add(new Issue(IssueType.OVERLAP, stops[i].id(), departure[i - 1] - start,
+                        "Previous stop ends at " + format(departure[i - 1]) + ", after the planned start at "
+                                + format(start)));
+            } else if (departure[i - 1] + travel[i] > start) {
+                issues.add(new Issue(IssueType.UNREACHABLE, stops[i].id(), departure[i - 1] + travel[i] - start,
+                        "Needs " + travel[i] + " min of travel but only " + (start - departure[i - 1])
+                                + " min are left before " + format(start)));
+            }
+        }
+        if (stops.length > 0) {
+            int end = departure[stops.length - 1];
+            int length = end - arrival[0];
+            if (length > settings.maxDayMinutes()) {
+                issues.add(new Issue(IssueType.DAY_TOO_LONG, null, length - settings.maxDayMinutes(),
+                        "Day runs " + length / 60 + "h" + String.format("%02d", length % 60)
+                                + ", longer than " + settings.maxDayMinutes() / 60 + "h"));
+            } else if (end > 24 * 60) {
+                issues.add(new Issue(IssueType.DAY_TOO_LONG, null, end - 24 * 60,
+                        "Day ends after midnight, at " + format(end)));
+            }
+        }
+        return issues;
+    }
+
+    private void compute(int i) {
+        Stop stop = stops[i];
+        int duration = stop.durationMinutes() != null ? Math.max(0, stop.durationMinutes())
+                : settings.defaultDurationMinutes();
+        int planned = stop.plannedTime() != null ? minuteOf(stop.plannedTime()) : -1;
+        if (i == 0) {
+            travel[0] = 0;
+            arrival[0] = planned >= 0 ? planned : minuteOf(settings.dayStart());
+        } else {
+            Stop origin = lastLocatedBefore(i);
+            travel[i] = origin != null && stop.located()
+                    ? settings.travelMinutes(GeoUtils.haversine(origin.lat(), origin.lng(), stop.lat(), stop.lng()))
+                    : 0;
+            arrival[i] = Math.max(planned, departure[i - 1] + travel[i]);
+        }
+        departure[i] = arrival[i] + duration;
+    }
+
+    private int waitMinutes(int i) {
+        return i == 0 ? 0 : arrival[i] - departure[i - 1] - travel[i];
+    }
+
+    private Stop lastLocatedBefore(int i) {
+        for (int k = i - 1; k >= 0; k--) {
+            if (stops[k].located()) {
+                return stops[k];
+            }
+        }
+        return null;
+    }
+
+    private int indexOf(long id) {
+        for (int i = 0; i < stops.length; i++) {
+            if (stops[i].id() == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int insertionPoint(List<Stop> sorted, Stop stop) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (ORDER.compare(sorted.get(mid), stop) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int minuteOf(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static String format(int minute) {
+        String time = String.format("%02d:%02d", minute / 60 % 24, minute % 60);
+        return minute >= 24 * 60 ? time + " (+" + minute / (24 * 60) + "d)" : time;
+    }
+}
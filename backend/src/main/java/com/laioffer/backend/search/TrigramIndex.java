@@ -0,0 +1,508 @@
+package com.laioffer.backend.search;
+
+import com.laioffer.backend.geo.GeoUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+// Typeahead over short names: each word is padded with two leading blanks and cut into trigrams,
+// so "pa" already matches every word starting with "pa" and longer queries tolerate typos.
+// Matches are counted per slot across the query's posting lists; by pigeonhole only the rarest few
+// lists can produce candidates, the rest just add to their counts. Slots are only ever appended, which
+// keeps every posting list sorted by slot. Bulk-loaded and compacted slots are numbered in Z-order, so a
+// list's prefix is also sorted by place; postings appended since are kept sorted by place on the side.
+// Removals leave tombstones, and a compaction renumbers the live slots once the tombstones outnumber them
+// or the appended postings grow past a quarter of the index.
+public class TrigramIndex<T> {
+
+    public record Entry<T>(long id, String name, String category, double lat, double lng, T value) {
+    }
+
+    public record Match<T>(long id, T value, double score) {
+    }
+
+    // Share of the query trigrams a name has to contain to count as a (fuzzy) match
+    private static final double MIN_SIMILARITY = 0.6;
+    private static final int INITIAL_CAPACITY = 1024;
+    // Postings read per query from the lists candidates come from; bounds the cost of one- and two-letter queries.
+    // With a centre they are the ones nearest to it; without one place says nothing about the score, so the
+    // lists are read whole up to a larger budget and sampled evenly beyond it
+    private static final int MAX_CANDIDATES = 5_000;
+    private static final int MAX_CANDIDATES_WITHOUT_CENTRE = 100_000;
+    private static final int MAX_QUERY_TRIGRAMS = 64;
+    // Match counters are as long as the index, so they are pooled rather than per (virtual) thread
+    private static final Queue<Counters> COUNTERS = new ConcurrentLinkedQueue<>();
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private double[] lats = new double[INITIAL_CAPACITY];
+    private double[] lngs = new double[INITIAL_CAPACITY];
+    private long[] spatialKeys = new long[INITIAL_CAPACITY];
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int slotCount;
+    // Slots put since the last compaction, whose postings sit in the side lists
+    private int appendedSlots;
+    private long nameChars;
+
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Bulk load in Z-order, so the posting lists of common trigrams are laid out by place
+    public static <T> TrigramIndex<T> of(List<Entry<T>> entries) {
+        List<Entry<T>> ordered = new ArrayList<>(entries);
+        ordered.sort(Comparator.comparing((Entry<T> e) -> spatialKey(e.lat(), e.lng()), Long::compareUnsigned));
+        TrigramIndex<T> index = new TrigramIndex<>();
+        for (Entry<T> entry : ordered) {
+            index.insert(entry.id(), entry.name(), entry.category(), entry.lat(), entry.lng(), entry.value(), true);
+        }
+        return index;
+    }
+
+    // Inserts or replaces the entry. Name and category are both searchable; lat/lng may be NaN
+    public void put(long id, String name, String category, double lat, double lng, T value) {
+        lock.writeLock().lock();
+        try {
+            insert(id, name, category, lat, lng, value, false);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            Integer slot = slotById.remove(id);
+            if (slot == null) {
+                return false;
+            }
+            kill(slot);
+            compactIfNeeded();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Best matches first. With a centre (lat/lng not NaN) the text score is scaled down with distance:
+    // to three quarters at decayMeters, towards a half far away, so a close partial match can beat a distant exact one
+    public List<Match<T>> search(String query, int limit, double lat, double lng, double decayMeters) {
+        String normalized = normalize(query);
+        long[] queryTrigrams = trigrams(normalized);
+        if (queryTrigrams.length == 0 || limit <= 0) {
+            return List.of();
+        }
+        if (queryTrigrams.length > MAX_QUERY_TRIGRAMS) {
+            queryTrigrams = Arrays.copyOf(queryTrigrams, MAX_QUERY_TRIGRAMS);
+        }
+        boolean weighted = !Double.isNaN(lat) && !Double.isNaN(lng);
+        String wordPrefix = " " + normalized;
+        double cosLat = weighted ? Math.cos(Math.toRadians(lat)) : 0;
+        PriorityQueue<Match<T>> best = new PriorityQueue<>(limit + 1, Comparator.comparingDouble(Match::score));
+
+        Counters counters = COUNTERS.poll();
+        if (counters == null) {
+            counters = new Counters();
+        }
+        lock.readLock().lock();
+        try {
+            IntList[] lists = new IntList[queryTrigrams.length];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = postings.getOrDefault(queryTrigrams[i], IntList.EMPTY);
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+            int required = Math.max(1, (int) Math.ceil(lists.length * MIN_SIMILARITY));
+            // Anything with `required` of the trigrams appears in at least one of the rarest lists.length - required + 1
+            int candidateLists = lists.length - required + 1;
+
+            counters.reset(slotCount);
+            long centreKey = weighted ? spatialKey(lat, lng) : 0;
+            int window = (weighted ? MAX_CANDIDATES : MAX_CANDIDATES_WITHOUT_CENTRE) / candidateLists;
+            for (int i = 0; i < candidateLists; i++) {
+                IntList list = lists[i];
+                if (list.size <= window) {
+                    for (int j = 0; j < list.size; j++) {
+                        counters.increment(list.items[j]);
+                    }
+                } else if (weighted) {
+                    // Too common to read whole: the postings nearest the centre in Z-order, from the ordered
+                    // prefix and the side list in proportion to their sizes
+                    int appended = list.size - list.ordered;
+                    int fromAppended = (int) (((long) window * appended + list.size - 1) / list.size);
+                    countAround(list.items, list.ordered, centreKey, window - fromAppended, counters);
+                    countAround(list.byPlace, appended, centreKey, fromAppended, counters);
+                } else {
+                    // An even sample; slots are numbered in Z-order, so it is spread over the whole map
+                    for (int j = 0; j < window; j++) {
+                        counters.increment(list.items[(int) ((long) j * list.size / window)]);
+                    }
+                }
+            }
+            // The other lists only top up candidates already found: scan them when short, probe them when long
+            for (int i = candidateLists; i < lists.length; i++) {
+                IntList list = lists[i];
+                // A probe is a binary search, about log2(size) reads
+                if (list.size < (long) counters.touchedCount * (32 - Integer.numberOfLeadingZeros(list.size))) {
+                    for (int j = 0; j < list.size; j++) {
+                        counters.incrementIfTouched(list.items[j]);
+                    }
+                } else {
+                    for (int t = 0; t < counters.touchedCount; t++) {
+                        int slot = counters.touched[t];
+                        if (list.contains(slot)) {
+                            counters.increment(slot);
+                        }
+                    }
+                }
+            }
+
+            for (int t = 0; t < counters.touchedCount; t++) {
+                int slot = counters.touched[t];
+                int matched = counters.counts[slot];
+                if (matched < required || values[slot] == null) {
+                    continue;
+                }
+                double score = textScore(names[slot], normalized, wordPrefix, matched, lists.length);
+                if (best.size() == limit && score <= best.peek().score()) {
+                    // Distance only ever lowers the score
+                    continue;
+                }
+                if (weighted && !Double.isNaN(lats[slot])) {
+                    score *= 0.5 + 0.5 / (1 + approximateDistance(lat, lng, cosLat, lats[slot], lngs[slot]) / decayMeters);
+                }
+                if (best.size() < limit) {
+                    best.add(match(slot, score));
+                } else if (score > best.peek().score()) {
+                    best.poll();
+                    best.add(match(slot, score));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+            COUNTERS.offer(counters);
+        }
+
+        List<Match<T>> result = new ArrayList<>(best);
+        result.sort(Comparator.comparingDouble((Match<T> m) -> m.score()).reversed());
+        return result;
+    }
+
+    // Rough heap footprint: the slot arrays, the names, and the posting lists with their map entries
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = (long) ids.length * (8 + 8 + 8 + 8 + 4 + 4);
+            bytes += nameChars + 56L * slotCount;
+            bytes += 48L * slotById.size();
+            for (IntList list : postings.values()) {
+                bytes += 48 + 32 + 16 + 4L * list.items.length + 4L * list.byPlace.length;
+            }
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lower-case, accents stripped, anything but letters and digits turned into single blanks
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        return SEPARATORS.matcher(decomposed.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+
+    // Distinct trigrams of every word, each word prefixed with two blanks
+    static long[] trigrams(String normalized) {
+        if (normalized.isEmpty()) {
+            return new long[0];
+        }
+        long[] out = new long[normalized.length() * 3];
+        int count = 0;
+        for (String word : normalized.split(" ")) {
+            String padded = "  " + word;
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                out[count++] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+            }
+        }
+        return Arrays.stream(out, 0, count).sorted().distinct().toArray();
+    }
+
+    // Share of query trigrams found, plus a bonus when the name (or one of its words) starts with the query.
+    // The small length penalty ranks "Louvre" ahead of "Louvre Museum Gift Shop"
+    private static double textScore(String name, String query, String wordPrefix, int matched, int total) {
+        double score = (double) matched / total;
+        if (name.startsWith(query)) {
+            score += 0.5;
+        } else if (name.contains(wordPrefix)) {
+            score += 0.25;
+        }
+        return score - 0.002 * Math.max(0, name.length() - query.length());
+    }
+
+    // Equirectangular distance in metres: plenty for ranking, and no trigonometry per candidate
+    private static double approximateDistance(double lat, double lng, double cosLat, double otherLat, double otherLng) {
+        double dLng = Math.abs(otherLng - lng);
+        if (dLng > 180) {
+            dLng = 360 - dLng;
+        }
+        double x = Math.toRadians(dLng) * cosLat;
+        double y = Math.toRadians(otherLat - lat);
+        return Math.sqrt(x * x + y * y) * GeoUtils.EARTH_RADIUS_METERS;
+    }
+
+    // Counts count slots of the place-sorted slots[0, length) nearest to the key
+    private void countAround(int[] slots, int length, long key, int count, Counters counters) {
+        int from = Math.max(0, Math.min(length - count, lowerBound(slots, length, key) - count / 2));
+        int to = Math.min(length, from + count);
+        for (int j = from; j < to; j++) {
+            counters.increment(slots[j]);
+        }
+    }
+
+    // First position in the place-sorted slots[0, length) whose slot lies at or after the key in Z-order
+    private int lowerBound(int[] slots, int length, long key) {
+        int low = 0;
+        int high = length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(spatialKeys[slots[mid]], key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Z-order (Morton) key of a coordinate: interleaved 32-bit lat and lng cells
+    static long spatialKey(double lat, double lng) {
+        if (Double.isNaN(lat) || Double.isNaN(lng)) {
+            return -1L;
+        }
+        long y = (long) ((Math.max(-90.0, Math.min(90.0, lat)) + 90.0) / 180.0 * 0xffffffffL);
+        long x = (long) ((Math.max(-180.0, Math.min(180.0, lng)) + 180.0) / 360.0 * 0xffffffffL);
+        return spread(x) | (spread(y) << 1);
+    }
+
+    private static long spread(long v) {
+        v &= 0xffffffffL;
+        v = (v | (v << 16)) & 0x0000ffff0000ffffL;
+        v = (v | (v << 8)) & 0x00ff00ff00ff00ffL;
+        v = (v | (v << 4)) & 0x0f0f0f0f0f0f0f0fL;
+        v = (v | (v << 2)) & 0x3333333333333333L;
+        v = (v | (v << 1)) & 0x5555555555555555L;
+        return v;
+    }
+
+    // inPlaceOrder: the caller inserts in Z-order into a fresh index, so postings can go straight to the ordered prefix
+    private void insert(long id, String name, String category, double lat, double lng, T value, boolean inPlaceOrder) {
+        String normalizedName = normalize(name);
+        long[] trigrams = trigrams(normalizedName + " " + normalize(category));
+        Integer existing = slotById.remove(id);
+        if (existing != null) {
+            kill(existing);
+        }
+        int slot = nextSlot();
+        ids[slot] = id;
+        names[slot] = normalizedName;
+        lats[slot] = lat;
+        lngs[slot] = lng;
+        spatialKeys[slot] = spatialKey(lat, lng);
+        values[slot] = value;
+        nameChars += normalizedName.length();
+        slotById.put(id, slot);
+        if (!inPlaceOrder) {
+            appendedSlots++;
+        }
+        for (long trigram : trigrams) {
+            IntList list = postings.computeIfAbsent(trigram, k -> new IntList());
+            list.add(slot);
+            if (inPlaceOrder) {
+                list.ordered = list.size;
+            } else {
+                list.addByPlace(lowerBound(list.byPlace, list.size - 1 - list.ordered, spatialKeys[slot]), slot);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Match<T> match(int slot, double score) {
+        return new Match<>(ids[slot], (T) values[slot], score);
+    }
+
+    private void kill(int slot) {
+        nameChars -= names[slot].length();
+        values[slot] = null;
+        names[slot] = null;
+    }
+
+    private int nextSlot() {
+        if (slotCount == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            lats = Arrays.copyOf(lats, capacity);
+            lngs = Arrays.copyOf(lngs, capacity);
+            spatialKeys = Arrays.copyOf(spatialKeys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        return slotCount++;
+    }
+
+    // Renumbers the live slots in Z-order, which drops the tombstones and puts the appended postings back
+    // into the ordered prefixes
+    private void compactIfNeeded() {
+        int live = slotById.size();
+        int dead = slotCount - live;
+        if (dead <= Math.max(INITIAL_CAPACITY, live) && appendedSlots <= Math.max(INITIAL_CAPACITY, live / 4)) {
+            return;
+        }
+        int[] order = IntStream.range(0, slotCount)
+                .filter(slot -> values[slot] != null)
+                .boxed()
+                .sorted((a, b) -> Long.compareUnsigned(spatialKeys[a], spatialKeys[b]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        int[] newSlot = new int[slotCount];
+        Arrays.fill(newSlot, -1);
+        long[] newIds = new long[ids.length];
+        String[] newNames = new String[ids.length];
+        double[] newLats = new double[ids.length];
+        double[] newLngs = new double[ids.length];
+        long[] newSpatialKeys = new long[ids.length];
+        Object[] newValues = new Object[ids.length];
+        for (int next = 0; next < order.length; next++) {
+            int slot = order[next];
+            newSlot[slot] = next;
+            newIds[next] = ids[slot];
+            newNames[next] = names[slot];
+            newLats[next] = lats[slot];
+            newLngs[next] = lngs[slot];
+            newSpatialKeys[next] = spatialKeys[slot];
+            newValues[next] = values[slot];
+            slotById.put(newIds[next], next);
+        }
+        ids = newIds;
+        names = newNames;
+        lats = newLats;
+        lngs = newLngs;
+        spatialKeys = newSpatialKeys;
+        values = newValues;
+        slotCount = order.length;
+        appendedSlots = 0;
+
+        postings.values().removeIf(list -> {
+            list.remap(newSlot);
+            return list.size == 0;
+        });
+    }
+
+    // Sorted growable int array of slot numbers
+    private static final class IntList {
+        static final IntList EMPTY = new IntList();
+        private static final int[] NONE = new int[0];
+
+        private int[] items = new int[2];
+        private int size;
+        // items[0, ordered) are also sorted by place; the rest are in byPlace too, sorted by place
+        private int ordered;
+        private int[] byPlace = NONE;
+
+        // Slots arrive in increasing order, so appending keeps the list sorted
+        void add(int value) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = value;
+        }
+
+        void addByPlace(int position, int value) {
+            int appended = size - 1 - ordered;
+            if (appended == byPlace.length) {
+                byPlace = Arrays.copyOf(byPlace, Math.max(2, appended * 2));
+            }
+            System.arraycopy(byPlace, position, byPlace, position + 1, appended - position);
+            byPlace[position] = value;
+        }
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(items, 0, size, value) >= 0;
+        }
+
+        void remap(int[] newSlot) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int mapped = newSlot[items[i]];
+                if (mapped >= 0) {
+                    items[kept++] = mapped;
+                }
+            }
+            size = kept;
+            // Slots were renumbered in Z-order: sorted by slot is sorted by place again
+            Arrays.sort(items, 0, size);
+            ordered = size;
+            byPlace = NONE;
+            if (items.length > 2 * Math.max(2, size)) {
+                items = Arrays.copyOf(items, Math.max(2, size));
+            }
+        }
+    }
+
+    private static final class Counters {
+        byte[] counts = new byte[0];
+        int[] touched = new int[256];
+        int touchedCount;
+
+        void reset(int slots) {
+            for (int i = 0; i < touchedCount; i++) {
+                counts[touched[i]] = 0;
+            }
+            touchedCount = 0;
+            if (counts.length < slots) {
+                counts = new byte[Math.max(slots, counts.length * 2)];
+            }
+        }
+
+        void increment(int slot) {
+            if (counts[slot]++ == 0) {
+                if (touchedCount == touched.length) {
+                    touched = Arrays.copyOf(touched, touchedCount * 2);
+                }
+                touched[touchedCount++] = slot;
+            }
+        }
+
+        void incrementIfTouched(int slot) {
+            if (counts[slot] != 0) {
+                counts[slot]++;
+            }
+        }
+    }
+}
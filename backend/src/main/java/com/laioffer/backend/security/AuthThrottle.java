@@ -0,0 +1,161 @@
+package com.laioffer.backend.security;
+
+import com.laioffer.backend.exception.CustomException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Token buckets per username and per client IP, checked before any password work is queued.
+// A bucket that has been idle long enough to refill completely is dropped when room is needed; a fresh one is equivalent.
+@Component
+public class AuthThrottle {
+
+    private final Limiter byUsername;
+    private final Limiter byIp;
+    // Availability lookups per IP, apart from byIp so a signup form checking as the user types doesn't use up
+    // the budget for the register call that follows
+    private final Limiter lookupsByIp;
+
+    public AuthThrottle(MeterRegistry meterRegistry,
+                        @Value("${travelplanner.auth-throttle.username.capacity:5}") int usernameCapacity,
+                        @Value("${travelplanner.auth-throttle.username.refill-per-minute:5}") double usernameRefill,
+                        @Value("${travelplanner.auth-throttle.ip.capacity:20}") int ipCapacity,
+                        @Value("${travelplanner.auth-throttle.ip.refill-per-minute:30}") double ipRefill,
+                        @Value("${travelplanner.auth-throttle.lookup.capacity:30}") int lookupCapacity,
+                        @Value("${travelplanner.auth-throttle.lookup.refill-per-minute:60}") double lookupRefill,
+                        @Value("${travelplanner.auth-throttle.max-keys:100000}") int maxKeys) {
+        this.byUsername = new Limiter(usernameCapacity, usernameRefill, maxKeys,
+                Counter.builder("auth.throttled").tag("scope", "username").register(meterRegistry));
+        this.byIp = new Limiter(ipCapacity, ipRefill, maxKeys,
+                Counter.builder("auth.throttled").tag("scope", "ip").register(meterRegistry));
+        this.lookupsByIp = new Limiter(lookupCapacity, lookupRefill, maxKeys,
+                Counter.builder("auth.throttled").tag("scope", "lookup").register(meterRegistry));
+    }
+
+    // Throws 429 when either bucket is empty; username may be null for calls without one
+    public void check(String username, String clientIp) {
+        if (clientIp != null && !byIp.tryAcquire(clientIp)) {
+            throw new CustomException("Too many attempts, please slow down", HttpStatus.TOO_MANY_REQUESTS.value());
+        }
+        if (username != null && !byUsername.tryAcquire(username.toLowerCase())) {
+            throw new CustomException("Too many attempts, please slow down", HttpStatus.TOO_MANY_REQUESTS.value());
+        }
+    }
+
+    // Throws 429 when the IP has checked too many usernames or emails; each answer tells whether an account exists
+    public void checkLookup(String clientIp) {
+        if (clientIp != null && !lookupsByIp.tryAcquire(clientIp)) {
+            throw new CustomException("Too many attempts, please slow down", HttpStatus.TOO_MANY_REQUESTS.value());
+        }
+    }
+
+    private static final class Limiter {
+        private static final long SWEEP_INTERVAL_MILLIS = 1_000;
+
+        private final int capacity;
+        private final double tokensPerMilli;
+        private final int maxKeys;
+        private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong lastSweep = new AtomicLong();
+        private final Counter throttled;
+
+        Limiter(int capacity, double refillPerMinute, int maxKeys, Counter throttled) {
+            if (capacity < 1 || refillPerMinute <= 0) {
+                throw new IllegalArgumentException("Throttle capacity and refill rate must be positive");
+            }
+            this.capacity = capacity;
+            this.tokensPerMilli = refillPerMinute / 60_000.0;
+            this.maxKeys = maxKeys;
+            this.throttled = throttled;
+        }
+
+        boolean tryAcquire(String key) {
+            long now = System.currentTimeMillis();
+            while (true) {
+                Bucket bucket = buckets.get(key);
+                if (bucket == null) {
+                    // Only refilled buckets make room, so a flood of new keys can't reset anyone's bucket;
+                    // while the table is full of partly used ones, new keys are refused
+                    if (buckets.size() >= maxKeys && !sweep(now)) {
+                        throttled.increment();
+                        return false;
+                    }
+                    bucket = buckets.computeIfAbsent(key, k -> new Bucket(capacity, now));
+                }
+                Boolean acquired = bucket.tryAcquire(now, capacity, tokensPerMilli);
+                if (acquired == null) {
+                    // Swept while we held it; the next get sees its replacement
+                    continue;
+                }
+                if (!acquired) {
+                    throttled.increment();
+                }
+                return acquired;
+            }
+        }
+
+        // Drops buckets that have refilled completely, at most once per interval; true if there is room now
+        private boolean sweep(long now) {
+            long last = lastSweep.get();
+            if (now - last >= SWEEP_INTERVAL_MILLIS && lastSweep.compareAndSet(last, now)) {
+                buckets.values().removeIf(bucket -> bucket.retireIfFull(now, capacity, tokensPerMilli));
+            }
+            return buckets.size() < maxKeys;
+        }
+    }
+
+    private static final class Bucket {
+        private final ReentrantLock lock = new ReentrantLock();
+        private double tokens;
+        private long updatedAt;
+        // Removed from the map; a fresh bucket takes its place
+        private boolean retired;
+
+        Bucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.updatedAt = now;
+        }
+
+        // null when the bucket was retired
+        Boolean tryAcquire(long now, int capacity, double tokensPerMilli) {
+            lock.lock();
+            try {
+                if (retired) {
+                    return null;
+                }
+                refill(now, capacity, tokensPerMilli);
+                if (tokens < 1) {
+                    return false;
+                }
+                tokens -= 1;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // A full bucket is no different from a new one, so it can go
+        boolean retireIfFull(long now, int capacity, double tokensPerMilli) {
+            lock.lock();
+            try {
+                refill(now, capacity, tokensPerMilli);
+                retired = tokens >= capacity;
+                return retired;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void refill(long now, int capacity, double tokensPerMilli) {
+            tokens = Math.min(capacity, tokens + Math.max(0, now - updatedAt) * tokensPerMilli);
+            updatedAt = Math.max(updatedAt, now);
+        }
+    }
+}
@@ -1,9 +1,13 @@
 package com.laioffer.backend.security;
 
+import com.laioffer.backend.cache.ExpiringCache;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -13,6 +17,11 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -21,20 +30,26 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtHandler jwtHandler;
     private final UserDetailsService userDetailsService;
+    // SHA-256 of an already verified token -> its subject, kept until the token's exp
+    private final ExpiringCache<String, String> verifiedTokens;
 
-    public JwtAuthenticationFilter(JwtHandler jwtHandler, UserDetailsService userDetailsService) {
+    public JwtAuthenticationFilter(JwtHandler jwtHandler,
+                                   UserDetailsService userDetailsService,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${travelplanner.jwt.cache.max-size:10000}") int maxCachedTokens) {
         this.jwtHandler = jwtHandler;
         this.userDetailsService = userDetailsService;
+        this.verifiedTokens = new ExpiringCache<>(maxCachedTokens);
+        this.verifiedTokens.bindTo(meterRegistry, "jwt-tokens");
     }
 
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
             throws ServletException, IOException {
         String jwt = getJwtFromRequest(request);
+        String username = jwt != null ? resolveUsername(jwt) : null;
 
-        if (jwt != null && jwtHandler.parseUsername(jwt) != null) {
-            String username = jwtHandler.parseUsername(jwt);
-
+        if (username != null) {
             UserDetails userDetails = userDetailsService.loadUserByUsername(username);
 
             UsernamePasswordAuthenticationToken authentication =
@@ -46,11 +61,36 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Only a cache miss pays for the HMAC verification and claims parsing
+    private String resolveUsername(String jwt) {
+        String key = digest(jwt);
+        String username = verifiedTokens.get(key);
+        if (username != null) {
+            return username;
+        }
+        Claims claims = jwtHandler.parseClaims(jwt);
+        username = claims.getSubject();
+        Date expiration = claims.getExpiration();
+        if (username != null && expiration != null) {
+            verifiedTokens.put(key, username, expiration.getTime());
+        }
+        return username;
+    }
+
+    private static String digest(String jwt) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(jwt.getBytes(StandardCharsets.US_ASCII)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
     private String getJwtFromRequest(HttpServletRequest request) {
-        String bearerToken = request.getHeader("Authorization");
+        String bearerToken = request.getHeader(HEADER);
 
-        if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
-            return bearerToken.substring(7);
+        if (bearerToken != null && bearerToken.startsWith(PREFIX)) {
+            return bearerToken.substring(PREFIX.length());
         }
         return null;
     }
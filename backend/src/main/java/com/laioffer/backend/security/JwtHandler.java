@@ -1,5 +1,7 @@
 package com.laioffer.backend.security;
 
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -14,19 +16,24 @@ import java.util.Date;
 public class JwtHandler {
 
     private final Key signingKey;
+    // Parsers are immutable and thread-safe, build it once instead of per request
+    private final JwtParser jwtParser;
 
     public JwtHandler(@Value("${travelplanner.jwt.secret-key}") String secretKey) {
         byte[] bytes = Base64.getDecoder().decode(secretKey);
         this.signingKey = Keys.hmacShaKeyFor(bytes);
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
     }
 
     public String parseUsername(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(signingKey)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
+    }
+
+    // Verifies the signature and expiry, returns subject and exp together
+    public Claims parseClaims(String token) {
+        return jwtParser.parseClaimsJws(token).getBody();
     }
 
     public String generateToken(String username) {
@@ -1,7 +1,10 @@
 package com.laioffer.backend.security;
 
+import com.laioffer.backend.cache.ExpiringCache;
 import com.laioffer.backend.entity.User;
 import com.laioffer.backend.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -12,18 +15,40 @@ import org.springframework.stereotype.Service;
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserRepository userRepository;
+    // Short-lived so a stale principal can't outlive a change made on another instance for long.
+    // Holds immutable snapshots rather than entities: the same instance is every concurrent request's principal.
+    private final ExpiringCache<String, UserPrincipal> users;
+    private final long ttlMillis;
 
-    public UserDetailsServiceImpl(UserRepository userRepository) {
+    public UserDetailsServiceImpl(UserRepository userRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${travelplanner.jwt.cache.user-ttl-seconds:30}") long ttlSeconds,
+                                  @Value("${travelplanner.jwt.cache.max-size:10000}") int maxCachedUsers) {
         this.userRepository = userRepository;
+        this.users = new ExpiringCache<>(maxCachedUsers);
+        this.users.bindTo(meterRegistry, "user-details");
+        this.ttlMillis = ttlSeconds * 1000;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username)
             throws UsernameNotFoundException {
-        User user = userRepository.findByUsername(username);
-        if (user == null) {
+        UserPrincipal principal = users.computeIfAbsent(username, this::load, ttlMillis);
+        if (principal == null) {
             throw new UsernameNotFoundException("User not found: " + username);
         }
-        return user;
+        return principal;
+    }
+
+    private UserPrincipal load(String username) {
+        User user = userRepository.findByUsername(username);
+        return user != null ? UserPrincipal.of(user) : null;
+    }
+
+    // Called whenever a user row changes so the next request reloads it
+    public void evict(String username) {
+        if (username != null) {
+            users.invalidate(username);
+        }
     }
 }
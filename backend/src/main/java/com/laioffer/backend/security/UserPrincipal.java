@@ -0,0 +1,39 @@
+package com.laioffer.backend.security;
+
+import com.laioffer.backend.entity.User;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.List;
+
+// What a request knows about its signed-in user. Immutable, so one cached instance can be shared by
+// concurrent requests; anything else about the user is loaded from the User entity where it is needed.
+public record UserPrincipal(Long id, String username, String password, List<GrantedAuthority> authorities)
+        implements UserDetails {
+
+    public static UserPrincipal of(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(),
+                List.copyOf(user.getAuthorities()));
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public List<GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    // Keeps the password hash out of logs
+    @Override
+    public String toString() {
+        return "UserPrincipal[id=" + id + ", username=" + username + "]";
+    }
+}
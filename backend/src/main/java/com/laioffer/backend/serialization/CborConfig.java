@@ -0,0 +1,19 @@
+package com.laioffer.backend.serialization;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+// application/cbor responses for clients that send Accept: application/cbor; everyone else keeps JSON.
+// Built from Boot's mapper builder so CBOR gets the same modules and inclusion rules as JSON
+// (Spring's own default CBOR converter would not); replaces that default in the converter list.
+@Configuration
+public class CborConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+}
@@ -3,9 +3,12 @@ package com.laioffer.backend.serialization;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.dataformat.cbor.CBORGenerator;
 import org.locationtech.jts.geom.Point;
 import java.io.IOException;
 
+// GeoJSON Point for JSON; CBOR gets the compact [lng, lat] pair of doubles.
+// Decided by the generator type: a TokenBuffer also writes binary natively but may end up as JSON.
 public class PointSerializer extends StdSerializer<Point> {
 
     public PointSerializer() {
@@ -14,6 +17,10 @@ public class PointSerializer extends StdSerializer<Point> {
 
     @Override
     public void serialize(Point value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (gen instanceof CBORGenerator) {
+            gen.writeArray(new double[]{value.getX(), value.getY()}, 0, 2);
+            return;
+        }
         gen.writeStartObject();
         gen.writeStringField("type", "Point");
         gen.writeFieldName("coordinates");
@@ -23,4 +30,4 @@ public class PointSerializer extends StdSerializer<Point> {
         gen.writeEndArray();
         gen.writeEndObject();
     }
-}
\ No newline at end of file
+}
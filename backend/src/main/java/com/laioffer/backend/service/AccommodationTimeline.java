@@ -0,0 +1,137 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.TripAccommodation;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+// One trip's stays sorted by check-in, built from a single query and then answering per-date
+// questions in memory. A stay covers the nights checkIn .. checkOut - 1.
+// addAccommodation no longer lets stays overlap, but older rows may; a running maximum of the check-out
+// dates lets a lookup skip everything that ended earlier, and where stays overlap the latest check-in wins.
+public final class AccommodationTimeline {
+
+    // Nights first .. last, both inclusive
+    public record NightRange(LocalDate first, LocalDate last) {
+    }
+
+    private final List<TripAccommodation> stays;
+    // maxCheckOut[i] is the latest check-out among stays[0..i]
+    private final LocalDate[] maxCheckOut;
+
+    private AccommodationTimeline(List<TripAccommodation> stays) {
+        this.stays = stays;
+        this.maxCheckOut = new LocalDate[stays.size()];
+        LocalDate max = LocalDate.MIN;
+        for (int i = 0; i < stays.size(); i++) {
+            LocalDate checkOut = stays.get(i).getCheckOutDate();
+            max = checkOut.isAfter(max) ? checkOut : max;
+            maxCheckOut[i] = max;
+        }
+    }
+
+    public static AccommodationTimeline of(List<TripAccommodation> stays) {
+        List<TripAccommodation> sorted = new ArrayList<>(stays);
+        sorted.sort(Comparator.comparing(TripAccommodation::getCheckInDate)
+                .thenComparing(TripAccommodation::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return new AccommodationTimeline(sorted);
+    }
+
+    public AccommodationTimeline with(TripAccommodation stay) {
+        List<TripAccommodation> all = new ArrayList<>(stays);
+        all.add(stay);
+        return of(all);
+    }
+
+    public List<TripAccommodation> getStays() {
+        return stays;
+    }
+
+    // Where the night of date is spent
+    public Optional<TripAccommodation> stayForNight(LocalDate date) {
+        for (int i = lastCheckInOnOrBefore(date); i >= 0 && maxCheckOut[i].isAfter(date); i--) {
+            if (stays.get(i).coversNight(date)) {
+                return Optional.of(stays.get(i));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // The stay for the night of date, or else the one checked out of that morning
+    public Optional<TripAccommodation> stayOn(LocalDate date) {
+        Optional<TripAccommodation> night = stayForNight(date);
+        if (night.isPresent()) {
+            return night;
+        }
+        for (int i = lastCheckInOnOrBefore(date); i >= 0 && !maxCheckOut[i].isBefore(date); i--) {
+            if (stays.get(i).getCheckOutDate().equals(date)) {
+                return Optional.of(stays.get(i));
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Stay per night from first to last (inclusive), null where there is none
+    public TripAccommodation[] stayForEachNight(LocalDate first, LocalDate last) {
+        int nights = (int) ChronoUnit.DAYS.between(first, last) + 1;
+        TripAccommodation[] result = new TripAccommodation[Math.max(0, nights)];
+        // In check-in order, so a later check-in overwrites an overlapping earlier stay
+        for (TripAccommodation stay : stays) {
+            long from = Math.max(0, ChronoUnit.DAYS.between(first, stay.getCheckInDate()));
+            long to = Math.min(result.length, ChronoUnit.DAYS.between(first, stay.getCheckOutDate()));
+            for (long night = from; night < to; night++) {
+                result[(int) night] = stay;
+            }
+        }
+        return result;
+    }
+
+    // Stays sharing at least one night with checkIn .. checkOut - 1
+    public List<TripAccommodation> overlapping(LocalDate checkIn, LocalDate checkOut) {
+        List<TripAccommodation> result = new ArrayList<>();
+        for (int i = lastCheckInOnOrBefore(checkOut.minusDays(1)); i >= 0 && maxCheckOut[i].isAfter(checkIn); i--) {
+            if (stays.get(i).getCheckOutDate().isAfter(checkIn)) {
+                result.add(stays.get(i));
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    // Runs of nights from first to last (inclusive) with nowhere to sleep
+    public List<NightRange> gaps(LocalDate first, LocalDate last) {
+        List<NightRange> gaps = new ArrayList<>();
+        TripAccommodation[] nights = stayForEachNight(first, last);
+        int start = -1;
+        for (int i = 0; i <= nights.length; i++) {
+            boolean uncovered = i < nights.length && nights[i] == null;
+            if (uncovered && start < 0) {
+                start = i;
+            } else if (!uncovered && start >= 0) {
+                gaps.add(new NightRange(first.plusDays(start), first.plusDays(i - 1)));
+                start = -1;
+            }
+        }
+        return gaps;
+    }
+
+    // Index of the last stay checking in on or before date, -1 if none
+    private int lastCheckInOnOrBefore(LocalDate date) {
+        int low = 0;
+        int high = stays.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (stays.get(mid).getCheckInDate().isAfter(date)) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low - 1;
+    }
+}
@@ -4,9 +4,11 @@ import com.laioffer.backend.entity.User;
 import com.laioffer.backend.exception.CustomException;
 import com.laioffer.backend.repository.UserRepository;
 import com.laioffer.backend.security.JwtHandler;
+import com.laioffer.backend.security.PasswordHashingService;
+import com.laioffer.backend.security.UserDetailsServiceImpl;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -17,40 +19,46 @@ public class AuthenticationService {
 
     private final AuthenticationManager authenticationManager;
     private final JwtHandler jwtHandler;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final UserRepository userRepository;
-    private final ImageStorageService imageStorageService;
+    private final AvatarService avatarService;
+    private final UserAvailabilityService userAvailabilityService;
+    private final UserDetailsServiceImpl userDetailsService;
 
     public AuthenticationService(
             AuthenticationManager authenticationManager,
             JwtHandler jwtHandler,
-            PasswordEncoder passwordEncoder,
+            PasswordHashingService passwordHashingService,
             UserRepository userRepository,
-            ImageStorageService imageStorageService
+            AvatarService avatarService,
+            UserAvailabilityService userAvailabilityService,
+            UserDetailsServiceImpl userDetailsService
     ) {
         this.authenticationManager = authenticationManager;
         this.jwtHandler = jwtHandler;
-        this.passwordEncoder = passwordEncoder;
+        this.passwordHashingService = passwordHashingService;
         this.userRepository = userRepository;
-        this.imageStorageService = imageStorageService;
+        this.avatarService = avatarService;
+        this.userAvailabilityService = userAvailabilityService;
+        this.userDetailsService = userDetailsService;
     }
 
     public void register(String username, String email, String rawPassword) {
-        if (userRepository.existsByUsername(username)) {
+        if (userAvailabilityService.isUsernameTaken(username)) {
             throw new CustomException("Username already exists!", HttpStatus.BAD_REQUEST.value());
         }
 
-        if (userRepository.existsByEmail(email)) {
+        if (userAvailabilityService.isEmailTaken(email)) {
             throw new CustomException("Email already exists!", HttpStatus.BAD_REQUEST.value());
         }
-        String encodedPassword = passwordEncoder.encode(rawPassword);
+        String encodedPassword = passwordHashingService.encode(rawPassword);
         User user = new User(username, email, encodedPassword,"https://encrypted-tbn0.gstatic.com/images?q=tbn:ANd9GcRVA_HrQLjkHiJ2Ag5RGuwbFeDKRLfldnDasw&s");
 
-        userRepository.save(user);
+        saveUnique(user, username, email);
     }
 
     public boolean validatePassword(String rawPassword, String encodedPassword) {
-        return passwordEncoder.matches(rawPassword, encodedPassword);
+        return passwordHashingService.matches(rawPassword, encodedPassword);
     }
 
     public String login(String username, String rawPassword) {
@@ -59,58 +67,93 @@ public class AuthenticationService {
             throw new CustomException("Username not found!", HttpStatus.BAD_REQUEST.value());
         }
 
-        if (!passwordEncoder.matches(rawPassword, user.getPassword())) {
+        if (!passwordHashingService.matches(rawPassword, user.getPassword())) {
             throw new CustomException("Invalid password!", HttpStatus.BAD_REQUEST.value());
         }
 
         return jwtHandler.generateToken(username);
     }
 
+    public User getUser(Long id) {
+        return userRepository.findById(id).orElseThrow(() -> new CustomException("User not found!", HttpStatus.NOT_FOUND.value()));
+    }
+
     public User updateInfo(Long id, String username, String email, String rawPassword){
         User user = userRepository.findById(id).orElseThrow(() -> new CustomException("User not found!", HttpStatus.NOT_FOUND.value()));
 
-        if (!passwordEncoder.matches(rawPassword, user.getPassword())) {
+        if (!passwordHashingService.matches(rawPassword, user.getPassword())) {
             throw new CustomException("Invalid password!", HttpStatus.BAD_REQUEST.value());
         }
 
-        if (!Objects.equals(user.getUsername(), username)){
-            if (userRepository.existsByUsername(username)) {
+        String newUsername = Objects.equals(user.getUsername(), username) ? null : username;
+        String newEmail = Objects.equals(user.getEmail(), email) ? null : email;
+
+        if (newUsername != null){
+            if (userAvailabilityService.isUsernameTaken(newUsername)) {
                 throw new CustomException("Username already exists!", HttpStatus.BAD_REQUEST.value());
             }
         }
 
-        if (!Objects.equals(user.getEmail(), email)){
-            if (userRepository.existsByEmail(email)) {
+        if (newEmail != null){
+            if (userAvailabilityService.isEmailTaken(newEmail)) {
                 throw new CustomException("Email already exists!", HttpStatus.BAD_REQUEST.value());
             }
         }
 
+        userDetailsService.evict(user.getUsername());
         user.setUsername(username);
         user.setEmail(email);
 
-        return userRepository.save(user);
+        User saved = saveUnique(user, newUsername, newEmail);
+        userDetailsService.evict(username);
+        return saved;
+    }
+
+    // The availability check can answer "free" without a query, so the unique constraints have the last word.
+    // newUsername/newEmail are the values that changed, null for the ones that didn't.
+    private User saveUnique(User user, String newUsername, String newEmail) {
+        User saved;
+        try {
+            saved = userRepository.save(user);
+        } catch (DataIntegrityViolationException e) {
+            if (newUsername != null && userRepository.existsByUsername(newUsername)) {
+                throw new CustomException("Username already exists!", HttpStatus.BAD_REQUEST.value());
+            }
+            if (newEmail != null && userRepository.existsByEmail(newEmail)) {
+                throw new CustomException("Email already exists!", HttpStatus.BAD_REQUEST.value());
+            }
+            throw e;
+        }
+        userAvailabilityService.onSaved(newUsername, newEmail);
+        return saved;
     }
 
     public User updatePassword(Long id, String oldPassword, String newPassword){
         User user = userRepository.findById(id).orElseThrow(() -> new CustomException("User not found!", HttpStatus.NOT_FOUND.value()));
 
-        if (!passwordEncoder.matches(oldPassword, user.getPassword())) {
+        if (!passwordHashingService.matches(oldPassword, user.getPassword())) {
             throw new CustomException("Invalid old password!", HttpStatus.BAD_REQUEST.value());
         }
 
-        user.setPassword(passwordEncoder.encode(newPassword));
-        return userRepository.save(user);
+        user.setPassword(passwordHashingService.encode(newPassword));
+        User saved = userRepository.save(user);
+        userDetailsService.evict(user.getUsername());
+        return saved;
     }
 
-    public User updateAvatar(String username, MultipartFile image) {
+    public record AvatarUpload(User user, String pendingUrl) {}
+
+    // The stored user keeps the old image until processing finishes
+    public AvatarUpload updateAvatar(String username, MultipartFile image) {
         User user = userRepository.findByUsername(username);
+        if (user == null) {
+            throw new CustomException("User not found!", HttpStatus.NOT_FOUND.value());
+        }
 
         if (image == null || image.isEmpty()) {
             throw new CustomException("Invalid image", HttpStatus.BAD_REQUEST.value());
         }
 
-        String imageUrl = imageStorageService.upload(image);
-        user.setImageUrl(imageUrl);
-        return userRepository.save(user);
+        return new AvatarUpload(user, avatarService.submit(user, image));
     }
 }
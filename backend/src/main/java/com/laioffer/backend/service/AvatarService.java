@@ -0,0 +1,129 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.User;
+import com.laioffer.backend.exception.CustomException;
+import com.laioffer.backend.repository.UserRepository;
+import com.laioffer.backend.security.UserDetailsServiceImpl;
+import com.laioffer.backend.storage.ImageResizer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Turns avatar uploads into fixed-size JPEG thumbnails off the request thread.
+// The request thread only probes the header and hashes the bytes; storing the original (content-addressed,
+// images/<sha256>), the dedupe check and the thumbnails all run on the workers. The hash keys the thumbnails
+// too, so the upload is answered with the URL the largest thumbnail will have, and a re-upload of an already
+// processed image skips the resizing. users.image_url only changes once every size is stored.
+@Service
+public class AvatarService {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvatarService.class);
+
+    static final String AVATAR_PREFIX = "avatars/";
+    // Largest first: its URL is the one saved on the user, the others sit next to it
+    static final int[] SIZES = {512, 128, 40};
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final ImageStorageService imageStorageService;
+    private final UserRepository userRepository;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final ThreadPoolExecutor executor;
+    private final long maxPixels;
+
+    public AvatarService(ImageStorageService imageStorageService,
+                         UserRepository userRepository,
+                         UserDetailsServiceImpl userDetailsService,
+                         @Value("${travelplanner.avatar.workers:2}") int workers,
+                         @Value("${travelplanner.avatar.queue-capacity:16}") int queueCapacity,
+                         @Value("${travelplanner.avatar.max-pixels:40000000}") long maxPixels) {
+        this.imageStorageService = imageStorageService;
+        this.userRepository = userRepository;
+        this.userDetailsService = userDetailsService;
+        this.maxPixels = maxPixels;
+        AtomicInteger threadCount = new AtomicInteger();
+        // Bounded queue and no caller-runs: a full pipeline rejects uploads instead of stalling request threads
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "avatar-worker-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    // Returns the URL the avatar will be served from once processing finishes
+    public String submit(User user, MultipartFile image) {
+        byte[] data;
+        try {
+            // Copied now, the multipart temp file is removed when the request completes
+            data = image.getBytes();
+            ImageResizer.probe(data, maxPixels);
+        } catch (IOException e) {
+            throw new CustomException("Invalid image", HttpStatus.BAD_REQUEST.value());
+        }
+        String contentType = image.getContentType() != null ? image.getContentType() : "application/octet-stream";
+        String contentHash = ImageStorageService.contentHash(data);
+
+        Long userId = user.getId();
+        try {
+            executor.execute(() -> process(userId, contentHash, data, contentType));
+        } catch (RejectedExecutionException e) {
+            throw new CustomException("Too many avatar uploads in progress, try again later",
+                    HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+        return imageStorageService.urlOf(key(contentHash, SIZES[0]));
+    }
+
+    void process(Long userId, String contentHash, byte[] data, String contentType) {
+        long start = System.currentTimeMillis();
+        try {
+            imageStorageService.upload(new ByteArrayInputStream(data), contentType);
+            String imageUrl = imageStorageService.urlOf(key(contentHash, SIZES[0]));
+            if (!thumbnailsExist(contentHash)) {
+                BufferedImage source = ImageResizer.decode(data, maxPixels);
+                for (int size : SIZES) {
+                    byte[] jpeg = ImageResizer.encodeJpeg(ImageResizer.squareThumbnail(source, size), JPEG_QUALITY);
+                    imageStorageService.store(key(contentHash, size), jpeg, "image/jpeg");
+                }
+            }
+            userRepository.updateImageUrl(userId, imageUrl);
+            // Evict by the current name, the user may have renamed themselves meanwhile
+            userRepository.findById(userId).ifPresent(user -> userDetailsService.evict(user.getUsername()));
+            logger.debug("Avatar {} for user {} processed in {} ms", contentHash, userId, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Avatar {} for user {} failed, keeping the previous image", contentHash, userId, e);
+        }
+    }
+
+    // Every size, not just one: a set can be incomplete if processing died halfway or the GC got to part of it
+    private boolean thumbnailsExist(String contentHash) {
+        for (int size : SIZES) {
+            if (!imageStorageService.exists(key(contentHash, size))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String key(String contentHash, int size) {
+        return AVATAR_PREFIX + contentHash + "/" + size + ".jpg";
+    }
+}
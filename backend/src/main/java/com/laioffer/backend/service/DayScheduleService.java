@@ -0,0 +1,146 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.cache.LruCache;
+import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.repository.TripPointRepository;
+import com.laioffer.backend.repository.TripRepository;
+import com.laioffer.backend.schedule.DaySchedule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+// Day schedules (arrivals, departures, feasibility issues) cached per trip and date.
+// Every cached day of a trip is stamped with the trip's points version, so any write to its points makes
+// them stale without touching the cache. Single-point writes instead patch the cached days they touch
+// incrementally once they commit and re-stamp the trip, so the other days stay cached.
+@Service
+public class DayScheduleService {
+
+    private static final String CACHE_NAME = "trip-day-schedules";
+
+    private final TripPointRepository tripPointRepository;
+    private final TripRepository tripRepository;
+    private final DaySchedule.Settings settings;
+    private final LruCache<Long, TripSchedules> cache;
+
+    public record DayScheduleView(Long tripId, LocalDate date, List<DaySchedule.Visit> visits,
+                                  List<DaySchedule.Issue> issues) {}
+
+    // The cached days of one trip, valid while its points version is still this one
+    private record TripSchedules(long version, Map<LocalDate, DaySchedule> days) {
+
+        int weight() {
+            return days.values().stream().mapToInt(day -> day.size() + 1).sum();
+        }
+    }
+
+    public DayScheduleService(TripPointRepository tripPointRepository,
+                              TripRepository tripRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${travelplanner.day-schedule.day-start:09:00}") String dayStart,
+                              @Value("${travelplanner.day-schedule.default-duration-minutes:60}") int defaultDurationMinutes,
+                              @Value("${travelplanner.day-schedule.walking-speed-kmh:4.5}") double walkingSpeedKmh,
+                              @Value("${travelplanner.day-schedule.max-walking-meters:1500}") double maxWalkingMeters,
+                              @Value("${travelplanner.day-schedule.transit-speed-kmh:25}") double transitSpeedKmh,
+                              @Value("${travelplanner.day-schedule.transit-overhead-minutes:10}") int transitOverheadMinutes,
+                              @Value("${travelplanner.day-schedule.detour-factor:1.3}") double detourFactor,
+                              @Value("${travelplanner.day-schedule.max-day-hours:14}") int maxDayHours,
+                              @Value("${travelplanner.day-schedule.cache-max-points:100000}") long cacheMaxPoints) {
+        this.tripPointRepository = tripPointRepository;
+        this.tripRepository = tripRepository;
+        this.settings = new DaySchedule.Settings(LocalTime.parse(dayStart), defaultDurationMinutes, walkingSpeedKmh,
+                maxWalkingMeters, transitSpeedKmh, transitOverheadMinutes, detourFactor, maxDayHours * 60);
+        this.cache = new LruCache<>(cacheMaxPoints, TripSchedules::weight);
+        cache.bindTo(meterRegistry, CACHE_NAME);
+    }
+
+    @Transactional(readOnly = true)
+    public DayScheduleView getSchedule(Long tripId, LocalDate date) {
+        // Read before the rows, as for the points ETag: a change in between only costs a later recomputation
+        long version = tripRepository.findPointsVersionById(tripId)
+                .orElseThrow(() -> new RuntimeException("Trip not found"));
+        TripSchedules cached = cache.get(tripId);
+        DaySchedule schedule = cached != null && cached.version() == version ? cached.days().get(date) : null;
+        if (schedule == null) {
+            schedule = DaySchedule.of(tripPointRepository.findByTripIdAndDate(tripId, date).stream()
+                    .map(DayScheduleService::toStop)
+                    .toList(), settings);
+            Map<LocalDate, DaySchedule> days = cached != null && cached.version() == version
+                    ? new HashMap<>(cached.days())
+                    : new HashMap<>();
+            days.put(date, schedule);
+            cache.put(tripId, new TripSchedules(version, Map.copyOf(days)));
+        }
+        return new DayScheduleView(tripId, date, schedule.visits(), schedule.issues());
+    }
+
+    // A point was created (previousDate null) or updated, after its trip's points version was bumped.
+    // Must run inside that transaction: the bump keeps the trip row locked, so the version read here is exact.
+    public void pointSaved(Long tripId, LocalDate previousDate, TripPoint point) {
+        DaySchedule.Stop stop = toStop(point);
+        LocalDate date = point.getDate();
+        patch(tripId, days -> {
+            if (previousDate != null && !previousDate.equals(date)) {
+                days.computeIfPresent(previousDate, (d, schedule) -> schedule.withoutStop(stop.id()));
+            }
+            days.computeIfPresent(date, (d, schedule) -> schedule.withStop(stop));
+        });
+    }
+
+    public void pointDeleted(Long tripId, TripPoint point) {
+        long id = point.getId();
+        patch(tripId, days -> days.computeIfPresent(point.getDate(), (d, schedule) -> schedule.withoutStop(id)));
+    }
+
+    private void patch(Long tripId, Consumer<Map<LocalDate, DaySchedule>> change) {
+        if (cache.get(tripId) == null) {
+            return;
+        }
+        long version = tripRepository.findPointsVersionById(tripId).orElse(-1L);
+        afterCommit(() -> {
+            TripSchedules cached = cache.get(tripId);
+            if (cached == null || cached.version() == version) {
+                return;
+            }
+            // Some other write came in between; start over on the next read
+            if (cached.version() != version - 1) {
+                cache.invalidate(tripId);
+                return;
+            }
+            Map<LocalDate, DaySchedule> days = new HashMap<>(cached.days());
+            change.accept(days);
+            cache.put(tripId, new TripSchedules(version, Map.copyOf(days)));
+        });
+    }
+
+    private static DaySchedule.Stop toStop(TripPoint point) {
+        Double lat = point.getLocation() != null ? point.getLocation().getY() : null;
+        Double lng = point.getLocation() != null ? point.getLocation().getX() : null;
+        return new DaySchedule.Stop(Objects.requireNonNull(point.getId()), point.getVisitOrder(), lat, lng,
+                point.getPlannedTime(), point.getPlannedDuration());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
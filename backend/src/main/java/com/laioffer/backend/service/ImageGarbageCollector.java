@@ -0,0 +1,112 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.repository.UserRepository;
+import com.laioffer.backend.storage.BlobStorage.BlobEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Mark-and-sweep over the content-addressed prefixes: collects the blob groups users reference
+// and deletes the groups nobody points at anymore. Fresh blobs are left alone,
+// an upload may still be waiting for its users.image_url update.
+@Service
+public class ImageGarbageCollector {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImageGarbageCollector.class);
+
+    private static final List<String> PREFIXES = List.of(ImageStorageService.IMAGE_PREFIX, AvatarService.AVATAR_PREFIX,
+            ImageStorageService.STAGING_PREFIX);
+
+    private final ImageStorageService imageStorageService;
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final Duration minAge;
+
+    public ImageGarbageCollector(ImageStorageService imageStorageService,
+                                 UserRepository userRepository,
+                                 @Value("${travelplanner.storage.gc.enabled:true}") boolean enabled,
+                                 @Value("${travelplanner.storage.gc.min-age-minutes:60}") long minAgeMinutes) {
+        this.imageStorageService = imageStorageService;
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.minAge = Duration.ofMinutes(minAgeMinutes);
+    }
+
+    @Scheduled(initialDelayString = "${travelplanner.storage.gc.interval-ms:21600000}",
+            fixedDelayString = "${travelplanner.storage.gc.interval-ms:21600000}")
+    public void scheduledCollect() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            collect();
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Image GC failed", e);
+        }
+    }
+
+    // Returns the number of deleted blobs
+    public int collect() throws IOException {
+        Instant cutoff = Instant.now().minus(minAge);
+        Set<String> referenced = referencedGroups();
+
+        List<String> candidates = new ArrayList<>();
+        for (String prefix : PREFIXES) {
+            try (Stream<BlobEntry> blobs = imageStorageService.list(prefix)) {
+                blobs.filter(blob -> !blob.createdAt().isAfter(cutoff))
+                        .filter(blob -> !referenced.contains(groupOf(blob.key())))
+                        .forEach(blob -> candidates.add(blob.key()));
+            }
+        }
+        if (candidates.isEmpty()) {
+            return 0;
+        }
+
+        // Look again: a re-upload of old content may have pointed a user back at a candidate while we listed
+        Set<String> current = referencedGroups();
+        int deleted = 0;
+        for (String key : candidates) {
+            if (!current.contains(groupOf(key))) {
+                imageStorageService.delete(key);
+                deleted++;
+            }
+        }
+        logger.info("Image GC removed {} unreferenced blobs, {} groups referenced", deleted, current.size());
+        return deleted;
+    }
+
+    private Set<String> referencedGroups() {
+        Set<String> groups = new HashSet<>();
+        for (String url : userRepository.findAllImageUrls()) {
+            String key = imageStorageService.keyOf(url);
+            if (key != null) {
+                groups.add(groupOf(key));
+            }
+        }
+        return groups;
+    }
+
+    // One group per content hash: the original (images/<hash>) and its thumbnails (avatars/<hash>/).
+    // Users reference only the largest thumbnail.
+    static String groupOf(String key) {
+        if (key.startsWith(AvatarService.AVATAR_PREFIX)) {
+            int end = key.indexOf('/', AvatarService.AVATAR_PREFIX.length());
+            return end < 0 ? key : key.substring(AvatarService.AVATAR_PREFIX.length(), end);
+        }
+        if (key.startsWith(ImageStorageService.IMAGE_PREFIX)) {
+            return key.substring(ImageStorageService.IMAGE_PREFIX.length());
+        }
+        return key;
+    }
+}
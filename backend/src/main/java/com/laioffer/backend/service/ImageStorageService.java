@@ -1,47 +1,105 @@
 package com.laioffer.backend.service;
 
-import com.google.cloud.storage.Acl;
-import com.google.cloud.storage.BlobInfo;
-import com.google.cloud.storage.Storage;
-import org.springframework.beans.factory.annotation.Value;
+import com.laioffer.backend.storage.BlobStorage;
+import com.laioffer.backend.storage.BlobStorage.BlobEntry;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 //created key [22b930aa33284d0d54d5b9b6428d5ccc1587c827] of type [json] as [credentials.json] for [my-service-account@travelplanner-451101.iam.gserviceaccount.com]
 
+// Content-addressed image storage: objects are keyed by the SHA-256 of what was uploaded,
+// so uploading the same bytes again only returns the existing URL.
 @Service
 public class ImageStorageService {
 
+    static final String IMAGE_PREFIX = "images/";
+    // Uploads in flight; left behind only by a crash between write and rename, and collected by the GC
+    static final String STAGING_PREFIX = "uploads/";
 
-    private final String bucketName;
-    private final Storage storage;
+    private final BlobStorage blobStorage;
 
+    public record StoredImage(String contentHash, String url) {}
 
-    public ImageStorageService(@Value("${travelplanner.gcs.bucket}") String bucketName, Storage storage) {
-        this.bucketName = bucketName;
-        this.storage = storage;
+
+    public ImageStorageService(BlobStorage blobStorage) {
+        this.blobStorage = blobStorage;
+    }
+
+
+    // One pass over the data: it is hashed while it streams into a staging object, which then takes its
+    // content-addressed key. Content we already have costs an existence check and dropping the staged copy.
+    public StoredImage upload(InputStream in, String contentType) {
+        String staging = STAGING_PREFIX + UUID.randomUUID();
+        try {
+            MessageDigest digest = newDigest();
+            try (InputStream digesting = new DigestInputStream(in, digest)) {
+                blobStorage.put(staging, digesting, contentType);
+            }
+            String contentHash = HexFormat.of().formatHex(digest.digest());
+            String key = IMAGE_PREFIX + contentHash;
+            if (blobStorage.exists(key)) {
+                blobStorage.delete(staging);
+            } else {
+                blobStorage.move(staging, key);
+            }
+            return new StoredImage(contentHash, blobStorage.urlOf(key));
+        } catch (IOException exception) {
+            throw new IllegalStateException("Failed to upload file to storage", exception);
+        }
     }
 
+    // The hash upload would key these bytes by, for callers that already hold them in memory
+    public static String contentHash(byte[] data) {
+        return HexFormat.of().formatHex(newDigest().digest(data));
+    }
+
+    public String store(String key, byte[] data, String contentType) {
+        try {
+            return blobStorage.put(key, new ByteArrayInputStream(data), contentType);
+        } catch (IOException exception) {
+            throw new IllegalStateException("Failed to upload file to storage", exception);
+        }
+    }
 
-    public String upload(MultipartFile file) {
-        String filename = UUID.randomUUID().toString();
-        BlobInfo blobInfo;
+    public boolean exists(String key) {
         try {
-            blobInfo = storage.createFrom(
-                    BlobInfo
-                            .newBuilder(bucketName, filename)
-                            .setContentType("image/jpeg")
-                            .setAcl(List.of(Acl.of(Acl.User.ofAllUsers(), Acl.Role.READER)))
-                            .build(),
-                    file.getInputStream());
+            return blobStorage.exists(key);
         } catch (IOException exception) {
-            throw new IllegalStateException("Failed to upload file to GCS");
+            throw new IllegalStateException("Failed to query storage", exception);
+        }
+    }
+
+    public String urlOf(String key) {
+        return blobStorage.urlOf(key);
+    }
+
+    public String keyOf(String url) {
+        return blobStorage.keyOf(url);
+    }
+
+    Stream<BlobEntry> list(String prefix) throws IOException {
+        return blobStorage.list(prefix);
+    }
+
+    void delete(String key) throws IOException {
+        blobStorage.delete(key);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-            return "https://storage.googleapis.com/" + blobInfo.getBucket() + "/" + blobInfo.getName();
     }
 }
@@ -0,0 +1,70 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.Trip;
+import com.laioffer.backend.entity.TripAccommodation;
+import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.repository.TripAccommodationRepository;
+import com.laioffer.backend.repository.TripPointRepository;
+import com.laioffer.backend.repository.TripRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+// Everything needed to render one trip, built from three queries regardless of trip length
+@Service
+@RequiredArgsConstructor
+public class ItineraryService {
+    private final TripRepository tripRepository;
+    private final TripPointRepository tripPointRepository;
+    private final TripAccommodationRepository accommodationRepository;
+
+    public record Itinerary(Trip trip, List<Day> days) {}
+    public record Day(LocalDate date, List<TripPoint> points, Accommodation accommodation) {}
+    public record Accommodation(Long id, LocalDate checkInDate, LocalDate checkOutDate, String notes, POI poi) {}
+
+    @Transactional(readOnly = true)
+    public Optional<Itinerary> getItinerary(Long tripId) {
+        Optional<Trip> tripOptional = tripRepository.findById(tripId);
+        if (tripOptional.isEmpty()) {
+            return Optional.empty();
+        }
+        Trip trip = tripOptional.get();
+
+        Map<LocalDate, List<TripPoint>> pointsByDate = new TreeMap<>();
+        if (trip.getStartDate() != null && trip.getEndDate() != null) {
+            for (LocalDate date = trip.getStartDate(); !date.isAfter(trip.getEndDate()); date = date.plusDays(1)) {
+                pointsByDate.put(date, new ArrayList<>());
+            }
+        }
+        // Already ordered by date, visitOrder
+        for (TripPoint point : tripPointRepository.findByTripIdOrderByDateAscVisitOrderAsc(tripId)) {
+            pointsByDate.computeIfAbsent(point.getDate(), d -> new ArrayList<>()).add(point);
+        }
+
+        AccommodationTimeline stays = AccommodationTimeline.of(accommodationRepository.findWithPoiByTripId(tripId));
+        List<Day> days = new ArrayList<>(pointsByDate.size());
+        for (Map.Entry<LocalDate, List<TripPoint>> entry : pointsByDate.entrySet()) {
+            Accommodation accommodation = stays.stayForNight(entry.getKey())
+                    .map(ItineraryService::toAccommodation)
+                    .orElse(null);
+            days.add(new Day(entry.getKey(), entry.getValue(), accommodation));
+        }
+        return Optional.of(new Itinerary(trip, days));
+    }
+
+    private static Accommodation toAccommodation(TripAccommodation stay) {
+        return new Accommodation(stay.getId(),
+                stay.getCheckInDate(),
+                stay.getCheckOutDate(),
+                stay.getNotes(),
+                stay.getPoi());
+    }
+}
@@ -0,0 +1,201 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.cache.LruCache;
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.geo.GeoUtils;
+import com.laioffer.backend.geo.Geohash;
+import com.laioffer.backend.repository.POIRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Radius queries that reach the database, cached by geohash cell.
+// Map clients pan with a slightly different centre every time, so whole answers never repeat; the cells
+// under them do. The radius is bucketed to a power of two, which picks a geohash precision whose cells
+// are at least that large, so a query covers a handful of cells. Each cell holds every active POI in it;
+// the answer is the covered cells filtered exactly to the circle.
+@Service
+public class NearbyPOICache {
+
+    private static final String CACHE_NAME = "poi-nearby-cells";
+    private static final int MIN_PRECISION = 2;
+    private static final int MAX_PRECISION = 7;
+    // More cells than this (huge radius, or close to a pole) and the query goes straight to PostGIS
+    private static final int MAX_CELLS_PER_QUERY = 32;
+
+    private final POIRepository poiRepository;
+    private final boolean enabled;
+    private final LruCache<String, List<POI>> cells;
+    // Bumped by every invalidation; a cell loaded across a bump may predate the change and is not cached
+    private final AtomicLong generation = new AtomicLong();
+    // Held across a loader's generation check and its put, and across an invalidation's bump and removals,
+    // so no invalidation can slip in between the check and the put. A ReentrantLock rather than synchronized
+    // so virtual threads don't pin their carrier while waiting
+    private final ReentrantLock invalidationLock = new ReentrantLock();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder databaseQueries = new LongAdder();
+
+    public NearbyPOICache(POIRepository poiRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${travelplanner.poi-nearby-cache.enabled:true}") boolean enabled,
+                          @Value("${travelplanner.poi-nearby-cache.max-pois:200000}") long maxPois) {
+        this.poiRepository = poiRepository;
+        this.enabled = enabled;
+        // Weighed in POIs, plus one so empty cells still count
+        this.cells = new LruCache<>(maxPois, pois -> pois.size() + 1);
+        cells.bindTo(meterRegistry, CACHE_NAME);
+        FunctionCounter.builder("poi.nearby.requests", requests, LongAdder::sum)
+                .description("Radius queries answered on the database path")
+                .register(meterRegistry);
+        FunctionCounter.builder("poi.nearby.db.queries", databaseQueries, LongAdder::sum)
+                .description("Database queries issued for them, cell loads included")
+                .register(meterRegistry);
+        // One query per request without the cache; negative while the cache is still cold
+        Gauge.builder("poi.nearby.db.queries.saved", this, cache -> cache.requests.sum() - cache.databaseQueries.sum())
+                .register(meterRegistry);
+    }
+
+    public List<POI> findNearby(double lat, double lng, double radiusInMeters) {
+        requests.increment();
+        int precision = enabled ? precisionFor(radiusInMeters) : 0;
+        List<Geohash.Cell> covering = precision > 0 ? covering(lat, lng, radiusInMeters, precision) : null;
+        if (covering == null) {
+            databaseQueries.increment();
+            return poiRepository.findNearbyPOIs(lat, lng, radiusInMeters);
+        }
+
+        List<POI> result = new ArrayList<>();
+        for (Geohash.Cell cell : covering) {
+            for (POI poi : load(cell, precision)) {
+                double distance = GeoUtils.haversine(lat, lng, poi.getLocation().getY(), poi.getLocation().getX());
+                if (distance <= radiusInMeters) {
+                    result.add(poi);
+                }
+            }
+        }
+        return result;
+    }
+
+    // Drops the cells holding this location at every precision, once the surrounding transaction commits
+    public void invalidate(double lat, double lng) {
+        afterCommit(() -> {
+            invalidationLock.lock();
+            try {
+                generation.incrementAndGet();
+                for (int precision = MIN_PRECISION; precision <= MAX_PRECISION; precision++) {
+                    cells.invalidate(Geohash.encode(lat, lng, precision));
+                }
+            } finally {
+                invalidationLock.unlock();
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        afterCommit(() -> {
+            invalidationLock.lock();
+            try {
+                generation.incrementAndGet();
+                cells.invalidateAll();
+            } finally {
+                invalidationLock.unlock();
+            }
+        });
+    }
+
+    private List<POI> load(Geohash.Cell cell, int precision) {
+        List<POI> cached = cells.get(cell.hash());
+        if (cached != null) {
+            return cached;
+        }
+        long before = generation.get();
+        databaseQueries.increment();
+        List<POI> inCell = new ArrayList<>();
+        // The envelope test is inclusive, so drop POIs on an edge that belong to the neighbouring cell
+        for (POI poi : poiRepository.findActiveInBox(cell.minLng(), cell.minLat(), cell.maxLng(), cell.maxLat())) {
+            if (poi.getLocation() != null
+                    && Geohash.encode(poi.getLocation().getY(), poi.getLocation().getX(), precision).equals(cell.hash())) {
+                inCell.add(poi);
+            }
+        }
+        List<POI> loaded = List.copyOf(inCell);
+        invalidationLock.lock();
+        try {
+            if (generation.get() == before) {
+                cells.put(cell.hash(), loaded);
+            }
+        } finally {
+            invalidationLock.unlock();
+        }
+        return loaded;
+    }
+
+    // Finest precision whose cells are at least the bucketed radius across (at the equator), or 0 when
+    // even the coarsest is too small to be worth caching
+    static int precisionFor(double radiusInMeters) {
+        double bucket = Math.max(250, Math.pow(2, Math.ceil(Math.log(Math.max(1, radiusInMeters)) / Math.log(2))));
+        for (int precision = MAX_PRECISION; precision >= MIN_PRECISION; precision--) {
+            double heightMeters = GeoUtils.EARTH_RADIUS_METERS * Math.toRadians(Geohash.cellHeightDegrees(precision));
+            double widthMeters = GeoUtils.EARTH_RADIUS_METERS * Math.toRadians(Geohash.cellWidthDegrees(precision));
+            if (Math.min(heightMeters, widthMeters) >= bucket) {
+                return precision;
+            }
+        }
+        return 0;
+    }
+
+    // Cells overlapping the circle's bounding box, or null when there are too many
+    static List<Geohash.Cell> covering(double lat, double lng, double radiusInMeters, int precision) {
+        double dLat = GeoUtils.metersToLatDegrees(radiusInMeters);
+        double minLat = Math.max(-90.0, lat - dLat);
+        double maxLat = Math.min(90.0, lat + dLat);
+        double dLng = GeoUtils.metersToLngDegrees(radiusInMeters, Math.max(Math.abs(minLat), Math.abs(maxLat)));
+
+        long columns = Geohash.columns(precision);
+        long firstRow = Geohash.row(minLat, precision);
+        long lastRow = Geohash.row(maxLat, precision);
+        long firstColumn;
+        long columnSpan;
+        if (dLng >= 180.0) {
+            firstColumn = 0;
+            columnSpan = columns;
+        } else {
+            firstColumn = Geohash.column(lng - dLng < -180.0 ? lng - dLng + 360.0 : lng - dLng, precision);
+            long lastColumn = Geohash.column(lng + dLng > 180.0 ? lng + dLng - 360.0 : lng + dLng, precision);
+            columnSpan = Math.floorMod(lastColumn - firstColumn, columns) + 1;
+        }
+        if ((lastRow - firstRow + 1) * columnSpan > MAX_CELLS_PER_QUERY) {
+            return null;
+        }
+        List<Geohash.Cell> cells = new ArrayList<>();
+        for (long row = firstRow; row <= lastRow; row++) {
+            for (long i = 0; i < columnSpan; i++) {
+                cells.add(Geohash.cell(row, (firstColumn + i) % columns, precision));
+            }
+        }
+        return cells;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
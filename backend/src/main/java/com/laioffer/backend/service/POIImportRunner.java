@@ -0,0 +1,47 @@
+package com.laioffer.backend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+// Command-line import, e.g.
+//   java -jar app.jar --spring.main.web-application-type=none --import-pois=paris.csv
+// Format follows the file extension (.geojson / .json, anything else is CSV).
+@Component
+public class POIImportRunner implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(POIImportRunner.class);
+
+    private final POIImportService poiImportService;
+
+    public POIImportRunner(POIImportService poiImportService) {
+        this.poiImportService = poiImportService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> files = args.getOptionValues("import-pois");
+        if (files == null) {
+            return;
+        }
+        for (String file : files) {
+            String lower = file.toLowerCase();
+            POIImportService.Format format = lower.endsWith(".geojson") || lower.endsWith(".json")
+                    ? POIImportService.Format.GEOJSON
+                    : POIImportService.Format.CSV;
+            try (InputStream in = Files.newInputStream(Path.of(file))) {
+                POIImportService.ImportReport report = poiImportService.importPOIs(in, format);
+                logger.info("{}: {} imported, {} rejected, {} rows/s",
+                        file, report.accepted(), report.rejected(), Math.round(report.rowsPerSecond()));
+                report.rejections().forEach(r -> logger.info("  record {} rejected: {}", r.record(), r.reason()));
+            }
+        }
+    }
+}
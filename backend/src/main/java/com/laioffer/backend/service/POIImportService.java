@@ -0,0 +1,445 @@
+package com.laioffer.backend.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.repository.POIRepository;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+// Bulk POI loader: one reader, a pool of parsers, and a single writer streaming batches through COPY.
+// A semaphore caps the number of chunks between reader and writer, so a slow database
+// pushes back on the reader instead of the heap filling up. All batches go in one transaction,
+// so a failed import leaves nothing behind. Run offline through POIImportRunner.
+@Service
+public class POIImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(POIImportService.class);
+
+    private static final String COPY_SQL =
+            "COPY poi (name, location, poi_type, category, notes, is_active) FROM STDIN WITH (FORMAT csv)";
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    // Column widths in schema.sql; a longer value would fail the COPY and roll back the whole import
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_CATEGORY_LENGTH = 100;
+
+    private final DataSource dataSource;
+    private final EntityManagerFactory entityManagerFactory;
+    private final ObjectMapper objectMapper;
+    private final POIIndexService poiIndexService;
+    private final NearbyPOICache nearbyPOICache;
+    private final int batchSize;
+    private final int parallelism;
+    private final ExecutorService parsers;
+    // One writer: concurrent imports queue up behind each other instead of competing for the table
+    private final ExecutorService writers;
+
+    public enum Format { CSV, GEOJSON }
+
+    public record Rejection(long record, String reason) {}
+
+    public record ImportReport(long accepted, long rejected, List<Rejection> rejections,
+                               long elapsedMillis, double rowsPerSecond) {}
+
+    private record Raw<T>(long number, T value) {}
+
+    private record ParsedBatch(byte[] copyData, int rows, List<Rejection> rejections) {}
+
+    private static final ParsedBatch END = new ParsedBatch(new byte[0], 0, List.of());
+
+    public POIImportService(DataSource dataSource,
+                            EntityManagerFactory entityManagerFactory,
+                            ObjectMapper objectMapper,
+                            POIIndexService poiIndexService,
+                            NearbyPOICache nearbyPOICache,
+                            @Value("${travelplanner.poi-import.batch-size:10000}") int batchSize,
+                            @Value("${travelplanner.poi-import.parallelism:0}") int parallelism) {
+        this.dataSource = dataSource;
+        this.entityManagerFactory = entityManagerFactory;
+        this.objectMapper = objectMapper;
+        this.poiIndexService = poiIndexService;
+        this.nearbyPOICache = nearbyPOICache;
+        this.batchSize = batchSize;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.parsers = Executors.newFixedThreadPool(this.parallelism, daemonThreads("poi-import-parser-"));
+        this.writers = Executors.newSingleThreadExecutor(daemonThreads("poi-import-writer-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsers.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public ImportReport importPOIs(InputStream in, Format format) throws IOException {
+        long start = System.nanoTime();
+        Pipeline pipeline = new Pipeline();
+        try {
+            if (format == Format.GEOJSON) {
+                readGeoJson(in, pipeline);
+            } else {
+                readCsv(in, pipeline);
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.cancel();
+            // COPY bypasses Hibernate, so cached active-POI lists, the in-memory index and the nearby cache
+            // don't know about the new rows. All refreshed whatever the outcome: a commit that fails on the
+            // way back may still have been applied.
+            entityManagerFactory.unwrap(SessionFactory.class).getCache()
+                    .evictQueryRegion(POIRepository.ACTIVE_QUERY_REGION);
+            nearbyPOICache.invalidateAll();
+            poiIndexService.reload();
+        }
+
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        double rowsPerSecond = pipeline.accepted * 1000.0 / Math.max(1, elapsedMillis);
+        logger.info("Imported {} POIs ({} rejected) in {} ms, {} rows/s",
+                pipeline.accepted, pipeline.rejected, elapsedMillis, Math.round(rowsPerSecond));
+        return new ImportReport(pipeline.accepted, pipeline.rejected,
+                Collections.unmodifiableList(pipeline.rejections), elapsedMillis, rowsPerSecond);
+    }
+
+    // Header row names the columns: name, latitude, longitude, poi_type, category[, notes]
+    private void readCsv(InputStream in, Pipeline pipeline) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        String header = reader.readLine();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> names = splitCsvLine(header);
+        for (int i = 0; i < names.size(); i++) {
+            columns.put(names.get(i).trim().toLowerCase(Locale.ROOT).replace("_", ""), i);
+        }
+        Function<String, PoiRow> parser = line -> parseCsvRow(line, columns);
+
+        List<Raw<String>> chunk = new ArrayList<>(batchSize);
+        long number = 1;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            number++;
+            if (line.isBlank()) {
+                continue;
+            }
+            chunk.add(new Raw<>(number, line));
+            if (chunk.size() == batchSize) {
+                pipeline.submit(chunk, parser);
+                chunk = new ArrayList<>(batchSize);
+            }
+        }
+        pipeline.submit(chunk, parser);
+    }
+
+    // FeatureCollection of Point features; properties carry name, poiType, category and notes
+    private void readGeoJson(InputStream in, Pipeline pipeline) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            while (parser.nextToken() != null) {
+                if (parser.currentToken() == JsonToken.FIELD_NAME && "features".equals(parser.currentName())
+                        && parser.nextToken() == JsonToken.START_ARRAY) {
+                    break;
+                }
+            }
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                throw new IOException("GeoJSON input has no features array");
+            }
+
+            List<Raw<JsonNode>> chunk = new ArrayList<>(batchSize);
+            long number = 0;
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                chunk.add(new Raw<>(++number, objectMapper.readTree(parser)));
+                if (chunk.size() == batchSize) {
+                    pipeline.submit(chunk, this::parseFeature);
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            pipeline.submit(chunk, this::parseFeature);
+        }
+    }
+
+    private PoiRow parseCsvRow(String line, Map<String, Integer> columns) {
+        List<String> fields = splitCsvLine(line);
+        return PoiRow.validate(
+                field(fields, columns, "name"),
+                parseCoordinate(field(fields, columns, "latitude", "lat")),
+                parseCoordinate(field(fields, columns, "longitude", "lng", "lon")),
+                field(fields, columns, "poitype", "type"),
+                field(fields, columns, "category"),
+                field(fields, columns, "notes"));
+    }
+
+    private PoiRow parseFeature(JsonNode feature) {
+        JsonNode geometry = feature.path("geometry");
+        JsonNode coordinates = geometry.path("coordinates");
+        if (!"Point".equals(geometry.path("type").asText()) || coordinates.size() < 2) {
+            throw new IllegalArgumentException("geometry must be a Point");
+        }
+        JsonNode properties = feature.path("properties");
+        return PoiRow.validate(
+                text(properties, "name"),
+                coordinates.get(1).asDouble(Double.NaN),
+                coordinates.get(0).asDouble(Double.NaN),
+                text(properties, "poiType") != null ? text(properties, "poiType") : text(properties, "poi_type"),
+                text(properties, "category"),
+                text(properties, "notes"));
+    }
+
+    private record PoiRow(String name, double lat, double lng, POIType type, String category, String notes) {
+
+        static PoiRow validate(String name, double lat, double lng, String type, String category, String notes) {
+            if (name == null || name.isBlank()) {
+                throw new IllegalArgumentException("name is required");
+            }
+            if (name.codePointCount(0, name.length()) > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("name longer than " + MAX_NAME_LENGTH + " characters");
+            }
+            if (!(lat >= -90 && lat <= 90)) {
+                throw new IllegalArgumentException("latitude out of range: " + lat);
+            }
+            if (!(lng >= -180 && lng <= 180)) {
+                throw new IllegalArgumentException("longitude out of range: " + lng);
+            }
+            if (category == null || category.isBlank()) {
+                throw new IllegalArgumentException("category is required");
+            }
+            if (category.codePointCount(0, category.length()) > MAX_CATEGORY_LENGTH) {
+                throw new IllegalArgumentException("category longer than " + MAX_CATEGORY_LENGTH + " characters");
+            }
+            POIType poiType;
+            try {
+                poiType = POIType.valueOf(type == null ? "" : type.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown poi type: " + type);
+            }
+            return new PoiRow(name, lat, lng, poiType, category, notes);
+        }
+
+        // One line of COPY csv input; an unquoted empty field is NULL
+        void appendTo(StringBuilder out) {
+            appendQuoted(out, name);
+            out.append(",SRID=4326;POINT(").append(lng).append(' ').append(lat).append("),");
+            out.append(type.name()).append(',');
+            appendQuoted(out, category);
+            out.append(',');
+            if (notes != null) {
+                appendQuoted(out, notes);
+            }
+            out.append(",true\n");
+        }
+
+        private static void appendQuoted(StringBuilder out, String value) {
+            out.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"') {
+                    out.append('"');
+                }
+                out.append(c);
+            }
+            out.append('"');
+        }
+    }
+
+    private final class Pipeline {
+        private final BlockingQueue<ParsedBatch> parsed = new LinkedBlockingQueue<>();
+        private final Semaphore inFlight = new Semaphore(parallelism * 2);
+        private final List<Future<?>> parseTasks = new ArrayList<>();
+        private final Future<?> writer = writers.submit(this::write);
+
+        private final List<Rejection> rejections = new ArrayList<>();
+        private long accepted;
+        private long rejected;
+
+        <T> void submit(List<Raw<T>> chunk, Function<T, PoiRow> parser) throws IOException {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            acquire();
+            parseTasks.add(parsers.submit(() -> {
+                StringBuilder copyData = new StringBuilder(chunk.size() * 96);
+                List<Rejection> chunkRejections = new ArrayList<>();
+                int rows = 0;
+                for (Raw<T> raw : chunk) {
+                    try {
+                        parser.apply(raw.value()).appendTo(copyData);
+                        rows++;
+                    } catch (RuntimeException e) {
+                        chunkRejections.add(new Rejection(raw.number(), e.getMessage()));
+                    }
+                }
+                parsed.add(new ParsedBatch(copyData.toString().getBytes(StandardCharsets.UTF_8), rows, chunkRejections));
+            }));
+        }
+
+        void finish() throws IOException {
+            try {
+                for (Future<?> task : parseTasks) {
+                    task.get();
+                }
+                parsed.add(END);
+                writer.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("POI import interrupted", e);
+            } catch (ExecutionException e) {
+                throw new IOException("POI import failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        // No-op after finish(); after a failure it stops the parsers and makes the writer roll back
+        void cancel() {
+            parseTasks.forEach(task -> task.cancel(true));
+            writer.cancel(true);
+        }
+
+        // Blocks the reader while too many chunks are waiting, but gives up if the writer died
+        private void acquire() throws IOException {
+            try {
+                while (!inFlight.tryAcquire(1, TimeUnit.SECONDS)) {
+                    if (writer.isDone()) {
+                        finish();
+                        throw new IOException("POI import writer stopped early");
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("POI import interrupted", e);
+            }
+        }
+
+        private Void write() throws Exception {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                    while (true) {
+                        ParsedBatch batch = parsed.take();
+                        if (batch == END) {
+                            connection.commit();
+                            return null;
+                        }
+                        if (batch.rows() > 0) {
+                            copyManager.copyIn(COPY_SQL, new ByteArrayInputStream(batch.copyData()));
+                        }
+                        accepted += batch.rows();
+                        rejected += batch.rejections().size();
+                        for (Rejection rejection : batch.rejections()) {
+                            if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                                rejections.add(rejection);
+                            }
+                        }
+                        inFlight.release();
+                    }
+                } catch (Exception e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static String field(List<String> fields, Map<String, Integer> columns, String... names) {
+        for (String name : names) {
+            Integer index = columns.get(name);
+            if (index != null && index < fields.size()) {
+                String value = fields.get(index);
+                return value.isEmpty() ? null : value;
+            }
+        }
+        return null;
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static double parseCoordinate(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("coordinates are required");
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid coordinate: " + value);
+        }
+    }
+
+    // RFC 4180 fields on a single line; quoted fields may contain commas and doubled quotes
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("unterminated quoted field");
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,269 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.geo.ClusterIndex;
+import com.laioffer.backend.geo.GeoGridIndex;
+import com.laioffer.backend.geo.KdTree;
+import com.laioffer.backend.repository.POIRepository;
+import com.laioffer.backend.search.TrigramIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+// In-JVM indexes over the active POIs: the radius grid, the per-zoom map clusters, one KD-tree
+// per POIType for nearest-neighbour queries and the trigram index behind name typeahead.
+// Loaded in the background once the app is up; until then (or when disabled) callers fall back to PostGIS.
+@Service
+public class POIIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(POIIndexService.class);
+
+    private final POIRepository poiRepository;
+    private final boolean enabled;
+    private final double cellSizeDegrees;
+    private final ClusterSettings clusterSettings;
+    private final double searchDecayMeters;
+
+    // All structures are built together and swapped in together
+    private record Indexes(GeoGridIndex<POI> grid, ClusterIndex clusters, Map<POIType, KdTree<POI>> nearest,
+                           TrigramIndex<POI> names) {
+    }
+
+    // Zoom range and merge radius (in pixels of a tile of the given extent) of the map clusters,
+    // and the most clusters one viewport query may return
+    public record ClusterSettings(int minZoom, int maxZoom, double radiusPixels, int extent, int maxResults) {
+
+        public ClusterIndex newIndex() {
+            return new ClusterIndex(minZoom, maxZoom, radiusPixels, extent, POIType.values().length);
+        }
+
+        // Merge distance at a zoom on the unit Mercator square, which is also ClusterIndex's grid cell width
+        public double cellSize(int zoom) {
+            return radiusPixels / (extent * Math.pow(2, zoom));
+        }
+    }
+
+    private volatile Indexes indexes;
+    private volatile boolean loading;
+    // Mutations seen while a load is running, replayed on the fresh indexes before they are swapped in.
+    // A ReentrantLock rather than synchronized so virtual threads don't pin their carrier while waiting.
+    private final List<Consumer<Indexes>> pendingChanges = new ArrayList<>();
+    private final ReentrantLock pendingLock = new ReentrantLock();
+
+    public POIIndexService(POIRepository poiRepository,
+                           MeterRegistry meterRegistry,
+                           @Value("${travelplanner.poi-index.enabled:true}") boolean enabled,
+                           @Value("${travelplanner.poi-index.cell-size-degrees:0.05}") double cellSizeDegrees,
+                           @Value("${travelplanner.poi-clusters.min-zoom:0}") int clusterMinZoom,
+                           @Value("${travelplanner.poi-clusters.max-zoom:16}") int clusterMaxZoom,
+                           @Value("${travelplanner.poi-clusters.radius-pixels:60}") double clusterRadiusPixels,
+                           @Value("${travelplanner.poi-clusters.extent:512}") int clusterExtent,
+                           @Value("${travelplanner.poi-clusters.max-results:500}") int clusterMaxResults,
+                           @Value("${travelplanner.poi-search.distance-decay-meters:5000}") double searchDecayMeters) {
+        this.poiRepository = poiRepository;
+        this.enabled = enabled;
+        this.cellSizeDegrees = cellSizeDegrees;
+        this.clusterSettings = new ClusterSettings(clusterMinZoom, clusterMaxZoom, clusterRadiusPixels,
+                clusterExtent, clusterMaxResults);
+        this.searchDecayMeters = searchDecayMeters;
+        Gauge.builder("poi.search.index.memory", this, POIIndexService::searchIndexBytes)
+                .baseUnit("bytes")
+                .description("Estimated heap held by the POI name typeahead index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    // Rebuilds the indexes from the database in the background; the current ones keep serving until the swap.
+    // Also undoes the drift that incremental cluster updates accumulate.
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        pendingLock.lock();
+        try {
+            if (loading) {
+                return;
+            }
+            loading = true;
+        } finally {
+            pendingLock.unlock();
+        }
+        Thread loader = new Thread(this::load, "poi-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    public boolean isReady() {
+        return indexes != null;
+    }
+
+    public ClusterSettings getClusterSettings() {
+        return clusterSettings;
+    }
+
+    public List<POI> findNearby(double lat, double lng, double radiusInMeters) {
+        return current().grid().withinRadius(lat, lng, radiusInMeters);
+    }
+
+    // n closest POIs of the type (any type when null) and category (any when null), closest first
+    public List<KdTree.Neighbor<POI>> findNearest(double lat, double lng, int n, POIType type, String category) {
+        Map<POIType, KdTree<POI>> trees = current().nearest();
+        Predicate<POI> filter = poi -> category == null || category.equals(poi.getCategory());
+        if (type != null) {
+            return trees.get(type).nearest(lat, lng, n, filter);
+        }
+        List<KdTree.Neighbor<POI>> merged = new ArrayList<>();
+        for (KdTree<POI> tree : trees.values()) {
+            merged.addAll(tree.nearest(lat, lng, n, filter));
+        }
+        merged.sort(Comparator.comparingDouble(KdTree.Neighbor::distanceMeters));
+        return merged.subList(0, Math.min(n, merged.size()));
+    }
+
+    // Typeahead over names and categories; lat/lng NaN for no distance weighting
+    public List<TrigramIndex.Match<POI>> search(String query, int limit, double lat, double lng) {
+        return current().names().search(query, limit, lat, lng, searchDecayMeters);
+    }
+
+    public ClusterIndex.Result findClusters(double minLng, double minLat, double maxLng, double maxLat, int zoom) {
+        return current().clusters().query(minLng, minLat, maxLng, maxLat, zoom, clusterSettings.maxResults());
+    }
+
+    // Applied after the surrounding transaction commits so a rollback never leaks into the index
+    public void onCreated(POI poi) {
+        if (!enabled || !poi.isActive() || poi.getLocation() == null) {
+            return;
+        }
+        double lat = poi.getLocation().getY();
+        double lng = poi.getLocation().getX();
+        int type = poi.getPoiType().ordinal();
+        afterCommit(indexes -> {
+            indexes.grid().put(poi.getId(), lat, lng, poi);
+            indexes.clusters().put(poi.getId(), lat, lng, type);
+            indexes.nearest().get(poi.getPoiType()).put(poi.getId(), lat, lng, poi);
+            indexes.names().put(poi.getId(), poi.getName(), poi.getCategory(), lat, lng, poi);
+        });
+    }
+
+    public void onDeleted(Long poiId) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(indexes -> {
+            indexes.grid().remove(poiId);
+            indexes.clusters().remove(poiId);
+            indexes.nearest().values().forEach(tree -> tree.remove(poiId));
+            indexes.names().remove(poiId);
+        });
+    }
+
+    void load() {
+        long start = System.currentTimeMillis();
+        Indexes fresh;
+        try {
+            GeoGridIndex<POI> grid = new GeoGridIndex<>(cellSizeDegrees);
+            ClusterIndex clusters = clusterSettings.newIndex();
+            List<TrigramIndex.Entry<POI>> named = new ArrayList<>();
+            Map<POIType, List<KdTree.Entry<POI>>> byType = new EnumMap<>(POIType.class);
+            for (POIType type : POIType.values()) {
+                byType.put(type, new ArrayList<>());
+            }
+            for (POI poi : poiRepository.findAllActive()) {
+                if (poi.getLocation() != null) {
+                    double lat = poi.getLocation().getY();
+                    double lng = poi.getLocation().getX();
+                    grid.put(poi.getId(), lat, lng, poi);
+                    clusters.put(poi.getId(), lat, lng, poi.getPoiType().ordinal());
+                    byType.get(poi.getPoiType()).add(new KdTree.Entry<>(poi.getId(), lat, lng, poi));
+                    named.add(new TrigramIndex.Entry<>(poi.getId(), poi.getName(), poi.getCategory(), lat, lng, poi));
+                }
+            }
+            Map<POIType, KdTree<POI>> nearest = new EnumMap<>(POIType.class);
+            byType.forEach((type, entries) -> nearest.put(type, KdTree.of(entries)));
+            fresh = new Indexes(grid, clusters, nearest, TrigramIndex.of(named));
+        } catch (RuntimeException e) {
+            logger.warn("POI index load failed, keeping the previous state", e);
+            pendingLock.lock();
+            try {
+                pendingChanges.clear();
+                loading = false;
+            } finally {
+                pendingLock.unlock();
+            }
+            return;
+        }
+        pendingLock.lock();
+        try {
+            pendingChanges.forEach(change -> change.accept(fresh));
+            pendingChanges.clear();
+            indexes = fresh;
+            loading = false;
+        } finally {
+            pendingLock.unlock();
+        }
+        logger.info("POI index loaded {} POIs in {} ms", fresh.grid().size(), System.currentTimeMillis() - start);
+    }
+
+    private double searchIndexBytes() {
+        Indexes current = indexes;
+        return current != null ? current.names().estimatedBytes() : 0;
+    }
+
+    private Indexes current() {
+        Indexes current = indexes;
+        if (current == null) {
+            throw new IllegalStateException("POI index is not ready");
+        }
+        return current;
+    }
+
+    private void afterCommit(Consumer<Indexes> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    // Changes are idempotent, so applying one to the live index and replaying it on a fresh one is safe
+    private void apply(Consumer<Indexes> change) {
+        pendingLock.lock();
+        try {
+            if (loading) {
+                pendingChanges.add(change);
+            }
+        } finally {
+            pendingLock.unlock();
+        }
+        Indexes current = indexes;
+        if (current != null) {
+            change.accept(current);
+        }
+    }
+}
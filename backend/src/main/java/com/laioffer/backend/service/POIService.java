@@ -1,16 +1,38 @@
 package com.laioffer.backend.service;
 
 import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.geo.ClusterIndex;
 import com.laioffer.backend.repository.POIRepository;
+import com.laioffer.backend.search.TrigramIndex;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class POIService {
     private final POIRepository poiRepository;
+    private final POIIndexService poiIndexService;
+    private final NearbyPOICache nearbyPOICache;
+
+    // A map marker: a single POI (poiId set, count 1) or a cluster with its per-type breakdown
+    public record ClusterView(double lat, double lng, int count, Long poiId, Map<POIType, Integer> types) {
+    }
+
+    public record NearestPOI(POI poi, double distanceMeters) {
+    }
+
+    // zoom is the level actually served; lower than requested when the viewport held too many clusters
+    public record ClusterResponse(int zoom, List<ClusterView> clusters) {
+    }
 
     @Transactional(readOnly = true)
     public POI getPOIById(Long id) {
@@ -18,13 +40,138 @@ public class POIService {
                 .orElseThrow(() -> new RuntimeException("POI not found"));
     }
 
-    @Transactional(readOnly = true)
+    // Not transactional on purpose: an index hit must not check out a DB connection
     public List<POI> getNearbyPOIs(double lat, double lng, double radiusInMeters) {
-        return poiRepository.findNearbyPOIs(lat, lng, radiusInMeters);
+        if (poiIndexService.isReady()) {
+            return poiIndexService.findNearby(lat, lng, radiusInMeters);
+        }
+        return nearbyPOICache.findNearby(lat, lng, radiusInMeters);
+    }
+
+    // Typeahead: best name/category matches first, nearer ones favoured when lat and lng are given.
+    // The database fallback is a plain substring match, shortest names first
+    public List<POI> searchPOIs(String query, int limit, Double lat, Double lng) {
+        if (poiIndexService.isReady()) {
+            double centreLat = lat != null && lng != null ? lat : Double.NaN;
+            double centreLng = lat != null && lng != null ? lng : Double.NaN;
+            return poiIndexService.search(query, limit, centreLat, centreLng).stream()
+                    .map(TrigramIndex.Match::value)
+                    .toList();
+        }
+        String escaped = query.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return poiRepository.searchByName("%" + escaped + "%", limit);
+    }
+
+    // n closest active POIs, optionally filtered by type and category, closest first.
+    // Answered from the in-memory KD-trees once they are loaded, otherwise by a PostGIS KNN scan
+    public List<NearestPOI> getNearestPOIs(double lat, double lng, int n, POIType type, String category) {
+        if (poiIndexService.isReady()) {
+            return poiIndexService.findNearest(lat, lng, n, type, category).stream()
+                    .map(neighbor -> new NearestPOI(neighbor.value(), neighbor.distanceMeters()))
+                    .toList();
+        }
+        return findNearestInDatabase(lat, lng, n, type, category);
+    }
+
+    private List<NearestPOI> findNearestInDatabase(double lat, double lng, int n, POIType type, String category) {
+        List<POIRepository.POIDistance> rows =
+                poiRepository.findNearest(lat, lng, n, type != null ? type.name() : null, category);
+        // Entities by id go through the second-level cache
+        Map<Long, POI> byId = poiRepository.findAllById(rows.stream().map(POIRepository.POIDistance::getId).toList())
+                .stream()
+                .collect(Collectors.toMap(POI::getId, Function.identity()));
+        return rows.stream()
+                .filter(row -> byId.containsKey(row.getId()))
+                .map(row -> new NearestPOI(byId.get(row.getId()), row.getDistance()))
+                .toList();
+    }
+
+    // Clusters for a map viewport; minLng > maxLng means the box crosses the antimeridian.
+    // Not transactional either: only the fallback (index still loading or disabled) touches the database,
+    // and then the clustering itself runs there so no POI rows are loaded
+    public ClusterResponse getClusters(double minLng, double minLat, double maxLng, double maxLat, int zoom) {
+        ClusterIndex.Result result = poiIndexService.isReady()
+                ? poiIndexService.findClusters(minLng, minLat, maxLng, maxLat, zoom)
+                : clusterInDatabase(minLng, minLat, maxLng, maxLat, zoom);
+
+        POIType[] types = POIType.values();
+        List<ClusterView> clusters = new ArrayList<>(result.clusters().size());
+        for (ClusterIndex.Cluster cluster : result.clusters()) {
+            Map<POIType, Integer> breakdown = new EnumMap<>(POIType.class);
+            for (int i = 0; i < types.length; i++) {
+                if (cluster.typeCounts()[i] > 0) {
+                    breakdown.put(types[i], cluster.typeCounts()[i]);
+                }
+            }
+            clusters.add(new ClusterView(cluster.lat(), cluster.lng(), cluster.count(),
+                    cluster.isPoint() ? cluster.pointId() : null, breakdown));
+        }
+        return new ClusterResponse(result.zoom(), clusters);
+    }
+
+    // Grid clustering in SQL, one cluster per occupied cell. Coarser than ClusterIndex's greedy merge but
+    // bounded the same way: a viewport with more than maxResults cells is retried one zoom lower
+    private ClusterIndex.Result clusterInDatabase(double minLng, double minLat, double maxLng, double maxLat, int zoom) {
+        POIIndexService.ClusterSettings settings = poiIndexService.getClusterSettings();
+        int z = Math.max(settings.minZoom(), Math.min(zoom, settings.maxZoom() + 1));
+        while (true) {
+            List<POIRepository.GridCluster> cells = new ArrayList<>();
+            double cellSize = settings.cellSize(z);
+            int limit = settings.maxResults() + 1;
+            if (minLng <= maxLng) {
+                cells.addAll(poiRepository.clusterActiveInBox(minLng, minLat, maxLng, maxLat, cellSize, limit));
+            } else {
+                cells.addAll(poiRepository.clusterActiveInBox(minLng, minLat, 180.0, maxLat, cellSize, limit));
+                cells.addAll(poiRepository.clusterActiveInBox(-180.0, minLat, maxLng, maxLat, cellSize, limit));
+            }
+            if (cells.size() <= settings.maxResults() || z == settings.minZoom()) {
+                List<ClusterIndex.Cluster> clusters = new ArrayList<>(Math.min(cells.size(), settings.maxResults()));
+                for (int i = 0; i < cells.size() && i < settings.maxResults(); i++) {
+                    clusters.add(toCluster(cells.get(i)));
+                }
+                return new ClusterIndex.Result(z, clusters);
+            }
+            z--;
+        }
+    }
+
+    private static ClusterIndex.Cluster toCluster(POIRepository.GridCluster cell) {
+        int[] typeCounts = new int[POIType.values().length];
+        for (String entry : cell.getTypes().split(",")) {
+            int colon = entry.lastIndexOf(':');
+            typeCounts[POIType.valueOf(entry.substring(0, colon)).ordinal()] += Integer.parseInt(entry.substring(colon + 1));
+        }
+        int count = cell.getCount().intValue();
+        return new ClusterIndex.Cluster(cell.getLat(), cell.getLng(), count, count == 1 ? cell.getId() : -1, typeCounts);
+    }
+
+    // Served from the poi-active-queries cache region when the second-level cache is on
+    @Transactional(readOnly = true)
+    public List<POI> getActivePOIsByType(POIType type) {
+        return poiRepository.findActiveByType(type);
     }
 
     @Transactional
     public POI createPOI(POI poi) {
-        return poiRepository.save(poi);
+        POI saved = poiRepository.save(poi);
+        poiIndexService.onCreated(saved);
+        if (saved.getLocation() != null) {
+            nearbyPOICache.invalidate(saved.getLocation().getY(), saved.getLocation().getX());
+        }
+        return saved;
+    }
+
+    // Soft delete through the entity, so only this POI is evicted from the second-level cache
+    @Transactional
+    public void deletePOI(Long id) {
+        POI poi = poiRepository.findById(id)
+                .filter(POI::isActive)
+                .orElseThrow(() -> new RuntimeException("POI not found"));
+        poi.setActive(false);
+        poi.setDeletedAt(LocalDateTime.now());
+        poiIndexService.onDeleted(id);
+        if (poi.getLocation() != null) {
+            nearbyPOICache.invalidate(poi.getLocation().getY(), poi.getLocation().getX());
+        }
     }
 }
\ No newline at end of file
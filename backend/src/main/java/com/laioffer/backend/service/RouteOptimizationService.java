@@ -0,0 +1,162 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.PointType;
+import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.geo.RouteOptimizer;
+import com.laioffer.backend.geo.RouteOptimizer.Stop;
+import com.laioffer.backend.repository.TripPointRepository;
+import com.laioffer.backend.repository.TripRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Rewrites visitOrder so each day of a trip is a short walk between its points.
+// Days are solved in parallel with a shared per-request time budget, then written back in one transaction.
+@Service
+public class RouteOptimizationService {
+
+    private final TripRepository tripRepository;
+    private final TripPointRepository tripPointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ForkJoinPool pool;
+    private final long timeBudgetMillis;
+
+    public RouteOptimizationService(TripRepository tripRepository,
+                                    TripPointRepository tripPointRepository,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${travelplanner.route-optimizer.parallelism:0}") int parallelism,
+                                    @Value("${travelplanner.route-optimizer.time-budget-ms:500}") long timeBudgetMillis) {
+        this.tripRepository = tripRepository;
+        this.tripPointRepository = tripPointRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.timeBudgetMillis = timeBudgetMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Optimizes every day of the trip, or only the given date when it is not null
+    public List<TripPoint> optimize(Long tripId, LocalDate date) {
+        if (!tripRepository.existsById(tripId)) {
+            throw new RuntimeException("Trip not found");
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeBudgetMillis);
+
+        List<TripPoint> points = date != null
+                ? tripPointRepository.findByTripIdAndDate(tripId, date)
+                : tripPointRepository.findByTripId(tripId);
+
+        Map<LocalDate, List<TripPoint>> days = new TreeMap<>();
+        for (TripPoint point : points) {
+            days.computeIfAbsent(point.getDate(), d -> new ArrayList<>()).add(point);
+        }
+
+        Map<LocalDate, ForkJoinTask<List<Long>>> tasks = new TreeMap<>();
+        Map<LocalDate, AtomicReference<List<Long>>> bestSoFar = new TreeMap<>();
+        days.forEach((day, dayPoints) -> {
+            AtomicReference<List<Long>> best = new AtomicReference<>(
+                    currentOrder(dayPoints).stream().map(TripPoint::getId).toList());
+            bestSoFar.put(day, best);
+            tasks.put(day, pool.submit(() -> solveDay(dayPoints, deadline, best)));
+        });
+
+        Map<Long, Integer> newOrder = new HashMap<>();
+        days.forEach((day, dayPoints) -> {
+            List<Long> ids = await(tasks.get(day), deadline, bestSoFar.get(day));
+            for (int i = 0; i < ids.size(); i++) {
+                newOrder.put(ids.get(i), i + 1);
+            }
+        });
+
+        return transactionTemplate.execute(status -> {
+            List<TripPoint> managed = tripPointRepository.findAllById(newOrder.keySet());
+            for (TripPoint point : managed) {
+                point.setVisitOrder(newOrder.get(point.getId()));
+            }
+            managed.sort(Comparator.comparing(TripPoint::getDate).thenComparing(TripPoint::getVisitOrder));
+            tripRepository.bumpPointsVersion(tripId);
+            return managed;
+        });
+    }
+
+    private List<Long> await(ForkJoinTask<List<Long>> task, long deadline, AtomicReference<List<Long>> best) {
+        try {
+            // A little slack past the deadline: the solver checks it and returns its best route so far
+            long remaining = Math.max(0, deadline - System.nanoTime()) + TimeUnit.MILLISECONDS.toNanos(50);
+            return task.get(remaining, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            // Still queued behind other days, or one step took longer than the slack: take what it published
+            task.cancel(true);
+            return best.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Route optimization interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Route optimization failed", e.getCause());
+        }
+    }
+
+    private static List<Long> solveDay(List<TripPoint> dayPoints, long deadline, AtomicReference<List<Long>> best) {
+        List<TripPoint> ordered = currentOrder(dayPoints);
+        List<Stop> stops = new ArrayList<>();
+        Map<Integer, Long> unlocated = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            TripPoint point = ordered.get(i);
+            if (point.getLocation() == null) {
+                unlocated.put(i, point.getId());
+                continue;
+            }
+            stops.add(new Stop(point.getId(),
+                    point.getLocation().getY(),
+                    point.getLocation().getX(),
+                    isPinned(point),
+                    point.getPlannedTime()));
+        }
+        List<Stop> route = RouteOptimizer.optimize(stops, deadline,
+                improved -> best.set(withUnlocated(improved, unlocated, ordered.size())));
+        return withUnlocated(route, unlocated, ordered.size());
+    }
+
+    // Points without a location can't be routed, so they keep their positions too
+    private static List<Long> withUnlocated(List<Stop> route, Map<Integer, Long> unlocated, int size) {
+        List<Long> ids = new ArrayList<>(size);
+        int next = 0;
+        for (int i = 0; i < size; i++) {
+            Long id = unlocated.get(i);
+            ids.add(id != null ? id : route.get(next++).id());
+        }
+        return ids;
+    }
+
+    // Meals, transport legs and anything with a planned time stay where the user put them
+    private static boolean isPinned(TripPoint point) {
+        return point.getPlannedTime() != null
+                || point.getPointType() == PointType.MEAL
+                || point.getPointType() == PointType.TRANSPORT;
+    }
+
+    private static List<TripPoint> currentOrder(List<TripPoint> dayPoints) {
+        return dayPoints.stream()
+                .sorted(Comparator.comparing(TripPoint::getVisitOrder, Comparator.nullsLast(Comparator.naturalOrder()))
+                        .thenComparing(TripPoint::getId))
+                .toList();
+    }
+}
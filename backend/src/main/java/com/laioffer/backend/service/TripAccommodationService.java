@@ -1,8 +1,12 @@
 package com.laioffer.backend.service;
 
+import com.laioffer.backend.entity.Trip;
 import com.laioffer.backend.entity.TripAccommodation;
+import com.laioffer.backend.exception.CustomException;
 import com.laioffer.backend.repository.TripAccommodationRepository;
+import com.laioffer.backend.repository.TripRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.time.LocalDate;
@@ -12,10 +16,21 @@ import java.util.List;
 @RequiredArgsConstructor
 public class TripAccommodationService {
     private final TripAccommodationRepository accommodationRepository;
+    private final TripRepository tripRepository;
 
+    // The saved stay, and the nights of the trip that still have nowhere to sleep
+    public record AddedAccommodation(TripAccommodation accommodation,
+                                     List<AccommodationTimeline.NightRange> uncoveredNights) {}
+
+    @Transactional(readOnly = true)
+    public AccommodationTimeline getTimeline(Long tripId) {
+        return AccommodationTimeline.of(accommodationRepository.findByTripIdOrderByCheckInDate(tripId));
+    }
+
+    // The stay for the night of date, or on a last day the one checked out of that morning
     @Transactional(readOnly = true)
     public TripAccommodation getAccommodationForDate(Long tripId, LocalDate date) {
-        return accommodationRepository.findByTripIdAndDate(tripId, date)
+        return getTimeline(tripId).stayOn(date)
                 .orElseThrow(() -> new RuntimeException("No accommodation found for this date"));
     }
 
@@ -25,7 +40,29 @@ public class TripAccommodationService {
     }
 
     @Transactional
-    public TripAccommodation addAccommodation(TripAccommodation accommodation) {
-        return accommodationRepository.save(accommodation);
+    public AddedAccommodation addAccommodation(TripAccommodation accommodation) {
+        LocalDate checkIn = accommodation.getCheckInDate();
+        LocalDate checkOut = accommodation.getCheckOutDate();
+        if (checkIn == null || checkOut == null || !checkOut.isAfter(checkIn)) {
+            throw new CustomException("Check-out must be after check-in", HttpStatus.BAD_REQUEST.value());
+        }
+
+        // Locked so two concurrent inserts can't both pass the overlap check
+        Trip trip = tripRepository.findByIdForUpdate(accommodation.getTrip().getId())
+                .orElseThrow(() -> new RuntimeException("Trip not found"));
+        AccommodationTimeline timeline = getTimeline(trip.getId());
+        List<TripAccommodation> clashes = timeline.overlapping(checkIn, checkOut);
+        if (!clashes.isEmpty()) {
+            TripAccommodation clash = clashes.get(0);
+            throw new CustomException("Overlaps the stay from " + clash.getCheckInDate()
+                    + " to " + clash.getCheckOutDate(), HttpStatus.CONFLICT.value());
+        }
+
+        accommodation.setTrip(trip);
+        TripAccommodation saved = accommodationRepository.save(accommodation);
+        List<AccommodationTimeline.NightRange> gaps = trip.getStartDate() != null && trip.getEndDate() != null
+                ? timeline.with(saved).gaps(trip.getStartDate(), trip.getEndDate().minusDays(1))
+                : List.of();
+        return new AddedAccommodation(saved, gaps);
     }
-}
\ No newline at end of file
+}
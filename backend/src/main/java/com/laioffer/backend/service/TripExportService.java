@@ -0,0 +1,174 @@
+package com.laioffer.backend.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.repository.TripPointRepository;
+import com.laioffer.backend.serialization.PointSerializer;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+// Streams a trip straight from a DB cursor into GeoJSON or GPX, one point at a time
+@Service
+@RequiredArgsConstructor
+public class TripExportService {
+    private static final String GPX_NAMESPACE = "http://www.topografix.com/GPX/1/1";
+    private static final PointSerializer POINT_SERIALIZER = new PointSerializer();
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newFactory();
+
+    private final TripPointRepository tripPointRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+
+    public enum Format {
+        GEOJSON("application/geo+json", "geojson"),
+        GPX("application/gpx+xml", "gpx");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public void export(Long tripId, Format format, OutputStream out) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<TripPoint> points = tripPointRepository.streamByTripId(tripId)) {
+                if (format == Format.GPX) {
+                    writeGpx(points.iterator(), out);
+                } else {
+                    writeGeoJson(points.iterator(), out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to export trip " + tripId, e);
+            } catch (XMLStreamException e) {
+                throw new IllegalStateException("Failed to export trip " + tripId, e);
+            }
+        });
+    }
+
+    // FeatureCollection whose geometries use the same layout as PointSerializer
+    private void writeGeoJson(Iterator<TripPoint> points, OutputStream out) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeStringField("type", "FeatureCollection");
+            gen.writeArrayFieldStart("features");
+            while (points.hasNext()) {
+                TripPoint point = points.next();
+                gen.writeStartObject();
+                gen.writeStringField("type", "Feature");
+                gen.writeFieldName("geometry");
+                if (point.getLocation() != null) {
+                    POINT_SERIALIZER.serialize(point.getLocation(), gen, null);
+                } else {
+                    gen.writeNull();
+                }
+                gen.writeObjectFieldStart("properties");
+                gen.writeNumberField("id", point.getId());
+                gen.writeStringField("name", point.getName());
+                gen.writeStringField("date", point.getDate().toString());
+                if (point.getVisitOrder() != null) {
+                    gen.writeNumberField("visitOrder", point.getVisitOrder());
+                }
+                if (point.getPointType() != null) {
+                    gen.writeStringField("pointType", point.getPointType().name());
+                }
+                if (point.getPlannedTime() != null) {
+                    gen.writeStringField("plannedTime", point.getPlannedTime().toString());
+                }
+                if (point.getPlannedDuration() != null) {
+                    gen.writeNumberField("plannedDuration", point.getPlannedDuration());
+                }
+                if (point.getLocationName() != null) {
+                    gen.writeStringField("locationName", point.getLocationName());
+                }
+                if (point.getNotes() != null) {
+                    gen.writeStringField("notes", point.getNotes());
+                }
+                gen.writeEndObject();
+                gen.writeEndObject();
+                entityManager.detach(point);
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    // One <rte> per day; points without a location can't be route points and are skipped
+    private void writeGpx(Iterator<TripPoint> points, OutputStream out) throws XMLStreamException {
+        XMLStreamWriter xml = XML_OUTPUT_FACTORY.createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        xml.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        xml.writeStartElement("gpx");
+        xml.writeDefaultNamespace(GPX_NAMESPACE);
+        xml.writeAttribute("version", "1.1");
+        xml.writeAttribute("creator", "travel-planner");
+
+        LocalDate currentDay = null;
+        while (points.hasNext()) {
+            TripPoint point = points.next();
+            if (!Objects.equals(point.getDate(), currentDay)) {
+                if (currentDay != null) {
+                    xml.writeEndElement();
+                }
+                currentDay = point.getDate();
+                xml.writeStartElement("rte");
+                writeTextElement(xml, "name", currentDay.toString());
+            }
+            if (point.getLocation() != null) {
+                xml.writeStartElement("rtept");
+                xml.writeAttribute("lat", Double.toString(point.getLocation().getY()));
+                xml.writeAttribute("lon", Double.toString(point.getLocation().getX()));
+                writeTextElement(xml, "name", point.getName());
+                if (point.getNotes() != null) {
+                    writeTextElement(xml, "desc", point.getNotes());
+                }
+                if (point.getPointType() != null) {
+                    writeTextElement(xml, "type", point.getPointType().name());
+                }
+                xml.writeEndElement();
+            }
+            entityManager.detach(point);
+        }
+        if (currentDay != null) {
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+        xml.writeEndDocument();
+        xml.flush();
+        xml.close();
+    }
+
+    private static void writeTextElement(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+        xml.writeStartElement(name);
+        xml.writeCharacters(text != null ? text : "");
+        xml.writeEndElement();
+    }
+}
@@ -32,6 +32,10 @@ public class TripManagementService {
         return tripRepository.findById(tripId);
     }
 
+    public Optional<Long> getTripVersion(Long tripId) {
+        return tripRepository.findVersionById(tripId);
+    }
+
     @Transactional(readOnly = true)
     public List<Trip> getUserTrips(Long userId) {
         return tripRepository.findByUserIdOrderByStartDateDesc(userId);
@@ -1,32 +1,62 @@
 package com.laioffer.backend.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.laioffer.backend.controller.TripPointBatchRequestBody;
 import com.laioffer.backend.controller.TripPointRequestBody;
 import com.laioffer.backend.entity.PointType;
 import com.laioffer.backend.entity.Trip;
 import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.exception.CustomException;
 import com.laioffer.backend.repository.TripPointRepository;
 import com.laioffer.backend.repository.TripRepository;
+import jakarta.persistence.EntityManager;
 import jakarta.persistence.EnumType;
 import lombok.RequiredArgsConstructor;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
 public class TripPointService {
     private final TripPointRepository tripPointRepository;
     private final TripRepository tripRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final DayScheduleService dayScheduleService;
+
+    public record TripPointPage(List<TripPoint> items, String nextCursor) {}
     
     // 创建一个 GeometryFactory，使用 SRID 4326 (WGS84)
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
@@ -37,6 +67,12 @@ public class TripPointService {
                 .orElseThrow(() -> new RuntimeException("TripPoint not found"));
     }
 
+    // Changes with every create, update, delete, batch or reorder of the trip's points
+    @Transactional(readOnly = true)
+    public Optional<Long> getPointsVersion(Long tripId) {
+        return tripRepository.findPointsVersionById(tripId);
+    }
+
     @Transactional(readOnly = true)
     public List<TripPoint> getTripPointsByTripId(Long tripId) {
         return tripPointRepository.findByTripIdOrderByDateAsc(tripId);
@@ -47,9 +83,66 @@ public class TripPointService {
         return tripPointRepository.findByTripIdAndDate(tripId, date);
     }
 
+    // Pages through the trip points on a day across all trips; pass the previous nextCursor to continue
     @Transactional(readOnly = true)
-    public List<TripPoint> getTripPointsByDay(LocalDate date) {
-        return tripPointRepository.findByDay(date);
+    public TripPointPage getTripPointsByDay(LocalDate date, String cursor, int limit) {
+        Cursor after = cursor != null && !cursor.isEmpty() ? decodeCursor(cursor) : Cursor.START;
+
+        List<TripPoint> items = tripPointRepository.findDayPage(date, after.tripId(), after.visitOrder(), after.id(), limit);
+        String nextCursor = null;
+        if (items.size() == limit) {
+            TripPoint last = items.get(items.size() - 1);
+            nextCursor = encodeCursor(last);
+        }
+        return new TripPointPage(items, nextCursor);
+    }
+
+    // Writes every trip point on the day as one JSON array, row by row off a DB cursor.
+    // Each row is detached once written, so memory stays flat however many rows match.
+    public void streamTripPointsByDay(LocalDate date, OutputStream out) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            // Rows go through the generator's buffer; flushing after each one would mean a socket write per row
+            ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            try (Stream<TripPoint> points = tripPointRepository.streamByDay(date);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.writeStartArray();
+                Iterator<TripPoint> iterator = points.iterator();
+                while (iterator.hasNext()) {
+                    TripPoint point = iterator.next();
+                    writer.writeValue(generator, point);
+                    entityManager.detach(point);
+                }
+                generator.writeEndArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to stream trip points", e);
+            }
+        });
+    }
+
+    private static String encodeCursor(TripPoint last) {
+        int visitOrder = last.getVisitOrder() != null ? last.getVisitOrder() : Integer.MAX_VALUE;
+        String raw = last.getTrip().getId() + ":" + visitOrder + ":" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Position after the last row of the previous page, in findDayPage's order
+    private record Cursor(long tripId, int visitOrder, long id) {
+        static final Cursor START = new Cursor(0, Integer.MIN_VALUE, 0);
+    }
+
+    private static Cursor decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            // NumberFormatException is an IllegalArgumentException too
+            return new Cursor(Long.parseLong(parts[0]), Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new CustomException("Invalid cursor", HttpStatus.BAD_REQUEST.value());
+        }
     }
 
     @Transactional
@@ -82,42 +175,130 @@ public class TripPointService {
                 .notes(requestBody.notes())
                 .build();
 
-        return tripPointRepository.save(tripPoint);
+        tripRepository.bumpPointsVersion(trip.getId());
+        TripPoint saved = tripPointRepository.save(tripPoint);
+        dayScheduleService.pointSaved(trip.getId(), null, saved);
+        return saved;
     }
 
-    @Transactional
-    public TripPoint updateTripPoint(Long id, TripPointRequestBody requestBody) {
-        TripPoint existing = tripPointRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("TripPoint not found"));
-
-        // 从请求体中获取坐标并创建新的 Point
+    private void applyRequest(TripPoint point, TripPointRequestBody requestBody) {
         if (requestBody.location() != null) {
-            Point location = geometryFactory.createPoint(
+            point.setLocation(geometryFactory.createPoint(
                 new Coordinate(
                     requestBody.location().x(),
                     requestBody.location().y()
                 )
-            );
-            existing.setLocation(location);
+            ));
         }
+        point.setName(requestBody.name());
+        point.setDate(requestBody.date());
+        point.setVisitOrder(requestBody.visitOrder());
+        point.setPointType(requestBody.pointType());
+        point.setPlannedDuration(requestBody.plannedDuration());
+        point.setPlannedTime(requestBody.plannedTime());
+        point.setNotes(requestBody.notes());
+        point.setLocationName(requestBody.locationName());
+    }
 
-        existing.setName(requestBody.name());
-        existing.setDate(requestBody.date());
-        existing.setVisitOrder(requestBody.visitOrder());
-        existing.setPointType(requestBody.pointType());
-        existing.setPlannedDuration(requestBody.plannedDuration());
-        existing.setPlannedTime(requestBody.plannedTime());
-        existing.setNotes(requestBody.notes());
-        existing.setLocationName(requestBody.locationName());
+    @Transactional
+    public TripPoint updateTripPoint(Long id, TripPointRequestBody requestBody) {
+        TripPoint existing = tripPointRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("TripPoint not found"));
+        LocalDate previousDate = existing.getDate();
+
+        applyRequest(existing, requestBody);
 
-        return tripPointRepository.save(existing);
+        Long tripId = existing.getTrip().getId();
+        tripRepository.bumpPointsVersion(tripId);
+        TripPoint saved = tripPointRepository.save(existing);
+        // Only the changed point's day(s) get recomputed, from its old and new positions on
+        dayScheduleService.pointSaved(tripId, previousDate, saved);
+        return saved;
     }
 
+    // Applies upserts, deletes and reorders for one trip in a single transaction.
+    // New points take ids from the pooled sequence, so the inserts and updates go out as JDBC batches at flush.
     @Transactional
-    public void deleteTripPoint(Long id) {
-        if (!tripPointRepository.existsById(id)) {
-            throw new RuntimeException("TripPoint not found");
+    public List<TripPoint> applyBatch(TripPointBatchRequestBody batch) {
+        List<TripPointBatchRequestBody.Upsert> upserts = batch.upserts() != null ? batch.upserts() : List.of();
+        List<Long> deletes = batch.deletes() != null ? batch.deletes() : List.of();
+        List<TripPointBatchRequestBody.Reorder> reorders = batch.reorders() != null ? batch.reorders() : List.of();
+        validateBatch(upserts, deletes, reorders);
+
+        Trip trip = tripRepository.findById(batch.trip())
+                .orElseThrow(() -> new RuntimeException("Trip not found"));
+
+        // Every existing point the batch touches, loaded with one query
+        Set<Long> referencedIds = new HashSet<>(deletes);
+        upserts.stream().map(TripPointBatchRequestBody.Upsert::id).filter(Objects::nonNull).forEach(referencedIds::add);
+        reorders.stream().map(TripPointBatchRequestBody.Reorder::id).forEach(referencedIds::add);
+        Map<Long, TripPoint> existing = tripPointRepository.findAllById(referencedIds).stream()
+                .collect(Collectors.toMap(TripPoint::getId, Function.identity()));
+        for (Long id : referencedIds) {
+            TripPoint point = existing.get(id);
+            if (point == null || !point.getTrip().getId().equals(trip.getId())) {
+                throw new CustomException("TripPoint not found: " + id, HttpStatus.BAD_REQUEST.value());
+            }
+        }
+
+        List<TripPoint> created = new ArrayList<>();
+        for (TripPointBatchRequestBody.Upsert upsert : upserts) {
+            if (upsert.id() == null) {
+                TripPoint point = TripPoint.builder().trip(trip).build();
+                applyRequest(point, upsert.point());
+                created.add(point);
+            } else {
+                applyRequest(existing.get(upsert.id()), upsert.point());
+            }
+        }
+        tripPointRepository.saveAll(created);
+
+        for (TripPointBatchRequestBody.Reorder reorder : reorders) {
+            TripPoint point = existing.get(reorder.id());
+            if (reorder.date() != null) {
+                point.setDate(reorder.date());
+            }
+            point.setVisitOrder(reorder.visitOrder());
+        }
+
+        if (!deletes.isEmpty()) {
+            tripPointRepository.flush();
+            tripPointRepository.deleteAllByIdInBatch(deletes);
         }
-        tripPointRepository.deleteById(id);
+        tripRepository.bumpPointsVersion(trip.getId());
+        return tripPointRepository.findByTripIdOrderByDateAscVisitOrderAsc(trip.getId());
+    }
+
+    // Everything the batch would otherwise trip over halfway, rejected before the first write
+    private static void validateBatch(List<TripPointBatchRequestBody.Upsert> upserts, List<Long> deletes,
+                                      List<TripPointBatchRequestBody.Reorder> reorders) {
+        for (int i = 0; i < upserts.size(); i++) {
+            if (upserts.get(i) == null || upserts.get(i).point() == null) {
+                throw new CustomException("upserts[" + i + "].point must be provided", HttpStatus.BAD_REQUEST.value());
+            }
+        }
+        for (int i = 0; i < deletes.size(); i++) {
+            if (deletes.get(i) == null) {
+                throw new CustomException("deletes[" + i + "] must be an id", HttpStatus.BAD_REQUEST.value());
+            }
+        }
+        for (int i = 0; i < reorders.size(); i++) {
+            TripPointBatchRequestBody.Reorder reorder = reorders.get(i);
+            if (reorder == null || reorder.id() == null) {
+                throw new CustomException("reorders[" + i + "].id must be provided", HttpStatus.BAD_REQUEST.value());
+            }
+            if (reorder.visitOrder() == null || reorder.visitOrder() < 1) {
+                throw new CustomException("reorders[" + i + "].visitOrder must be 1 or more", HttpStatus.BAD_REQUEST.value());
+            }
+        }
+    }
+
+    @Transactional
+    public void deleteTripPoint(Long id) {
+        TripPoint existing = tripPointRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("TripPoint not found"));
+        tripRepository.bumpPointsVersion(existing.getTrip().getId());
+        dayScheduleService.pointDeleted(existing.getTrip().getId(), existing);
+        tripPointRepository.delete(existing);
     }
 }
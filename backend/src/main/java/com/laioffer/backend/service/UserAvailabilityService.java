@@ -0,0 +1,201 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.cache.BloomFilter;
+import com.laioffer.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+// Bloom filters of taken usernames and emails. A miss means "definitely free" and skips the query;
+// a hit still goes to the database, and the unique constraints stay the final word.
+// Freed names (renames) stay in the filter until the next rebuild and just cost a query.
+@Service
+public class UserAvailabilityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserAvailabilityService.class);
+
+    private final UserRepository userRepository;
+    private final boolean enabled;
+    private final long minCapacity;
+    private final double targetFpp;
+
+    private final Field usernames;
+    private final Field emails;
+    private final AtomicBoolean loading = new AtomicBoolean();
+
+    public UserAvailabilityService(UserRepository userRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${travelplanner.availability.enabled:true}") boolean enabled,
+                                   @Value("${travelplanner.availability.min-capacity:100000}") long minCapacity,
+                                   @Value("${travelplanner.availability.fpp:0.01}") double targetFpp) {
+        this.userRepository = userRepository;
+        this.enabled = enabled;
+        this.minCapacity = minCapacity;
+        this.targetFpp = targetFpp;
+        this.usernames = new Field("username", userRepository::existsByUsername, meterRegistry);
+        this.emails = new Field("email", userRepository::existsByEmail, meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    // Rebuilds both filters in the background; lookups go to the database until the first build finishes
+    public void reload() {
+        if (!enabled || !loading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread loader = new Thread(this::load, "user-availability-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    // Filters built and no rebuild running
+    public boolean isReady() {
+        return !loading.get() && usernames.filter != null && emails.filter != null;
+    }
+
+    public boolean isUsernameTaken(String username) {
+        return usernames.isTaken(username);
+    }
+
+    public boolean isEmailTaken(String email) {
+        return emails.isTaken(email);
+    }
+
+    // Called after a user row with these values was saved
+    public void onSaved(String username, String email) {
+        boolean rebuilding = loading.get();
+        boolean full = usernames.add(username, rebuilding) | emails.add(email, rebuilding);
+        if (full) {
+            reload();
+        }
+    }
+
+    void load() {
+        long start = System.currentTimeMillis();
+        try {
+            // Anything recorded before this point committed before the scan below and is in its result
+            usernames.clearRecent();
+            emails.clearRecent();
+            List<Object[]> rows = userRepository.findAllUsernamesAndEmails();
+            // Headroom so the filters can absorb signups for a while before they need a rebuild
+            long capacity = Math.max(minCapacity, rows.size() * 2L);
+            BloomFilter freshUsernames = BloomFilter.create(capacity, targetFpp);
+            BloomFilter freshEmails = BloomFilter.create(capacity, targetFpp);
+            for (Object[] row : rows) {
+                freshUsernames.put((String) row[0]);
+                freshEmails.put((String) row[1]);
+            }
+            // Saves that committed during the scan may be missing: replay what was recorded since
+            usernames.swap(freshUsernames, capacity);
+            emails.swap(freshEmails, capacity);
+            logger.info("Availability filters built for {} users in {} ms", rows.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.warn("Availability filter build failed, keeping the previous state", e);
+        } finally {
+            loading.set(false);
+        }
+    }
+
+    private static final class Field {
+        private final Predicate<String> exists;
+        private volatile BloomFilter filter;
+        private volatile long capacity;
+        // Values saved while a rebuild scans the table, so the swap can't lose them
+        private final Queue<String> recent = new ConcurrentLinkedQueue<>();
+
+        private final Counter definitelyFree;
+        private final Counter taken;
+        private final Counter falsePositives;
+        private final LongAdder negatives = new LongAdder();
+        private final LongAdder falsePositiveCount = new LongAdder();
+
+        Field(String name, Predicate<String> exists, MeterRegistry meterRegistry) {
+            this.exists = exists;
+            this.definitelyFree = Counter.builder("user.availability.checks").tags("field", name, "result", "filter_free")
+                    .register(meterRegistry);
+            this.taken = Counter.builder("user.availability.checks").tags("field", name, "result", "taken")
+                    .register(meterRegistry);
+            this.falsePositives = Counter.builder("user.availability.checks").tags("field", name, "result", "false_positive")
+                    .register(meterRegistry);
+            // Observed rate among values that turned out to be free, next to what the fill ratio predicts
+            Gauge.builder("user.availability.false.positive.rate", this, Field::observedFpp)
+                    .tags("field", name, "source", "observed").register(meterRegistry);
+            Gauge.builder("user.availability.false.positive.rate", this, Field::expectedFpp)
+                    .tags("field", name, "source", "expected").register(meterRegistry);
+        }
+
+        boolean isTaken(String value) {
+            BloomFilter current = filter;
+            if (current != null && !current.mightContain(value)) {
+                definitelyFree.increment();
+                negatives.increment();
+                return false;
+            }
+            boolean result = exists.test(value);
+            if (result) {
+                taken.increment();
+            } else if (current != null) {
+                falsePositives.increment();
+                falsePositiveCount.increment();
+            }
+            return result;
+        }
+
+        // Returns true when the filter has outgrown its capacity and should be rebuilt
+        boolean add(String value, boolean rebuilding) {
+            if (value == null) {
+                return false;
+            }
+            if (rebuilding) {
+                recent.add(value);
+            }
+            BloomFilter current = filter;
+            if (current == null) {
+                return false;
+            }
+            current.put(value);
+            return current.approximateElementCount() > capacity;
+        }
+
+        void clearRecent() {
+            recent.clear();
+        }
+
+        // Publish first, then replay: a concurrent add either sees the fresh filter or was queued before the replay
+        void swap(BloomFilter fresh, long freshCapacity) {
+            capacity = freshCapacity;
+            filter = fresh;
+            String value;
+            while ((value = recent.poll()) != null) {
+                fresh.put(value);
+            }
+        }
+
+        double observedFpp() {
+            double fp = falsePositiveCount.sum();
+            double total = fp + negatives.sum();
+            return total == 0 ? 0 : fp / total;
+        }
+
+        double expectedFpp() {
+            BloomFilter current = filter;
+            return current == null ? 0 : current.expectedFpp();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.laioffer.backend.storage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+// Where uploaded images end up. Keys are slash-separated object names; put returns the public URL.
+public interface BlobStorage {
+
+    record BlobEntry(String key, Instant createdAt) {
+    }
+
+    String put(String key, InputStream data, String contentType) throws IOException;
+
+    boolean exists(String key) throws IOException;
+
+    // Callers must close the stream
+    Stream<BlobEntry> list(String prefix) throws IOException;
+
+    // Renames an object within the storage, replacing whatever is at to
+    void move(String from, String to) throws IOException;
+
+    String urlOf(String key);
+
+    void delete(String key) throws IOException;
+
+    // Inverse of urlOf; null for URLs that don't point into this storage
+    default String keyOf(String url) {
+        String base = urlOf("");
+        return url != null && url.startsWith(base) ? url.substring(base.length()) : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.laioffer.backend.storage;
+
+import com.google.cloud.storage.Acl;
+import com.google.cloud.storage.Blob;
+import com.google.cloud.storage.BlobId;
+import com.google.cloud.storage.BlobInfo;
+import com.google.cloud.storage.Storage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+@Component
+@ConditionalOnProperty(name = "travelplanner.storage.type", havingValue = "gcs", matchIfMissing = true)
+public class GcsBlobStorage implements BlobStorage {
+
+    private final String bucketName;
+    private final Storage storage;
+
+    public GcsBlobStorage(@Value("${travelplanner.gcs.bucket}") String bucketName, Storage storage) {
+        this.bucketName = bucketName;
+        this.storage = storage;
+    }
+
+    @Override
+    public String put(String key, InputStream data, String contentType) throws IOException {
+        BlobInfo blobInfo = storage.createFrom(
+                BlobInfo
+                        .newBuilder(bucketName, key)
+                        .setContentType(contentType)
+                        // Keys are content hashes, so an object never changes once written
+                        .setCacheControl("public, max-age=31536000, immutable")
+                        .setAcl(List.of(Acl.of(Acl.User.ofAllUsers(), Acl.Role.READER)))
+                        .build(),
+                data);
+        return urlOf(blobInfo.getName());
+    }
+
+    @Override
+    public boolean exists(String key) {
+        Blob blob = storage.get(bucketName, key, Storage.BlobGetOption.fields(Storage.BlobField.NAME));
+        return blob != null && blob.exists();
+    }
+
+    @Override
+    public Stream<BlobEntry> list(String prefix) {
+        Iterable<Blob> blobs = storage.list(bucketName,
+                Storage.BlobListOption.prefix(prefix),
+                Storage.BlobListOption.fields(Storage.BlobField.NAME, Storage.BlobField.TIME_CREATED)).iterateAll();
+        return StreamSupport.stream(blobs.spliterator(), false)
+                .map(blob -> new BlobEntry(blob.getName(), Instant.ofEpochMilli(blob.getCreateTime())));
+    }
+
+    // A server-side copy keeps content type and cache control; nothing passes through this instance
+    @Override
+    public void move(String from, String to) {
+        storage.copy(Storage.CopyRequest.newBuilder()
+                        .setSource(BlobId.of(bucketName, from))
+                        .setTarget(BlobId.of(bucketName, to),
+                                List.of(Storage.BlobTargetOption.predefinedAcl(Storage.PredefinedAcl.PUBLIC_READ)))
+                        .build())
+                .getResult();
+        storage.delete(bucketName, from);
+    }
+
+    @Override
+    public String urlOf(String key) {
+        return "https://storage.googleapis.com/" + bucketName + "/" + key;
+    }
+
+    @Override
+    public void delete(String key) {
+        storage.delete(bucketName, key);
+    }
+}
@@ -0,0 +1,103 @@
+package com.laioffer.backend.storage;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+// Decodes uploads and turns them into square JPEG thumbnails
+public final class ImageResizer {
+
+    private ImageResizer() {
+    }
+
+    // Reads only the header, so oversized or non-image uploads are rejected before anything is decoded
+    public static void probe(byte[] data, long maxPixels) throws IOException {
+        withReader(data, reader -> {
+            long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+            if (pixels > maxPixels) {
+                throw new IOException("Image is too large: " + reader.getWidth(0) + "x" + reader.getHeight(0));
+            }
+            return null;
+        });
+    }
+
+    public static BufferedImage decode(byte[] data, long maxPixels) throws IOException {
+        probe(data, maxPixels);
+        return withReader(data, reader -> reader.read(0));
+    }
+
+    // Centre-crops to a square and scales down to size x size; smaller sources are not upscaled
+    public static BufferedImage squareThumbnail(BufferedImage source, int size) {
+        int side = Math.min(source.getWidth(), source.getHeight());
+        BufferedImage current = source.getSubimage((source.getWidth() - side) / 2, (source.getHeight() - side) / 2, side, side);
+        int target = Math.min(size, side);
+        // Halve in steps first; a single bilinear pass from a much larger image skips most source pixels
+        while (current.getWidth() / 2 >= target) {
+            current = draw(current, current.getWidth() / 2);
+        }
+        return current.getWidth() == target && current.getType() == BufferedImage.TYPE_INT_RGB
+                ? current
+                : draw(current, target);
+    }
+
+    public static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // Always draws into RGB on white: JPEG has no alpha channel
+    private static BufferedImage draw(BufferedImage source, int side) {
+        BufferedImage scaled = new BufferedImage(side, side, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, side, side, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return scaled;
+    }
+
+    private interface ReaderAction<R> {
+        R apply(ImageReader reader) throws IOException;
+    }
+
+    private static <R> R withReader(byte[] data, ReaderAction<R> action) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Unsupported image format");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                return action.apply(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.laioffer.backend.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.stream.Stream;
+
+// Filesystem storage for local development and tests, served back under /files/**
+@Component
+@ConditionalOnProperty(name = "travelplanner.storage.type", havingValue = "local")
+public class LocalBlobStorage implements BlobStorage, WebMvcConfigurer {
+
+    static final String URL_PATH = "/files/";
+
+    private final Path root;
+    private final String baseUrl;
+
+    public LocalBlobStorage(@Value("${travelplanner.storage.local.root:build/storage}") String root,
+                            @Value("${travelplanner.storage.local.base-url:http://localhost:8080}") String baseUrl) {
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public String put(String key, InputStream data, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        // Write next to the target and move, so readers never see a half-written file
+        Path partial = Files.createTempFile(target.getParent(), ".upload-", ".part");
+        try {
+            Files.copy(data, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        return urlOf(key);
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public Stream<BlobEntry> list(String prefix) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Stream.empty();
+        }
+        return Files.walk(root)
+                .filter(Files::isRegularFile)
+                .filter(path -> !path.getFileName().toString().startsWith(".upload-"))
+                .map(path -> root.relativize(path).toString().replace('\\', '/'))
+                .filter(key -> key.startsWith(prefix))
+                .map(this::entry);
+    }
+
+    @Override
+    public void move(String from, String to) throws IOException {
+        Path target = resolve(to);
+        Files.createDirectories(target.getParent());
+        Files.move(resolve(from), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String urlOf(String key) {
+        return baseUrl + URL_PATH + key;
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        registry.addResourceHandler(URL_PATH + "**").addResourceLocations(root.toUri().toString());
+    }
+
+    private BlobEntry entry(String key) {
+        try {
+            return new BlobEntry(key, Files.getLastModifiedTime(resolve(key)).toInstant());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+}
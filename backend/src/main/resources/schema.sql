@@ -56,7 +56,20 @@ CREATE TABLE IF NOT EXISTS trip_points (
                              location_name VARCHAR(255)
 );
 
+-- Columns added to the entity after the table was first created
+ALTER TABLE trip_points ADD COLUMN IF NOT EXISTS name VARCHAR(255);
+ALTER TABLE trip_points ADD COLUMN IF NOT EXISTS date DATE;
+-- Conditional GET versions: trips.version for the trip row, trips.points_version for its points
+ALTER TABLE trips ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE trips ADD COLUMN IF NOT EXISTS points_version BIGINT NOT NULL DEFAULT 0;
+
+-- TripPoint ids come from a pooled sequence (allocationSize = 50), the increment has to match
+ALTER SEQUENCE IF EXISTS trip_points_id_seq INCREMENT BY 50;
+
 -- Indexes for better query performance
 CREATE INDEX IF NOT EXISTS idx_poi_location ON poi USING GIST(location);
 CREATE INDEX IF NOT EXISTS idx_trips_user ON trips(user_id);
-CREATE INDEX IF NOT EXISTS idx_trip_points_trip ON trip_points(trip_id);
\ No newline at end of file
+CREATE INDEX IF NOT EXISTS idx_trip_points_trip ON trip_points(trip_id);
+CREATE INDEX IF NOT EXISTS idx_poi_location_geog ON poi USING GIST((location::geography));
+-- Keyset pagination of the cross-trip day scan, matches the ORDER BY in TripPointRepository.findDayPage
+CREATE INDEX IF NOT EXISTS idx_trip_points_day_keyset ON trip_points(date, trip_id, (COALESCE(visit_order, 2147483647)), id);
\ No newline at end of file
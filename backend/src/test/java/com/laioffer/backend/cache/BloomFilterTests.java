@@ -0,0 +1,29 @@
+package com.laioffer.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+    @Test
+    void neverReportsAnInsertedValueAsAbsentAndStaysNearTargetRate() {
+        BloomFilter filter = BloomFilter.create(50_000, 0.01);
+        for (int i = 0; i < 50_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+        for (int i = 0; i < 50_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 50_000; i++) {
+            if (filter.mightContain("someone-else" + i)) {
+                falsePositives++;
+            }
+        }
+        double rate = falsePositives / 50_000.0;
+        assertTrue(rate < 0.02, "false-positive rate " + rate);
+        assertTrue(Math.abs(filter.expectedFpp() - 0.01) < 0.005);
+    }
+}
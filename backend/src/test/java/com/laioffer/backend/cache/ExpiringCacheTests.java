@@ -0,0 +1,93 @@
+package com.laioffer.backend.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExpiringCacheTests {
+
+    @Test
+    void entriesExpireAtTheirOwnTime() throws InterruptedException {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+        long now = System.currentTimeMillis();
+        cache.put("short", "a", now + 50);
+        cache.put("long", "b", now + 60_000);
+        cache.put("past", "c", now - 1);
+
+        assertEquals("a", cache.get("short"));
+        assertNull(cache.get("past"));
+        Thread.sleep(100);
+
+        assertNull(cache.get("short"));
+        assertEquals("b", cache.get("long"));
+        assertEquals(1, cache.size());
+        assertEquals(2, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void computeIfAbsentLoadsOnceAndNeverCachesMissingValues() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.computeIfAbsent("alice", key -> "user:" + key + loads.incrementAndGet(), 60_000);
+        assertEquals("user:alice1", cache.computeIfAbsent("alice", key -> "user:" + key + loads.incrementAndGet(), 60_000));
+        cache.computeIfAbsent("nobody", key -> {
+            loads.incrementAndGet();
+            return null;
+        }, 60_000);
+        cache.computeIfAbsent("nobody", key -> {
+            loads.incrementAndGet();
+            return null;
+        }, 60_000);
+
+        assertEquals(3, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void invalidatedEntriesAreReloaded() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10);
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        cache.put("a", "1", expiresAt);
+        cache.put("b", "2", expiresAt);
+
+        cache.invalidate("a");
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals("3", cache.computeIfAbsent("a", key -> "3", 60_000));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    void sizeStaysBoundedAndExpiredEntriesGoFirst() throws InterruptedException {
+        ExpiringCache<Integer, Integer> cache = new ExpiringCache<>(100);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 1_000; i++) {
+            cache.put(i, i, now + 60_000);
+            assertTrue(cache.size() <= 100, "size " + cache.size());
+        }
+        assertEquals(999, (int) cache.get(999));
+
+        cache.invalidateAll();
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, i, System.currentTimeMillis() + 30);
+        }
+        Thread.sleep(60);
+        for (int i = 100; i < 199; i++) {
+            cache.put(i, i, System.currentTimeMillis() + 60_000);
+        }
+        // The first put over the bound purged the 100 expired entries and nothing live
+        assertEquals(99, cache.size());
+        for (int i = 100; i < 199; i++) {
+            assertEquals(i, (int) cache.get(i));
+        }
+    }
+}
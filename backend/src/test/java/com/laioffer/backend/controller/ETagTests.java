@@ -0,0 +1,147 @@
+package com.laioffer.backend.controller;
+
+import com.jayway.jsonpath.JsonPath;
+import com.laioffer.backend.entity.Trip;
+import com.laioffer.backend.entity.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Conditional GETs on trips and trip points, and the writes that must change the points tag
+@SpringBootTest
+@AutoConfigureMockMvc
+@Transactional
+@WithMockUser
+class ETagTests {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 5, 1);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private Long tripId;
+
+    @BeforeEach
+    void createTrip() {
+        User user = new User("etag-test", "etag-test@example.com", "secret", null);
+        entityManager.persist(user);
+        Trip trip = Trip.builder()
+                .user(user)
+                .name("ETag test")
+                .startDate(DAY)
+                .endDate(DAY.plusDays(2))
+                .totalBudget(BigDecimal.TEN)
+                .destination("Paris")
+                .build();
+        entityManager.persist(trip);
+        entityManager.flush();
+        tripId = trip.getId();
+    }
+
+    @Test
+    void tripIsTaggedAndAnsweredWith304WithoutExposingItsVersion() throws Exception {
+        String etag = mockMvc.perform(get("/api/trips/{id}", tripId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.version").doesNotExist())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mockMvc.perform(get("/api/trips/{id}", tripId).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        // JSON and CBOR bodies differ, so they must not share a strong tag
+        String cbor = mockMvc.perform(get("/api/trips/{id}", tripId).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, cbor);
+    }
+
+    @Test
+    void everyWriteToThePointsChangesTheirTag() throws Exception {
+        String etag = pointsETag(null);
+        mockMvc.perform(get("/api/trip-points").param("tripId", tripId.toString())
+                        .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        long first = createdId(mockMvc.perform(post("/api/trip-points")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(point("Louvre", 1, 2.3376, 48.8606))));
+        etag = pointsETag(etag);
+        long second = createdId(mockMvc.perform(post("/api/trip-points")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(point("Eiffel Tower", 2, 2.2945, 48.8584))));
+        etag = pointsETag(etag);
+
+        mockMvc.perform(put("/api/trip-points/{id}", first)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(point("Louvre Museum", 1, 2.3376, 48.8606)))
+                .andExpect(status().isOk());
+        etag = pointsETag(etag);
+
+        mockMvc.perform(post("/api/trip-points/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"trip\": " + tripId + ", \"reorders\": [{\"id\": " + second + ", \"visitOrder\": 3}]}"))
+                .andExpect(status().isOk());
+        etag = pointsETag(etag);
+
+        mockMvc.perform(post("/api/trip-points/optimize").param("tripId", tripId.toString()))
+                .andExpect(status().isOk());
+        etag = pointsETag(etag);
+
+        mockMvc.perform(delete("/api/trip-points/{id}", first))
+                .andExpect(status().isNoContent());
+        pointsETag(etag);
+    }
+
+    // Fetches the points conditionally on the previous tag, which must no longer match
+    private String pointsETag(String previous) throws Exception {
+        MockHttpServletRequestBuilder request = get("/api/trip-points").param("tripId", tripId.toString());
+        if (previous != null) {
+            request.header(HttpHeaders.IF_NONE_MATCH, previous);
+        }
+        String etag = mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\"points-" + tripId + "-"), etag);
+        assertNotEquals(previous, etag);
+        return etag;
+    }
+
+    private String point(String name, int visitOrder, double lng, double lat) {
+        return """
+                {"trip": %d, "name": "%s", "date": "%s", "visitOrder": %d, "pointType": "VISIT",
+                 "location": {"x": %s, "y": %s}}
+                """.formatted(tripId, name, DAY, visitOrder, lng, lat);
+    }
+
+    private static long createdId(ResultActions result) throws Exception {
+        String body = result.andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        return JsonPath.<Number>read(body, "$.id").longValue();
+    }
+}
@@ -0,0 +1,42 @@
+package com.laioffer.backend.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Behind a proxy every request arrives from the proxy's address; per-IP buckets must follow X-Forwarded-For
+@SpringBootTest(properties = {
+        "travelplanner.auth-throttle.lookup.capacity=1",
+        "travelplanner.auth-throttle.lookup.refill-per-minute=0.001"
+})
+@AutoConfigureMockMvc
+class ForwardedClientAddressTests {
+
+    private static final String PROXY = "10.0.0.1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void clientsBehindTheSameProxyHaveTheirOwnBuckets() throws Exception {
+        mockMvc.perform(lookupFrom("203.0.113.7")).andExpect(status().isOk());
+        mockMvc.perform(lookupFrom("203.0.113.7")).andExpect(status().isTooManyRequests());
+
+        mockMvc.perform(lookupFrom("198.51.100.23")).andExpect(status().isOk());
+    }
+
+    private static MockHttpServletRequestBuilder lookupFrom(String client) {
+        return get("/auth/availability").param("username", "forwarded-test")
+                .header("X-Forwarded-For", client)
+                .with(request -> {
+                    request.setRemoteAddr(PROXY);
+                    return request;
+                });
+    }
+}
@@ -0,0 +1,166 @@
+package com.laioffer.backend.datasource;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Needs two Postgres instances: the docker-compose.yml one as primary and a second one as the replica
+// (docker compose --profile replica up), or REPLICA_TEST_PRIMARY_URL / REPLICA_TEST_REPLICA_URL.
+// They don't have to replicate: each read reports which cluster answered it.
+@Tag("replica")
+@SpringBootTest(properties = {
+        "spring.datasource.url=${REPLICA_TEST_PRIMARY_URL:jdbc:postgresql://localhost:5720/travelplanner}",
+        "spring.datasource.username=${DATABASE_USERNAME:postgres}",
+        "spring.datasource.password=${DATABASE_PASSWORD:changeme}",
+        "travelplanner.read-replicas.enabled=true",
+        "travelplanner.read-replicas.urls=${REPLICA_TEST_REPLICA_URL:jdbc:postgresql://localhost:5721/travelplanner}",
+        "travelplanner.read-replicas.max-lag-ms=1000",
+        "travelplanner.poi-index.enabled=false"
+})
+class ReadReplicaRoutingTests {
+
+    private static final String CLUSTER_SQL = "SELECT system_identifier::text FROM pg_control_system()";
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ReplicaPool replicaPool;
+
+    @Value("${spring.datasource.url}")
+    private String primaryUrl;
+
+    @Value("${travelplanner.read-replicas.urls}")
+    private String replicaUrl;
+
+    @Value("${spring.datasource.username}")
+    private String username;
+
+    @Value("${spring.datasource.password}")
+    private String password;
+
+    private String primary;
+    private String replica;
+    // Fresh per test, so one test's writes don't hold back the next one's reads
+    private String user;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        primary = cluster(primaryUrl);
+        replica = cluster(replicaUrl);
+        assertNotEquals(primary, replica, "primary and replica must be different instances");
+        replicaPool.poll();
+        user = "replica-test-" + UUID.randomUUID();
+        signIn(user);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        assertEquals(replica, servedBy(true));
+        assertEquals(primary, servedBy(false));
+    }
+
+    @Test
+    void anonymousReadsStayOnThePrimary() {
+        SecurityContextHolder.clearContext();
+        assertEquals(primary, servedBy(true));
+    }
+
+    @Test
+    void readsFollowTheUsersOwnWrites() throws InterruptedException {
+        servedBy(false);
+        assertEquals(primary, servedBy(true));
+
+        signIn(user + "-other");
+        assertEquals(replica, servedBy(true));
+
+        // This replica can't report its replay position, so it counts as max-lag behind
+        signIn(user);
+        Thread.sleep(1200);
+        replicaPool.poll();
+        assertEquals(replica, servedBy(true));
+    }
+
+    @Test
+    void writesJoiningAReadOnlyTransactionAreRejected() {
+        TransactionTemplate readOnly = template(true);
+        TransactionTemplate readWrite = template(false);
+        assertThrows(IllegalTransactionStateException.class,
+                () -> readOnly.executeWithoutResult(outer -> readWrite.executeWithoutResult(inner -> { })));
+    }
+
+    // Open-in-view keeps one session across the transactions of a request; each is still routed on its own
+    @Test
+    void eachTransactionOfOneSessionIsRouted() {
+        EntityManager requestScoped = entityManagerFactory.createEntityManager();
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, new EntityManagerHolder(requestScoped));
+        try {
+            assertEquals(replica, servedBy(true));
+            assertEquals(primary, servedBy(false));
+            signIn(user + "-other");
+            assertEquals(replica, servedBy(true));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            requestScoped.close();
+        }
+    }
+
+    private String servedBy(boolean readOnly) {
+        return template(readOnly).execute(status ->
+                (String) entityManager.createNativeQuery(CLUSTER_SQL).getSingleResult());
+    }
+
+    private TransactionTemplate template(boolean readOnly) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(readOnly);
+        return template;
+    }
+
+    private String cluster(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             ResultSet resultSet = connection.createStatement().executeQuery(CLUSTER_SQL)) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    private static void signIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
@@ -0,0 +1,105 @@
+package com.laioffer.backend.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Replica selection by lag, without databases: positions are set directly or polled from mocked connections
+class ReplicaPoolTests {
+
+    private static final long MAX_LAG = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void aReplicaLeavesRotationOnceItsLastPositionIsTooOld() throws SQLException {
+        DataSource primary = mock(DataSource.class);
+        // Every poll fails on the primary, so nothing refreshes the replica's position
+        when(primary.getConnection()).thenThrow(new SQLException("primary unreachable"));
+        ReplicaPool pool = new ReplicaPool(primary, List.of(replicaDataSource()), ReplicaPool.Balancing.ROUND_ROBIN,
+                MAX_LAG, new SimpleMeterRegistry());
+        // Never polled successfully
+        assertNull(pool.choose(RecentWrites.NEVER));
+
+        ReplicaPool.Replica only = replicaOf(pool);
+        only.up = true;
+        only.caughtUpTo = System.nanoTime();
+        only.lastPolledAt = System.nanoTime();
+        assertSame(only, pool.choose(RecentWrites.NEVER));
+
+        only.lastPolledAt = System.nanoTime() - 2 * MAX_LAG;
+        pool.poll();
+        assertNull(pool.choose(RecentWrites.NEVER));
+    }
+
+    @Test
+    void aReplicaServesOnlyReadsAfterItCaughtUpWithTheUsersLastWrite() {
+        ReplicaPool pool = new ReplicaPool(mock(DataSource.class), List.of(replicaDataSource()),
+                ReplicaPool.Balancing.LEAST_CONNECTIONS, MAX_LAG, new SimpleMeterRegistry());
+        ReplicaPool.Replica only = replicaOf(pool);
+        only.up = true;
+        long now = System.nanoTime();
+        only.caughtUpTo = now;
+        only.lastPolledAt = now;
+
+        assertSame(only, pool.choose(now - 1));
+        assertNull(pool.choose(now + 1));
+    }
+
+    @Test
+    void aReplicaWithoutAReplayPositionStaysInRotationBetweenPolls() throws Exception {
+        DataSource primary = mock(DataSource.class);
+        Connection primaryConnection = connectionReturning(123L);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        HikariDataSource replica = replicaDataSource();
+        // Not a standby: pg_last_wal_replay_lsn() is NULL
+        Connection replicaConnection = connectionReturning(null);
+        when(replica.getConnection()).thenReturn(replicaConnection);
+        ReplicaPool pool = new ReplicaPool(primary, List.of(replica), ReplicaPool.Balancing.ROUND_ROBIN,
+                MAX_LAG, new SimpleMeterRegistry());
+
+        long beforePoll = System.nanoTime();
+        pool.poll();
+        Thread.sleep(20);
+
+        ReplicaPool.Replica only = replicaOf(pool);
+        assertSame(only, pool.choose(RecentWrites.NEVER));
+        // Assumed max-lag behind: older writes are visible there, a write from just now is not
+        assertSame(only, pool.choose(beforePoll - 2 * MAX_LAG));
+        assertNull(pool.choose(System.nanoTime()));
+    }
+
+    private static HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = mock(HikariDataSource.class);
+        when(dataSource.getPoolName()).thenReturn("replica-1");
+        return dataSource;
+    }
+
+    private static Connection connectionReturning(Long position) throws SQLException {
+        Connection connection = mock(Connection.class);
+        Statement statement = mock(Statement.class);
+        ResultSet resultSet = mock(ResultSet.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(statement.executeQuery(anyString())).thenReturn(resultSet);
+        when(resultSet.next()).thenReturn(true);
+        when(resultSet.getLong(1)).thenReturn(position != null ? position : 0L);
+        when(resultSet.wasNull()).thenReturn(position == null);
+        return connection;
+    }
+
+    private static ReplicaPool.Replica replicaOf(ReplicaPool pool) {
+        return pool.replicas().get(0);
+    }
+}
@@ -0,0 +1,75 @@
+package com.laioffer.backend.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClusterIndexTests {
+
+    @Test
+    void everyZoomAccountsForEachPointOnceAfterInsertsMovesAndRemovals() {
+        ClusterIndex index = new ClusterIndex(0, 16, 60, 512, 3);
+        Random random = new Random(7);
+        Map<Long, Integer> live = new HashMap<>();
+        for (long id = 0; id < 20_000; id++) {
+            int type = (int) (id % 3);
+            index.put(id, 48.8 + random.nextDouble() * 0.4, 2.2 + random.nextDouble() * 0.4, type);
+            live.put(id, type);
+        }
+        for (int i = 0; i < 8_000; i++) {
+            long id = random.nextInt(20_000);
+            index.remove(id);
+            live.remove(id);
+        }
+        for (int i = 0; i < 2_000; i++) {
+            long id = random.nextInt(25_000);
+            int type = i % 3;
+            index.put(id, 48.8 + random.nextDouble() * 0.4, 2.2 + random.nextDouble() * 0.4, type);
+            live.put(id, type);
+        }
+
+        int[] expectedTypes = new int[3];
+        live.values().forEach(type -> expectedTypes[type]++);
+        assertEquals(live.size(), index.size());
+
+        for (int zoom = 0; zoom <= 17; zoom++) {
+            ClusterIndex.Result result = index.query(-180, -85, 180, 85, zoom, Integer.MAX_VALUE);
+            int total = 0;
+            int[] types = new int[3];
+            for (ClusterIndex.Cluster cluster : result.clusters()) {
+                assertTrue(cluster.count() > 0);
+                total += cluster.count();
+                for (int t = 0; t < 3; t++) {
+                    types[t] += cluster.typeCounts()[t];
+                }
+                if (cluster.isPoint()) {
+                    assertTrue(live.containsKey(cluster.pointId()));
+                }
+            }
+            assertEquals(live.size(), total, "zoom " + zoom);
+            assertEquals(expectedTypes[0], types[0]);
+            assertEquals(expectedTypes[1], types[1]);
+            assertEquals(expectedTypes[2], types[2]);
+        }
+    }
+
+    @Test
+    void largeViewportsFallBackToACoarserZoom() {
+        ClusterIndex index = new ClusterIndex(0, 16, 60, 512, 1);
+        Random random = new Random(11);
+        for (long id = 0; id < 10_000; id++) {
+            index.put(id, 48.8 + random.nextDouble() * 0.4, 2.2 + random.nextDouble() * 0.4, 0);
+        }
+
+        ClusterIndex.Result result = index.query(2.0, 48.5, 2.8, 49.5, 17, 200);
+
+        assertTrue(result.zoom() < 17);
+        assertTrue(result.clusters().size() <= 200);
+        assertEquals(10_000, result.clusters().stream().mapToInt(ClusterIndex.Cluster::count).sum());
+    }
+}
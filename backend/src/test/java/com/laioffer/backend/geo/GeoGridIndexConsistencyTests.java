@@ -0,0 +1,87 @@
+package com.laioffer.backend.geo;
+
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.repository.POIRepository;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks the in-memory grid against PostGIS ST_DWithin on a generated dataset
+@SpringBootTest(properties = "travelplanner.poi-index.enabled=false")
+@Transactional
+class GeoGridIndexConsistencyTests {
+
+    private static final double CENTER_LAT = 48.8566;
+    private static final double CENTER_LNG = 2.3522;
+    // ST_DWithin on geography uses the spheroid, the index a sphere; ignore points this close to the edge
+    private static final double BOUNDARY_TOLERANCE = 0.005;
+
+    @Autowired
+    private POIRepository poiRepository;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Test
+    void radiusQueriesMatchPostgis() {
+        Random random = new Random(42);
+        List<POI> generated = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.4;
+            double lng = CENTER_LNG + (random.nextDouble() - 0.5) * 0.6;
+            generated.add(POI.builder()
+                    .name("generated-" + i)
+                    .location(geometryFactory.createPoint(new Coordinate(lng, lat)))
+                    .poiType(POIType.values()[i % POIType.values().length])
+                    .category("test")
+                    .isActive(true)
+                    .build());
+        }
+        generated = poiRepository.saveAllAndFlush(generated);
+        Map<Long, POI> byId = generated.stream().collect(Collectors.toMap(POI::getId, Function.identity()));
+
+        GeoGridIndex<POI> index = new GeoGridIndex<>(0.05);
+        for (POI poi : generated) {
+            index.put(poi.getId(), poi.getLocation().getY(), poi.getLocation().getX(), poi);
+        }
+
+        for (int q = 0; q < 50; q++) {
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.4;
+            double lng = CENTER_LNG + (random.nextDouble() - 0.5) * 0.6;
+            double radius = 100 + random.nextDouble() * 20_000;
+
+            Set<Long> expected = ids(poiRepository.findNearbyPOIs(lat, lng, radius), byId, lat, lng, radius);
+            Set<Long> actual = ids(index.withinRadius(lat, lng, radius), byId, lat, lng, radius);
+            assertEquals(expected, actual, "lat=" + lat + " lng=" + lng + " radius=" + radius);
+        }
+    }
+
+    private static Set<Long> ids(List<POI> pois, Map<Long, POI> generated, double lat, double lng, double radius) {
+        Set<Long> ids = new TreeSet<>();
+        for (POI poi : pois) {
+            if (!generated.containsKey(poi.getId())) {
+                continue;
+            }
+            double distance = GeoUtils.haversine(lat, lng, poi.getLocation().getY(), poi.getLocation().getX());
+            if (Math.abs(distance - radius) > radius * BOUNDARY_TOLERANCE) {
+                ids.add(poi.getId());
+            }
+        }
+        return ids;
+    }
+}
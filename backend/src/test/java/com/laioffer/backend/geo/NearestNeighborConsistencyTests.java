@@ -0,0 +1,84 @@
+package com.laioffer.backend.geo;
+
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.repository.POIRepository;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Checks the KD-tree nearest neighbours against PostGIS <-> ordering on a generated dataset
+@SpringBootTest(properties = "travelplanner.poi-index.enabled=false")
+@Transactional
+class NearestNeighborConsistencyTests {
+
+    private static final double CENTER_LAT = 48.8566;
+    private static final double CENTER_LNG = 2.3522;
+    // A category of its own keeps whatever else is in the database out of the comparison
+    private static final String CATEGORY = "knn-consistency-test";
+    // Both sides measure on the same sphere; allow for float rounding only
+    private static final double DISTANCE_TOLERANCE_METERS = 0.5;
+
+    @Autowired
+    private POIRepository poiRepository;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Test
+    void nearestMatchesPostgis() {
+        Random random = new Random(42);
+        List<POI> generated = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.4;
+            double lng = CENTER_LNG + (random.nextDouble() - 0.5) * 0.6;
+            generated.add(POI.builder()
+                    .name("generated-" + i)
+                    .location(geometryFactory.createPoint(new Coordinate(lng, lat)))
+                    .poiType(POIType.values()[i % POIType.values().length])
+                    .category(CATEGORY)
+                    .isActive(true)
+                    .build());
+        }
+        generated = poiRepository.saveAllAndFlush(generated);
+
+        Map<POIType, List<KdTree.Entry<POI>>> byType = new EnumMap<>(POIType.class);
+        for (POI poi : generated) {
+            byType.computeIfAbsent(poi.getPoiType(), t -> new ArrayList<>())
+                    .add(new KdTree.Entry<>(poi.getId(), poi.getLocation().getY(), poi.getLocation().getX(), poi));
+        }
+
+        for (int q = 0; q < 50; q++) {
+            double lat = CENTER_LAT + (random.nextDouble() - 0.5) * 0.5;
+            double lng = CENTER_LNG + (random.nextDouble() - 0.5) * 0.7;
+            POIType type = POIType.values()[q % POIType.values().length];
+            int n = 1 + random.nextInt(25);
+
+            List<POIRepository.POIDistance> expected = poiRepository.findNearest(lat, lng, n, type.name(), CATEGORY);
+            List<KdTree.Neighbor<POI>> actual = KdTree.of(byType.get(type)).nearest(lat, lng, n, poi -> true);
+
+            String query = "lat=" + lat + " lng=" + lng + " type=" + type + " n=" + n;
+            assertEquals(expected.size(), actual.size(), query);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getDistance(), actual.get(i).distanceMeters(), DISTANCE_TOLERANCE_METERS, query);
+                // Ids only have to line up where the distance is not a near-tie with a neighbour
+                boolean tie = (i > 0 && expected.get(i).getDistance() - expected.get(i - 1).getDistance() < DISTANCE_TOLERANCE_METERS)
+                        || (i + 1 < expected.size() && expected.get(i + 1).getDistance() - expected.get(i).getDistance() < DISTANCE_TOLERANCE_METERS);
+                if (!tie) {
+                    assertEquals(expected.get(i).getId(), actual.get(i).id(), query);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.laioffer.backend.geo;
+
+import com.laioffer.backend.geo.RouteOptimizer.Stop;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteOptimizerTests {
+
+    private static final long NO_HURRY = TimeUnit.SECONDS.toNanos(10);
+
+    @Test
+    void stopsAlongAStreetAreVisitedEndToEnd() {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            stops.add(free(i, 48.85, 2.30 + i * 0.002));
+        }
+        Collections.shuffle(stops, new Random(3));
+
+        List<Stop> route = RouteOptimizer.optimize(stops, System.nanoTime() + NO_HURRY, improved -> {
+        });
+
+        double straight = GeoUtils.haversine(48.85, 2.30, 48.85, 2.30 + 7 * 0.002);
+        assertEquals(straight, RouteOptimizer.pathLength(route), 1e-3);
+        assertEquals(0, Math.min(route.get(0).id(), route.get(7).id()));
+        assertEquals(7, Math.max(route.get(0).id(), route.get(7).id()));
+    }
+
+    @Test
+    void pinnedStopsKeepTheirPositionsAndTimedOnesAreSorted() {
+        Random random = new Random(5);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            double lat = 48.8 + random.nextDouble() * 0.1;
+            double lng = 2.3 + random.nextDouble() * 0.1;
+            if (i == 4 || i == 17) {
+                stops.add(new Stop(i, lat, lng, true, null));
+            } else if (i == 0 || i == 11 || i == 25) {
+                // Listed out of time order
+                stops.add(new Stop(i, lat, lng, true, LocalTime.of(20 - i / 2, 0)));
+            } else {
+                stops.add(free(i, lat, lng));
+            }
+        }
+
+        List<Stop> route = RouteOptimizer.optimize(stops, System.nanoTime() + NO_HURRY, improved -> {
+        });
+
+        assertEquals(30, new HashSet<>(route).size());
+        assertEquals(4, route.get(4).id());
+        assertEquals(17, route.get(17).id());
+        assertEquals(25, route.get(0).id());
+        assertEquals(11, route.get(11).id());
+        assertEquals(0, route.get(25).id());
+        assertTrue(RouteOptimizer.pathLength(route) <= RouteOptimizer.pathLength(inTimeOrder(stops)));
+    }
+
+    @Test
+    void pastTheDeadlineTheBestPublishedRouteIsReturned() {
+        Random random = new Random(9);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 3_000; i++) {
+            boolean pinned = i % 100 == 0;
+            stops.add(new Stop(i, 48.8 + random.nextDouble() * 0.2, 2.2 + random.nextDouble() * 0.2, pinned, null));
+        }
+        List<List<Stop>> published = new ArrayList<>();
+
+        long start = System.nanoTime();
+        List<Stop> route = RouteOptimizer.optimize(stops, start + TimeUnit.MILLISECONDS.toNanos(20), published::add);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Every phase gives up at the deadline, so this is the deadline plus one step of the slowest phase
+        assertTrue(elapsedMillis < 1_000, "took " + elapsedMillis + " ms");
+        assertSame(published.get(published.size() - 1), route);
+        assertEquals(stops, published.get(0));
+        for (int i = 1; i < published.size(); i++) {
+            assertTrue(RouteOptimizer.pathLength(published.get(i)) < RouteOptimizer.pathLength(published.get(i - 1)));
+        }
+        assertEquals(3_000, new HashSet<>(route).size());
+        for (int i = 0; i < route.size(); i += 100) {
+            assertEquals(i, route.get(i).id());
+        }
+    }
+
+    @Test
+    void anExpiredDeadlineStillGivesACompleteRoute() {
+        List<Stop> stops = List.of(free(1, 48.85, 2.30), new Stop(2, 48.86, 2.31, true, null), free(3, 48.87, 2.32));
+        List<List<Stop>> published = new ArrayList<>();
+
+        List<Stop> route = RouteOptimizer.optimize(stops, System.nanoTime() - 1, published::add);
+
+        assertEquals(stops, route);
+        assertEquals(1, published.size());
+    }
+
+    private static Stop free(long id, double lat, double lng) {
+        return new Stop(id, lat, lng, false, null);
+    }
+
+    // The starting point the optimizer publishes first: timed stops sorted among their own positions
+    private static List<Stop> inTimeOrder(List<Stop> stops) {
+        List<Stop> timed = new ArrayList<>(stops.stream().filter(stop -> stop.plannedTime() != null).toList());
+        timed.sort((a, b) -> a.plannedTime().compareTo(b.plannedTime()));
+        List<Stop> result = new ArrayList<>();
+        int next = 0;
+        for (Stop stop : stops) {
+            result.add(stop.plannedTime() != null ? timed.get(next++) : stop);
+        }
+        return result;
+    }
+}
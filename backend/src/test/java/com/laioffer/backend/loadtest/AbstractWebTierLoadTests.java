@@ -0,0 +1,149 @@
+package com.laioffer.backend.loadtest;
+
+import com.laioffer.backend.entity.Trip;
+import com.laioffer.backend.entity.User;
+import com.laioffer.backend.repository.TripRepository;
+import com.laioffer.backend.repository.UserRepository;
+import com.laioffer.backend.security.JwtHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Closed-loop load against a running server: CLIENTS concurrent callers hammer the itinerary endpoint
+// for DURATION and we report throughput and latency. Subclasses pick the thread model; both run
+// against the same local Postgres (docker-compose.yml, or LOADTEST_DATABASE_URL).
+// Tomcat gets fewer threads than there are clients, and the pool clearly more connections than Tomcat has
+// threads: the platform-thread run is capped by the connector at TOMCAT_THREADS requests in flight, while the
+// virtual-thread run can use the whole pool. Both stay under Postgres's default max_connections of 100.
+@Tag("benchmark")
+abstract class AbstractWebTierLoadTests {
+
+    static final String DATABASE_URL =
+            "spring.datasource.url=${LOADTEST_DATABASE_URL:jdbc:postgresql://localhost:5720/travelplanner}";
+    static final String DATABASE_USERNAME = "spring.datasource.username=${DATABASE_USERNAME:postgres}";
+    static final String DATABASE_PASSWORD = "spring.datasource.password=${DATABASE_PASSWORD:changeme}";
+    static final String TOMCAT_THREADS = "server.tomcat.threads.max=20";
+    static final String POOL_SIZE = "spring.datasource.hikari.maximum-pool-size=80";
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractWebTierLoadTests.class);
+
+    private static final int CLIENTS = 500;
+    private static final Duration DURATION = Duration.ofSeconds(15);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private JwtHandler jwtHandler;
+
+    private User user;
+    private Trip trip;
+
+    abstract String mode();
+
+    @BeforeEach
+    void setUp() {
+        String username = "loadtest-" + mode();
+        user = userRepository.save(new User(username, username + "@example.com", "secret", null));
+        trip = tripRepository.save(Trip.builder()
+                .user(user)
+                .name("Load test")
+                .startDate(LocalDate.of(2025, 5, 1))
+                .endDate(LocalDate.of(2025, 5, 7))
+                .totalBudget(BigDecimal.TEN)
+                .destination("Paris")
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        tripRepository.deleteById(trip.getId());
+        userRepository.deleteById(user.getId());
+    }
+
+    @Test
+    void concurrentRequestCapacity() throws Exception {
+        String token = jwtHandler.generateToken(user.getUsername());
+        HttpRequest request = HttpRequest.newBuilder(
+                        URI.create("http://localhost:" + port + "/api/trips/" + trip.getId() + "/itinerary"))
+                .header("Authorization", "Bearer " + token)
+                .timeout(Duration.ofSeconds(30))
+                .build();
+
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+        long deadline = System.nanoTime() + DURATION.toNanos();
+
+        // Virtual threads on the client side too, so the load generator itself never runs out of threads
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient httpClient = HttpClient.newBuilder().executor(clients).build();
+            for (int i = 0; i < CLIENTS; i++) {
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 200) {
+                                completed.incrementAndGet();
+                                latencies.add(System.nanoTime() - start);
+                            } else {
+                                failed.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                        }
+                    }
+                    return null;
+                });
+            }
+            clients.shutdown();
+            clients.awaitTermination(DURATION.toSeconds() + 60, TimeUnit.SECONDS);
+        }
+
+        List<Long> sorted = new ArrayList<>(latencies);
+        Collections.sort(sorted);
+        String summary = String.format("[%s threads] %d clients, %d ok, %d failed, %.0f req/s, p50 %d ms, p99 %d ms",
+                mode(), CLIENTS, completed.get(), failed.get(),
+                completed.get() / (double) DURATION.toSeconds(),
+                percentileMillis(sorted, 0.50), percentileMillis(sorted, 0.99));
+        logger.info(summary);
+        assertTrue(completed.get() > 0, summary);
+    }
+
+    private static long percentileMillis(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1);
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, index)));
+    }
+}
@@ -0,0 +1,19 @@
+package com.laioffer.backend.loadtest;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        AbstractWebTierLoadTests.DATABASE_URL,
+        AbstractWebTierLoadTests.DATABASE_USERNAME,
+        AbstractWebTierLoadTests.DATABASE_PASSWORD,
+        AbstractWebTierLoadTests.TOMCAT_THREADS,
+        AbstractWebTierLoadTests.POOL_SIZE,
+        "spring.threads.virtual.enabled=true"
+})
+class VirtualThreadLoadTests extends AbstractWebTierLoadTests {
+
+    @Override
+    String mode() {
+        return "virtual";
+    }
+}
@@ -0,0 +1,87 @@
+package com.laioffer.backend.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DayScheduleTests {
+
+    private static final DaySchedule.Settings SETTINGS = new DaySchedule.Settings(
+            LocalTime.of(9, 0), 60, 4.5, 1500, 25, 10, 1.3, 14 * 60);
+
+    @Test
+    void flagsUnreachableAndOverlappingStops() {
+        DaySchedule schedule = DaySchedule.of(List.of(
+                new DaySchedule.Stop(1, 1, 48.85, 2.35, LocalTime.of(9, 0), 120),
+                // About 4 km away: transit, more than the five minutes left after the first stop
+                new DaySchedule.Stop(2, 2, 48.86, 2.30, LocalTime.of(11, 5), 60),
+                new DaySchedule.Stop(3, 3, 48.86, 2.30, LocalTime.of(11, 30), 60)), SETTINGS);
+
+        List<DaySchedule.Issue> issues = schedule.issues();
+        assertEquals(2, issues.size());
+        assertEquals(DaySchedule.IssueType.UNREACHABLE, issues.get(0).type());
+        assertEquals(2L, issues.get(0).pointId());
+        assertEquals(DaySchedule.IssueType.OVERLAP, issues.get(1).type());
+        assertEquals(3L, issues.get(1).pointId());
+        // Runs late rather than at the planned time
+        assertTrue(schedule.visits().get(1).arrivalMinute() > 11 * 60 + 5);
+    }
+
+    @Test
+    void flagsOverlongDays() {
+        List<DaySchedule.Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            stops.add(new DaySchedule.Stop(i, i, 48.85, 2.35 + i * 0.001, null, 120));
+        }
+        List<DaySchedule.Issue> issues = DaySchedule.of(stops, SETTINGS).issues();
+        assertEquals(1, issues.size());
+        assertEquals(DaySchedule.IssueType.DAY_TOO_LONG, issues.get(0).type());
+    }
+
+    @Test
+    void incrementalEditsMatchAFullRecomputation() {
+        Random random = new Random(11);
+        int recomputed = 0;
+        int total = 0;
+        for (int day = 0; day < 200; day++) {
+            List<DaySchedule.Stop> stops = new ArrayList<>();
+            for (int i = 0; i < 12; i++) {
+                stops.add(randomStop(random, i));
+            }
+            DaySchedule schedule = DaySchedule.of(stops, SETTINGS);
+            for (int edit = 0; edit < 20; edit++) {
+                if (random.nextInt(4) == 0 && !stops.isEmpty()) {
+                    DaySchedule.Stop removed = stops.remove(random.nextInt(stops.size()));
+                    schedule = schedule.withoutStop(removed.id());
+                } else {
+                    long id = random.nextInt(16);
+                    stops.removeIf(stop -> stop.id() == id);
+                    DaySchedule.Stop stop = randomStop(random, id);
+                    stops.add(stop);
+                    schedule = schedule.withStop(stop);
+                }
+                DaySchedule full = DaySchedule.of(stops, SETTINGS);
+                assertEquals(full.visits(), schedule.visits());
+                assertEquals(full.issues(), schedule.issues());
+                recomputed += schedule.recomputedStops();
+                total += schedule.size();
+            }
+        }
+        assertTrue(recomputed < total, "edits should not recompute whole days");
+    }
+
+    private static DaySchedule.Stop randomStop(Random random, long id) {
+        return new DaySchedule.Stop(id,
+                random.nextInt(5) == 0 ? null : random.nextInt(10),
+                random.nextInt(6) == 0 ? null : 48.8 + random.nextDouble() * 0.2,
+                2.3 + random.nextDouble() * 0.2,
+                random.nextInt(3) == 0 ? LocalTime.of(8 + random.nextInt(12), random.nextInt(60)) : null,
+                random.nextInt(5) == 0 ? null : 15 + random.nextInt(120));
+    }
+}
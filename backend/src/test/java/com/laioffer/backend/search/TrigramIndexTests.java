@@ -0,0 +1,87 @@
+package com.laioffer.backend.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TrigramIndexTests {
+
+    @Test
+    void findsPrefixesTyposAndAccentsAndForgetsRemovedEntries() {
+        TrigramIndex<String> index = new TrigramIndex<>();
+        index.put(1, "Musée du Louvre", "museum", 48.8606, 2.3376, "louvre");
+        index.put(2, "Tour Eiffel", "landmark", 48.8584, 2.2945, "eiffel");
+        index.put(3, "Louvre Lens", "museum", 50.4317, 2.8032, "lens");
+        index.put(4, "Café de Flore", "cafe", 48.8542, 2.3325, "flore");
+
+        assertEquals("louvre", top(index.search("mus", 5, Double.NaN, Double.NaN, 5000)));
+        assertEquals("louvre", top(index.search("musee du lovre", 5, Double.NaN, Double.NaN, 5000)));
+        assertEquals("flore", top(index.search("cafe flore", 5, Double.NaN, Double.NaN, 5000)));
+        assertEquals("eiffel", top(index.search("landmark", 5, Double.NaN, Double.NaN, 5000)));
+
+        // Both Louvres match "louvre"; the one near the given point wins
+        assertEquals("lens", top(index.search("louvre", 5, 50.43, 2.80, 5000)));
+
+        index.remove(1);
+        List<TrigramIndex.Match<String>> afterRemoval = index.search("musee du louvre", 5, Double.NaN, Double.NaN, 5000);
+        assertTrue(afterRemoval.stream().noneMatch(match -> match.id() == 1));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void compactionKeepsTheLiveEntriesSearchable() {
+        TrigramIndex<Long> index = new TrigramIndex<>();
+        for (long id = 0; id < 10_000; id++) {
+            index.put(id, "place " + id, "test", Double.NaN, Double.NaN, id);
+        }
+        // Enough removals and re-puts to trigger several compactions
+        for (long id = 0; id < 9_000; id++) {
+            index.remove(id);
+        }
+        for (long id = 9_000; id < 10_000; id += 2) {
+            index.put(id, "renamed " + id, "test", Double.NaN, Double.NaN, id);
+        }
+
+        assertEquals(1_000, index.size());
+        assertEquals(9_500L, (long) top(index.search("renamed 9500", 1, Double.NaN, Double.NaN, 5000)));
+        assertEquals(9_501L, (long) top(index.search("place 9501", 1, Double.NaN, Double.NaN, 5000)));
+        assertNotEquals(9_500L, (long) top(index.search("place 9500", 1, Double.NaN, Double.NaN, 5000)));
+    }
+
+    @Test
+    void withoutACentreTheBestMatchIsFoundAnywhereInALongList() {
+        List<TrigramIndex.Entry<String>> entries = new ArrayList<>();
+        for (int i = 0; i < 6_000; i++) {
+            entries.add(new TrigramIndex.Entry<>(i, "pa" + i + " street", "test", 10 + i * 0.001, 10 + i * 0.001, "pa" + i));
+        }
+        // Last in Z-order, so outside any window taken from the front of the list
+        entries.add(new TrigramIndex.Entry<>(6_000, "Pa", "test", 60, 60, "pa"));
+        TrigramIndex<String> index = TrigramIndex.of(entries);
+
+        assertEquals("pa", top(index.search("pa", 1, Double.NaN, Double.NaN, 5000)));
+    }
+
+    @Test
+    void entriesPutAfterTheBulkLoadAreFoundNearTheCentre() {
+        List<TrigramIndex.Entry<String>> entries = new ArrayList<>();
+        for (int i = 0; i < 6_000; i++) {
+            entries.add(new TrigramIndex.Entry<>(i, "pa" + i, "test", 10 + i * 0.001, 10 + i * 0.001, "pa" + i));
+        }
+        TrigramIndex<String> index = TrigramIndex.of(entries);
+        index.put(10_000, "pa10000", "test", 48.8566, 2.3522, "paris");
+        index.put(10_001, "pa10001", "test", -33.86, 151.2, "sydney");
+
+        assertEquals("paris", top(index.search("pa", 1, 48.85, 2.35, 1000)));
+        assertEquals("sydney", top(index.search("pa", 1, -33.8, 151.2, 1000)));
+    }
+
+    private static <T> T top(List<TrigramIndex.Match<T>> matches) {
+        assertTrue(!matches.isEmpty(), "no matches");
+        return matches.get(0).value();
+    }
+}
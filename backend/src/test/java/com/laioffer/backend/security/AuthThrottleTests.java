@@ -0,0 +1,96 @@
+package com.laioffer.backend.security;
+
+import com.laioffer.backend.exception.CustomException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuthThrottleTests {
+
+    @Test
+    void usernameBucketEmptiesIndependentlyOfIp() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AuthThrottle throttle = new AuthThrottle(registry, 3, 1, 100, 1, 100, 1, 1000);
+
+        for (int i = 0; i < 3; i++) {
+            throttle.check("Alice", "10.0.0." + i);
+        }
+        CustomException e = assertThrows(CustomException.class, () -> throttle.check("alice", "10.0.0.9"));
+        assertEquals(429, e.getStatus());
+        throttle.check("bob", "10.0.0.9");
+
+        assertEquals(1.0, registry.get("auth.throttled").tag("scope", "username").counter().count());
+    }
+
+    @Test
+    void ipBucketCoversAllUsernames() {
+        AuthThrottle throttle = new AuthThrottle(new SimpleMeterRegistry(), 100, 1, 2, 1, 100, 1, 1000);
+
+        throttle.check("a", "192.168.1.1");
+        throttle.check("b", "192.168.1.1");
+        assertThrows(CustomException.class, () -> throttle.check("c", "192.168.1.1"));
+        throttle.check("c", "192.168.1.2");
+    }
+
+    @Test
+    void lookupsHaveTheirOwnBucketPerIp() {
+        AuthThrottle throttle = new AuthThrottle(new SimpleMeterRegistry(), 100, 1, 100, 1, 2, 1, 1000);
+
+        throttle.checkLookup("10.0.0.1");
+        throttle.checkLookup("10.0.0.1");
+        CustomException e = assertThrows(CustomException.class, () -> throttle.checkLookup("10.0.0.1"));
+        assertEquals(429, e.getStatus());
+        throttle.checkLookup("10.0.0.2");
+        // Registering from the same IP is still allowed
+        throttle.check("alice", "10.0.0.1");
+    }
+
+    @Test
+    void newKeysCannotPushOutABucketInUse() {
+        AuthThrottle throttle = new AuthThrottle(new SimpleMeterRegistry(), 2, 1, 100, 1, 100, 1, 3);
+
+        throttle.check("alice", null);
+        throttle.check("alice", null);
+        assertThrows(CustomException.class, () -> throttle.check("alice", null));
+        throttle.check("u1", null);
+        throttle.check("u2", null);
+
+        // Every bucket is partly used, so there is no room for another key
+        assertThrows(CustomException.class, () -> throttle.check("u3", null));
+        assertThrows(CustomException.class, () -> throttle.check("alice", null));
+    }
+
+    @Test
+    void concurrentAttemptsNeverExceedTheCapacity() throws InterruptedException {
+        AuthThrottle throttle = new AuthThrottle(new SimpleMeterRegistry(), 100, 0.001, 100, 1, 100, 1, 1000);
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int i = 0; i < 400; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    throttle.check("alice", null);
+                    allowed.incrementAndGet();
+                } catch (CustomException | InterruptedException e) {
+                    // throttled
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(100, allowed.get());
+    }
+}
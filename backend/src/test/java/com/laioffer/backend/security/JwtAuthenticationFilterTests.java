@@ -0,0 +1,96 @@
+package com.laioffer.backend.security;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtAuthenticationFilterTests {
+
+    private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final AtomicInteger verifications = new AtomicInteger();
+    private final JwtHandler jwtHandler = new JwtHandler(Base64.getEncoder().encodeToString(KEY)) {
+        @Override
+        public Claims parseClaims(String token) {
+            verifications.incrementAndGet();
+            return super.parseClaims(token);
+        }
+    };
+    private final UserDetailsService users = username -> new UserPrincipal(1L, username, "hash", List.of());
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void aVerifiedTokenIsNotVerifiedAgain() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtHandler, users, new SimpleMeterRegistry(), 100);
+        String alice = jwtHandler.generateToken("alice");
+        String bob = jwtHandler.generateToken("bob");
+
+        assertEquals("alice", authenticate(filter, alice));
+        assertEquals("alice", authenticate(filter, alice));
+        assertEquals("bob", authenticate(filter, bob));
+        assertEquals("alice", authenticate(filter, alice));
+
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void aForgedTokenIsVerifiedAndRejected() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtHandler, users, new SimpleMeterRegistry(), 100);
+        authenticate(filter, jwtHandler.generateToken("alice"));
+        String forged = new JwtHandler(Base64.getEncoder().encodeToString(new byte[32])).generateToken("alice");
+
+        assertThrows(JwtException.class, () -> authenticate(filter, forged));
+        assertEquals(2, verifications.get());
+    }
+
+    @Test
+    void aCachedTokenIsVerifiedAgainOnceItExpires() throws Exception {
+        JwtAuthenticationFilter filter = new JwtAuthenticationFilter(jwtHandler, users, new SimpleMeterRegistry(), 100);
+        // exp has whole seconds, so this expires 1 to 2 seconds from now
+        String token = Jwts.builder()
+                .setSubject("alice")
+                .setExpiration(new Date(System.currentTimeMillis() + 2_000))
+                .signWith(Keys.hmacShaKeyFor(KEY), SignatureAlgorithm.HS256)
+                .compact();
+
+        assertEquals("alice", authenticate(filter, token));
+        assertEquals("alice", authenticate(filter, token));
+        Thread.sleep(2_100);
+
+        assertThrows(ExpiredJwtException.class, () -> authenticate(filter, token));
+        assertEquals(2, verifications.get());
+    }
+
+    private static String authenticate(JwtAuthenticationFilter filter, String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        SecurityContextHolder.clearContext();
+        return username;
+    }
+}
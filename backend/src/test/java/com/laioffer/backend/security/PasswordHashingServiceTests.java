@@ -0,0 +1,86 @@
+package com.laioffer.backend.security;
+
+import com.laioffer.backend.exception.CustomException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// The pool and its limits, with an encoder that holds its thread until released
+class PasswordHashingServiceTests {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PasswordEncoder blockingEncoder = new PasswordEncoder() {
+        @Override
+        public String encode(CharSequence rawPassword) {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "hash:" + rawPassword;
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            return encode(rawPassword).equals(encodedPassword);
+        }
+    };
+    private PasswordHashingService service;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void aFullQueueIsRejectedWith503() throws Exception {
+        service = new PasswordHashingService(blockingEncoder, registry, 1, 1, 10_000);
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> service.encode("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> service.encode("b"));
+        while (service.queueDepth() < 1) {
+            Thread.sleep(5);
+        }
+
+        CustomException e = assertThrows(CustomException.class, () -> service.encode("c"));
+
+        assertEquals(503, e.getStatus());
+        assertEquals(1.0, registry.get("password.hashing.rejected").tag("reason", "saturated").counter().count());
+        release.countDown();
+        assertEquals("hash:a", running.get(5, TimeUnit.SECONDS));
+        assertEquals("hash:b", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void aHashThatWaitsTooLongIsAbandonedWith503() {
+        service = new PasswordHashingService(blockingEncoder, registry, 1, 4, 50);
+
+        CustomException e = assertThrows(CustomException.class, () -> service.matches("a", "hash:a"));
+
+        assertEquals(503, e.getStatus());
+        assertEquals(1.0, registry.get("password.hashing.rejected").tag("reason", "timeout").counter().count());
+    }
+
+    @Test
+    void hashesRunOnThePool() {
+        release.countDown();
+        service = new PasswordHashingService(blockingEncoder, registry, 2, 4, 10_000);
+
+        assertEquals("hash:a", service.encode("a"));
+        assertTrue(service.matches("a", "hash:a"));
+        assertEquals(2, registry.get("password.hashing.duration").timers().size());
+    }
+}
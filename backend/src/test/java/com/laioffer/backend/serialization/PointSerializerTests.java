@@ -0,0 +1,49 @@
+package com.laioffer.backend.serialization;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PointSerializerTests {
+
+    private static final SimpleModule MODULE = new SimpleModule().addSerializer(Point.class, new PointSerializer());
+
+    private final Point point = new GeometryFactory(new PrecisionModel(), 4326).createPoint(new Coordinate(2.35, 48.85));
+
+    @Test
+    void jsonGetsAGeoJsonPoint() throws Exception {
+        ObjectMapper json = new ObjectMapper().registerModule(MODULE);
+
+        assertEquals("{\"type\":\"Point\",\"coordinates\":[2.35,48.85]}", json.writeValueAsString(point));
+    }
+
+    @Test
+    void cborGetsTheCoordinatePair() throws Exception {
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory()).registerModule(MODULE);
+
+        JsonNode decoded = cbor.readTree(cbor.writeValueAsBytes(point));
+
+        assertTrue(decoded.isArray(), decoded.toString());
+        assertEquals(2.35, decoded.get(0).asDouble());
+        assertEquals(48.85, decoded.get(1).asDouble());
+    }
+
+    @Test
+    void bufferedTokensStayGeoJson() {
+        // valueToTree writes through a TokenBuffer, which can write binary natively too
+        ObjectMapper json = new ObjectMapper().registerModule(MODULE);
+
+        JsonNode tree = json.valueToTree(point);
+
+        assertEquals("Point", tree.get("type").asText());
+    }
+}
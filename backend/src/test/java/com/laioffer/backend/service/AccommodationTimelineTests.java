@@ -0,0 +1,85 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.TripAccommodation;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccommodationTimelineTests {
+
+    private static final LocalDate START = LocalDate.of(2025, 6, 1);
+
+    @Test
+    void changeoverDayBelongsToTheNewStay() {
+        TripAccommodation first = stay(1, 0, 3);
+        TripAccommodation second = stay(2, 3, 5);
+        AccommodationTimeline timeline = AccommodationTimeline.of(List.of(second, first));
+
+        assertEquals(Optional.of(first), timeline.stayForNight(START.plusDays(2)));
+        assertEquals(Optional.of(second), timeline.stayForNight(START.plusDays(3)));
+        assertTrue(timeline.stayForNight(START.plusDays(5)).isEmpty());
+        // The last morning still has a hotel to leave
+        assertEquals(Optional.of(second), timeline.stayOn(START.plusDays(5)));
+        assertTrue(timeline.overlapping(START.plusDays(5), START.plusDays(6)).isEmpty());
+        assertEquals(List.of(second), timeline.overlapping(START.plusDays(4), START.plusDays(6)));
+    }
+
+    @Test
+    void reportsGapsBetweenStays() {
+        AccommodationTimeline timeline = AccommodationTimeline.of(List.of(stay(1, 1, 3), stay(2, 5, 6)));
+
+        assertEquals(List.of(
+                new AccommodationTimeline.NightRange(START, START),
+                new AccommodationTimeline.NightRange(START.plusDays(3), START.plusDays(4)),
+                new AccommodationTimeline.NightRange(START.plusDays(6), START.plusDays(7))),
+                timeline.gaps(START, START.plusDays(7)));
+    }
+
+    @Test
+    void lookupsMatchAScanWithOverlappingStays() {
+        Random random = new Random(7);
+        List<TripAccommodation> stays = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            int checkIn = random.nextInt(60);
+            stays.add(stay(i, checkIn, checkIn + 1 + random.nextInt(10)));
+        }
+        AccommodationTimeline timeline = AccommodationTimeline.of(stays);
+
+        TripAccommodation[] expected = new TripAccommodation[80];
+        for (int night = 0; night < expected.length; night++) {
+            LocalDate date = START.plusDays(night);
+            for (TripAccommodation stay : timeline.getStays()) {
+                if (stay.coversNight(date)) {
+                    expected[night] = stay;
+                }
+            }
+            assertEquals(Optional.ofNullable(expected[night]), timeline.stayForNight(date));
+        }
+        assertArrayEquals(expected, timeline.stayForEachNight(START, START.plusDays(79)));
+
+        for (int i = 0; i < 200; i++) {
+            LocalDate checkIn = START.plusDays(random.nextInt(70));
+            LocalDate checkOut = checkIn.plusDays(1 + random.nextInt(5));
+            List<TripAccommodation> scan = timeline.getStays().stream()
+                    .filter(stay -> stay.getCheckInDate().isBefore(checkOut) && stay.getCheckOutDate().isAfter(checkIn))
+                    .toList();
+            assertEquals(scan, timeline.overlapping(checkIn, checkOut));
+        }
+    }
+
+    private static TripAccommodation stay(long id, int checkIn, int checkOut) {
+        return TripAccommodation.builder()
+                .id(id)
+                .checkInDate(START.plusDays(checkIn))
+                .checkOutDate(START.plusDays(checkOut))
+                .build();
+    }
+}
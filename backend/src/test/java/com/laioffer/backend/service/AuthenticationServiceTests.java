@@ -0,0 +1,68 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.User;
+import com.laioffer.backend.exception.CustomException;
+import com.laioffer.backend.repository.UserRepository;
+import com.laioffer.backend.security.JwtHandler;
+import com.laioffer.backend.security.PasswordHashingService;
+import com.laioffer.backend.security.UserDetailsServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.AuthenticationManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The availability filter can say "free" for a value taken a moment ago; the unique constraints decide then
+class AuthenticationServiceTests {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserAvailabilityService userAvailabilityService = mock(UserAvailabilityService.class);
+    private AuthenticationService service;
+
+    @BeforeEach
+    void setUp() {
+        PasswordHashingService passwordHashingService = mock(PasswordHashingService.class);
+        when(passwordHashingService.encode(anyString())).thenReturn("hash");
+        service = new AuthenticationService(mock(AuthenticationManager.class), mock(JwtHandler.class),
+                passwordHashingService, userRepository, mock(AvatarService.class), userAvailabilityService,
+                mock(UserDetailsServiceImpl.class));
+        when(userRepository.save(any(User.class))).thenThrow(new DataIntegrityViolationException("duplicate key"));
+    }
+
+    @Test
+    void aTakenUsernameFoundByTheConstraintIsReportedAsTaken() {
+        when(userRepository.existsByUsername("alice")).thenReturn(true);
+
+        CustomException e = assertThrows(CustomException.class,
+                () -> service.register("alice", "alice@example.com", "password"));
+
+        assertEquals("Username already exists!", e.getMessage());
+        assertEquals(400, e.getStatus());
+        verify(userAvailabilityService, never()).onSaved(any(), any());
+    }
+
+    @Test
+    void aTakenEmailFoundByTheConstraintIsReportedAsTaken() {
+        when(userRepository.existsByEmail("alice@example.com")).thenReturn(true);
+
+        CustomException e = assertThrows(CustomException.class,
+                () -> service.register("alice", "alice@example.com", "password"));
+
+        assertEquals("Email already exists!", e.getMessage());
+        assertEquals(400, e.getStatus());
+    }
+
+    @Test
+    void otherConstraintViolationsAreNotMistakenForDuplicates() {
+        assertThrows(DataIntegrityViolationException.class,
+                () -> service.register("alice", "alice@example.com", "password"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.User;
+import com.laioffer.backend.exception.CustomException;
+import com.laioffer.backend.repository.UserRepository;
+import com.laioffer.backend.security.UserDetailsServiceImpl;
+import com.laioffer.backend.storage.LocalBlobStorage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// The whole pipeline against the filesystem backend: storage and thumbnails on the worker, then the user's URL
+class AvatarServiceTests {
+
+    private static final long WAIT_MILLIS = 10_000;
+
+    @TempDir
+    Path root;
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserDetailsServiceImpl userDetailsService = mock(UserDetailsServiceImpl.class);
+    private final User user = User.builder().id(42L).username("avatar-test").imageUrl("http://localhost/old.jpg").build();
+    private ImageStorageService images;
+    private AvatarService service;
+
+    @BeforeEach
+    void setUp() {
+        images = spy(new ImageStorageService(new LocalBlobStorage(root.toString(), "http://localhost")));
+        service = new AvatarService(images, userRepository, userDetailsService, 1, 4, 40_000_000);
+        when(userRepository.findById(user.getId())).thenReturn(Optional.of(user));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void everySizeIsStoredBeforeTheUserPointsAtIt() throws IOException {
+        String url = service.submit(user, png(800, 600));
+        assertNotEquals(user.getImageUrl(), url);
+
+        verify(userRepository, timeout(WAIT_MILLIS)).updateImageUrl(user.getId(), url);
+        verify(userDetailsService, timeout(WAIT_MILLIS)).evict(user.getUsername());
+        String largest = images.keyOf(url);
+        String contentHash = largest.substring(AvatarService.AVATAR_PREFIX.length(), largest.lastIndexOf('/'));
+        assertEquals(AvatarService.key(contentHash, AvatarService.SIZES[0]), largest);
+        for (int size : AvatarService.SIZES) {
+            BufferedImage thumbnail = ImageIO.read(root.resolve(AvatarService.key(contentHash, size)).toFile());
+            assertNotNull(thumbnail, "missing " + size);
+            assertEquals(size, thumbnail.getWidth());
+            assertEquals(size, thumbnail.getHeight());
+        }
+        assertTrue(images.exists(ImageStorageService.IMAGE_PREFIX + contentHash));
+    }
+
+    @Test
+    void theRequestThreadLeavesStorageToTheWorker() throws IOException {
+        service.shutdown();
+
+        // With no worker left to run it, nothing may have been stored by submit itself
+        assertThrows(CustomException.class, () -> service.submit(user, png(64, 64)));
+        verify(images, never()).upload(any(), anyString());
+        verify(images, never()).exists(anyString());
+        verify(images, never()).store(anyString(), any(), anyString());
+    }
+
+    @Test
+    void aProcessedImageIsNotResizedAgain() throws IOException {
+        String url = service.submit(user, png(64, 64));
+        verify(userRepository, timeout(WAIT_MILLIS)).updateImageUrl(user.getId(), url);
+
+        assertEquals(url, service.submit(user, png(64, 64)));
+        verify(userRepository, timeout(WAIT_MILLIS).times(2)).updateImageUrl(user.getId(), url);
+        verify(images, times(AvatarService.SIZES.length)).store(anyString(), any(), anyString());
+    }
+
+    @Test
+    void notAnImageIsABadRequest() {
+        MockMultipartFile text = new MockMultipartFile("image", "avatar.png", "image/png", "hello".getBytes());
+
+        CustomException e = assertThrows(CustomException.class, () -> service.submit(user, text));
+
+        assertEquals(400, e.getStatus());
+        verifyNoInteractions(userRepository);
+    }
+
+    private static MockMultipartFile png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.ORANGE);
+        graphics.fillRect(0, 0, width / 2, height);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("image", "avatar.png", "image/png", out.toByteArray());
+    }
+}
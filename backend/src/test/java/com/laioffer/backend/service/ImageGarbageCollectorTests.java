@@ -0,0 +1,74 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.repository.UserRepository;
+import com.laioffer.backend.storage.LocalBlobStorage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Dedup and collection against the filesystem backend
+class ImageGarbageCollectorTests {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void sameContentIsStoredOnce() throws IOException {
+        ImageStorageService images = new ImageStorageService(new LocalBlobStorage(root.toString(), "http://localhost"));
+
+        ImageStorageService.StoredImage first = upload(images, new byte[]{1, 2, 3});
+        ImageStorageService.StoredImage second = upload(images, new byte[]{1, 2, 3});
+        ImageStorageService.StoredImage other = upload(images, new byte[]{4, 5, 6});
+
+        assertEquals(first, second);
+        assertNotEquals(first.url(), other.url());
+        // Two originals and no staged copies left behind
+        assertEquals(2, countFiles());
+    }
+
+    @Test
+    void removesOnlyUnreferencedGroups() throws IOException {
+        ImageStorageService images = new ImageStorageService(new LocalBlobStorage(root.toString(), "http://localhost"));
+        String keptHash = upload(images, new byte[]{7}).contentHash();
+        String kept = images.store(AvatarService.key(keptHash, 512), new byte[]{1}, "image/jpeg");
+        images.store(AvatarService.key(keptHash, 40), new byte[]{2}, "image/jpeg");
+        images.store(AvatarService.key("bbbb", 512), new byte[]{3}, "image/jpeg");
+        images.store(AvatarService.key("bbbb", 40), new byte[]{4}, "image/jpeg");
+        String orphan = upload(images, new byte[]{9}).url();
+
+        UserRepository users = mock(UserRepository.class);
+        when(users.findAllImageUrls()).thenReturn(List.of(kept, "https://example.com/external.jpg"));
+
+        int deleted = new ImageGarbageCollector(images, users, true, 0).collect();
+
+        assertEquals(3, deleted);
+        assertTrue(images.exists(AvatarService.key(keptHash, 40)));
+        // The original of a referenced avatar belongs to its group
+        assertTrue(images.exists(ImageStorageService.IMAGE_PREFIX + keptHash));
+        assertFalse(images.exists(AvatarService.key("bbbb", 512)));
+        assertFalse(images.exists(images.keyOf(orphan)));
+    }
+
+    private static ImageStorageService.StoredImage upload(ImageStorageService images, byte[] data) {
+        return images.upload(new ByteArrayInputStream(data), "image/png");
+    }
+
+    private long countFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.laioffer.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.entity.PointType;
+import com.laioffer.backend.entity.Trip;
+import com.laioffer.backend.entity.TripAccommodation;
+import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "travelplanner.second-level-cache.enabled=false"
+})
+@Transactional
+class ItineraryServiceTests {
+
+    @Autowired
+    private ItineraryService itineraryService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Test
+    void itineraryUsesFixedNumberOfStatements() throws Exception {
+        LocalDate start = LocalDate.of(2025, 5, 1);
+        Long tripId = createTrip(start, 7);
+
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ItineraryService.Itinerary itinerary = itineraryService.getItinerary(tripId).orElseThrow();
+        // Serialising touches every association the response exposes
+        objectMapper.writeValueAsString(itinerary);
+
+        assertEquals(3, statistics.getPrepareStatementCount());
+        assertEquals(8, itinerary.days().size());
+        assertEquals(4, itinerary.days().get(0).points().size());
+        assertEquals(1, itinerary.days().get(0).points().get(0).getVisitOrder());
+        assertNotNull(itinerary.days().get(0).accommodation());
+        assertNotNull(itinerary.days().get(6).accommodation());
+        // Check-out day is not a night
+        assertNull(itinerary.days().get(7).accommodation());
+    }
+
+    private Long createTrip(LocalDate start, int nights) {
+        User user = new User("itinerary-test", "itinerary-test@example.com", "secret", null);
+        entityManager.persist(user);
+
+        Trip trip = Trip.builder()
+                .user(user)
+                .name("Itinerary test")
+                .startDate(start)
+                .endDate(start.plusDays(nights))
+                .totalBudget(BigDecimal.TEN)
+                .destination("Paris")
+                .build();
+        entityManager.persist(trip);
+
+        for (int day = 0; day <= nights; day++) {
+            for (int order = 4; order >= 1; order--) {
+                entityManager.persist(TripPoint.builder()
+                        .trip(trip)
+                        .name("point " + day + "-" + order)
+                        .date(start.plusDays(day))
+                        .visitOrder(order)
+                        .pointType(PointType.VISIT)
+                        .location(geometryFactory.createPoint(new Coordinate(2.35 + order * 0.01, 48.85)))
+                        .build());
+            }
+        }
+
+        // Two hotels, each its own POI, to make an N+1 on TripAccommodation.poi visible
+        for (int stay = 0; stay < 2; stay++) {
+            POI hotel = POI.builder()
+                    .name("hotel " + stay)
+                    .location(geometryFactory.createPoint(new Coordinate(2.35, 48.86)))
+                    .poiType(POIType.ACCOMMODATION)
+                    .category("lodging")
+                    .isActive(true)
+                    .build();
+            entityManager.persist(hotel);
+            entityManager.persist(TripAccommodation.builder()
+                    .trip(trip)
+                    .poi(hotel)
+                    .checkInDate(start.plusDays(stay * 4L))
+                    .checkOutDate(start.plusDays(Math.min(nights, stay * 4L + 4)))
+                    .build());
+        }
+        return trip.getId();
+    }
+}
@@ -0,0 +1,115 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.geo.GeoUtils;
+import com.laioffer.backend.repository.POIRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Cell cache against a mocked repository that answers box queries from a generated list
+class NearbyPOICacheTests {
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @Test
+    void pannedQueriesAreServedFromCachedCellsAndMatchAnExactFilter() {
+        Random random = new Random(5);
+        List<POI> pois = new ArrayList<>();
+        for (long id = 1; id <= 3000; id++) {
+            pois.add(poi(id, 48.8566 + (random.nextDouble() - 0.5) * 0.2, 2.3522 + (random.nextDouble() - 0.5) * 0.3));
+        }
+        POIRepository repository = mock(POIRepository.class);
+        when(repository.findActiveInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+            double minLng = invocation.getArgument(0);
+            double minLat = invocation.getArgument(1);
+            double maxLng = invocation.getArgument(2);
+            double maxLat = invocation.getArgument(3);
+            return pois.stream()
+                    .filter(p -> p.getLocation().getX() >= minLng && p.getLocation().getX() <= maxLng
+                            && p.getLocation().getY() >= minLat && p.getLocation().getY() <= maxLat)
+                    .toList();
+        });
+        NearbyPOICache cache = new NearbyPOICache(repository, new SimpleMeterRegistry(), true, 100_000);
+
+        assertEquals(expected(pois, 48.8566, 2.3522, 800), ids(cache.findNearby(48.8566, 2.3522, 800)));
+
+        // A small pan stays inside the same cells: no database work at all
+        clearInvocations(repository);
+        assertEquals(expected(pois, 48.8569, 2.3518, 790), ids(cache.findNearby(48.8569, 2.3518, 790)));
+        verify(repository, never()).findActiveInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble());
+        verify(repository, never()).findNearbyPOIs(anyDouble(), anyDouble(), anyDouble());
+
+        // A new POI drops its cells; the next query reloads them and sees it
+        POI added = poi(9999, 48.8570, 2.3520);
+        pois.add(added);
+        cache.invalidate(48.8570, 2.3520);
+        assertEquals(expected(pois, 48.8569, 2.3518, 790), ids(cache.findNearby(48.8569, 2.3518, 790)));
+        verify(repository, atLeastOnce()).findActiveInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void aCellLoadedAcrossAnInvalidationIsNotCached() {
+        POIRepository repository = mock(POIRepository.class);
+        NearbyPOICache cache = new NearbyPOICache(repository, new SimpleMeterRegistry(), true, 100_000);
+        List<POI> pois = new ArrayList<>(List.of(poi(1, 48.8566, 2.3522)));
+        // The first load reads the old rows, then a POI is added and invalidated before the load finishes
+        when(repository.findActiveInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble())).thenAnswer(invocation -> {
+            List<POI> snapshot = List.copyOf(pois);
+            boolean holdsFirst = invocation.<Double>getArgument(0) <= 2.3522 && invocation.<Double>getArgument(2) >= 2.3522
+                    && invocation.<Double>getArgument(1) <= 48.8566 && invocation.<Double>getArgument(3) >= 48.8566;
+            if (holdsFirst && pois.size() == 1) {
+                pois.add(poi(2, 48.8567, 2.3523));
+                cache.invalidate(48.8567, 2.3523);
+            }
+            return snapshot;
+        });
+
+        assertEquals(Set.of(1L), ids(cache.findNearby(48.8566, 2.3522, 300)));
+        // Had the stale cell been kept, POI 2 would never show up
+        assertEquals(Set.of(1L, 2L), ids(cache.findNearby(48.8566, 2.3522, 300)));
+    }
+
+    private static Set<Long> expected(List<POI> pois, double lat, double lng, double radius) {
+        return pois.stream()
+                .filter(p -> GeoUtils.haversine(lat, lng, p.getLocation().getY(), p.getLocation().getX()) <= radius)
+                .map(POI::getId)
+                .collect(Collectors.toSet());
+    }
+
+    private static Set<Long> ids(List<POI> pois) {
+        Set<Long> ids = pois.stream().map(POI::getId).collect(Collectors.toSet());
+        // No POI may come back twice from two neighbouring cells
+        assertEquals(pois.size(), ids.size());
+        return ids;
+    }
+
+    private POI poi(long id, double lat, double lng) {
+        return POI.builder()
+                .id(id)
+                .name("poi-" + id)
+                .location(geometryFactory.createPoint(new Coordinate(lng, lat)))
+                .poiType(POIType.ATTRACTION)
+                .category("test")
+                .isActive(true)
+                .build();
+    }
+}
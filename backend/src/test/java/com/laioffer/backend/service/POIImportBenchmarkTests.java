@@ -0,0 +1,91 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.POI;
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.repository.POIRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Rows per second through the COPY pipeline vs JPA saveAll, which inserts one row per statement with IDENTITY ids
+@Tag("benchmark")
+@SpringBootTest
+class POIImportBenchmarkTests {
+
+    private static final String CATEGORY = "import-benchmark";
+    private static final int COPY_ROWS = 200_000;
+    private static final int JPA_ROWS = 5_000;
+
+    @Autowired
+    private POIImportService poiImportService;
+
+    @Autowired
+    private POIRepository poiRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM poi WHERE category = ?", CATEGORY);
+    }
+
+    @Test
+    void copyImportVersusSaveAll() throws Exception {
+        Random random = new Random(1);
+        StringBuilder csv = new StringBuilder("name,latitude,longitude,poi_type,category,notes\n");
+        for (int i = 0; i < COPY_ROWS; i++) {
+            csv.append("\"POI ").append(i).append("\",")
+                    .append(48.8 + random.nextDouble() * 0.2).append(',')
+                    .append(2.2 + random.nextDouble() * 0.3).append(",ATTRACTION,")
+                    .append(CATEGORY).append(",\"generated\"\n");
+        }
+        byte[] data = csv.toString().getBytes(StandardCharsets.UTF_8);
+
+        POIImportService.ImportReport report = poiImportService.importPOIs(new ByteArrayInputStream(data),
+                POIImportService.Format.CSV);
+
+        List<POI> pois = new ArrayList<>();
+        for (int i = 0; i < JPA_ROWS; i++) {
+            POI poi = new POI();
+            poi.setName("JPA " + i);
+            poi.setLocation(geometryFactory.createPoint(
+                    new Coordinate(2.2 + random.nextDouble() * 0.3, 48.8 + random.nextDouble() * 0.2)));
+            poi.setPoiType(POIType.ATTRACTION);
+            poi.setCategory(CATEGORY);
+            poi.setActive(true);
+            pois.add(poi);
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> poiRepository.saveAll(pois));
+        double jpaRowsPerSecond = JPA_ROWS * 1e9 / (System.nanoTime() - start);
+
+        System.out.printf("COPY import: %d rows in %d ms (%.0f rows/s), saveAll: %d rows (%.0f rows/s), %.1fx%n",
+                report.accepted(), report.elapsedMillis(), report.rowsPerSecond(),
+                JPA_ROWS, jpaRowsPerSecond, report.rowsPerSecond() / jpaRowsPerSecond);
+        assertEquals(COPY_ROWS, report.accepted());
+        assertEquals(0, report.rejected());
+        assertTrue(report.rowsPerSecond() > jpaRowsPerSecond);
+    }
+}
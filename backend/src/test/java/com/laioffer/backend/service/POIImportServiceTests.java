@@ -0,0 +1,163 @@
+package com.laioffer.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.laioffer.backend.repository.POIRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Parsing, batching and the transaction around COPY, against a mocked connection that records what was copied
+class POIImportServiceTests {
+
+    private final Connection connection = mock(Connection.class);
+    private final CopyManager copyManager = mock(CopyManager.class);
+    private final SessionFactory sessionFactory = mock(SessionFactory.class, RETURNS_DEEP_STUBS);
+    private final POIIndexService poiIndexService = mock(POIIndexService.class);
+    private final NearbyPOICache nearbyPOICache = mock(NearbyPOICache.class);
+    private final List<String> copied = new CopyOnWriteArrayList<>();
+    private POIImportService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString(), any(InputStream.class))).thenAnswer(invocation -> {
+            copied.add(new String(invocation.<InputStream>getArgument(1).readAllBytes(), StandardCharsets.UTF_8));
+            return 0L;
+        });
+        EntityManagerFactory entityManagerFactory = mock(EntityManagerFactory.class);
+        when(entityManagerFactory.unwrap(SessionFactory.class)).thenReturn(sessionFactory);
+
+        service = new POIImportService(dataSource, entityManagerFactory, new ObjectMapper(),
+                poiIndexService, nearbyPOICache, 2, 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void csvRowsAreCopiedInOneTransactionAndBadRowsReported() throws Exception {
+        String csv = """
+                name,latitude,longitude,poi_type,category,notes
+                Louvre,48.8606,2.3376,ATTRACTION,museum,
+                "Cafe, ""Le"" Nord",48.88,2.35,restaurant,cafe,open late
+                Nowhere,100,2.35,ATTRACTION,museum,
+
+                Eiffel Tower,48.8584,2.2945,ATTRACTION,landmark,
+                Orsay,48.86,2.3266,MUSEUM,museum,
+                """;
+
+        POIImportService.ImportReport report = service.importPOIs(stream(csv), POIImportService.Format.CSV);
+
+        assertEquals(3, report.accepted());
+        assertEquals(2, report.rejected());
+        assertEquals(List.of(4L, 7L), report.rejections().stream().map(POIImportService.Rejection::record).sorted().toList());
+        String rows = String.join("", copied);
+        assertTrue(rows.contains("\"Louvre\",SRID=4326;POINT(2.3376 48.8606),ATTRACTION,\"museum\",,true\n"), rows);
+        assertTrue(rows.contains("\"Cafe, \"\"Le\"\" Nord\",SRID=4326;POINT(2.35 48.88),RESTAURANT,\"cafe\",\"open late\",true\n"), rows);
+        verify(connection).setAutoCommit(false);
+        verify(connection).commit();
+        verify(connection, never()).rollback();
+        verify(sessionFactory.getCache()).evictQueryRegion(POIRepository.ACTIVE_QUERY_REGION);
+    }
+
+    @Test
+    void geoJsonFeaturesNeedAPointGeometry() throws Exception {
+        String geoJson = """
+                {"type": "FeatureCollection", "features": [
+                  {"type": "Feature", "geometry": {"type": "Point", "coordinates": [2.3376, 48.8606]},
+                   "properties": {"name": "Louvre", "poiType": "ATTRACTION", "category": "museum"}},
+                  {"type": "Feature", "geometry": {"type": "LineString", "coordinates": [[2.3, 48.8], [2.4, 48.9]]},
+                   "properties": {"name": "Seine walk", "poiType": "ATTRACTION", "category": "walk"}},
+                  {"type": "Feature", "geometry": {"type": "Point", "coordinates": [2.35, 48.88]},
+                   "properties": {"name": "Le Nord", "poi_type": "RESTAURANT", "category": "cafe", "notes": "late"}}
+                ]}
+                """;
+
+        POIImportService.ImportReport report = service.importPOIs(stream(geoJson), POIImportService.Format.GEOJSON);
+
+        assertEquals(2, report.accepted());
+        assertEquals(1, report.rejected());
+        assertEquals("geometry must be a Point", report.rejections().get(0).reason());
+        assertTrue(String.join("", copied).contains("\"Le Nord\",SRID=4326;POINT(2.35 48.88),RESTAURANT,\"cafe\",\"late\",true\n"));
+        verify(connection).commit();
+    }
+
+    @Test
+    void aFailedBatchRollsBackTheWholeImport() throws Exception {
+        doReturn(2L).doThrow(new SQLException("disk full"))
+                .when(copyManager).copyIn(anyString(), any(InputStream.class));
+        StringBuilder csv = new StringBuilder("name,latitude,longitude,poi_type,category\n");
+        for (int i = 0; i < 20; i++) {
+            csv.append("POI ").append(i).append(",48.85,2.35,ATTRACTION,museum\n");
+        }
+
+        IOException e = assertThrows(IOException.class,
+                () -> service.importPOIs(stream(csv.toString()), POIImportService.Format.CSV));
+
+        assertTrue(e.getMessage().contains("disk full"), e.getMessage());
+        verify(connection).rollback();
+        verify(connection, never()).commit();
+        verify(sessionFactory.getCache()).evictQueryRegion(POIRepository.ACTIVE_QUERY_REGION);
+        verify(nearbyPOICache).invalidateAll();
+        verify(poiIndexService).reload();
+    }
+
+    @Test
+    void overLongFieldsRejectOnlyTheirRow() throws Exception {
+        String csv = "name,latitude,longitude,poi_type,category\n"
+                + "Louvre,48.8606,2.3376,ATTRACTION,museum\n"
+                + "x".repeat(256) + ",48.85,2.35,ATTRACTION,museum\n"
+                + "Orsay,48.86,2.3266,ATTRACTION," + "y".repeat(101) + "\n"
+                + "é".repeat(255) + ",48.87,2.34,ATTRACTION,museum\n";
+
+        POIImportService.ImportReport report = service.importPOIs(stream(csv), POIImportService.Format.CSV);
+
+        assertEquals(2, report.accepted());
+        assertEquals(List.of(3L, 4L), report.rejections().stream().map(POIImportService.Rejection::record).sorted().toList());
+        assertTrue(report.rejections().stream().allMatch(rejection -> rejection.reason().contains("longer than")));
+        verify(connection).commit();
+        verify(connection, never()).rollback();
+    }
+
+    @Test
+    void quotedCsvFieldsKeepCommasAndQuotes() {
+        assertEquals(List.of("a", "b, c", "say \"hi\"", ""), POIImportService.splitCsvLine("a,\"b, c\",\"say \"\"hi\"\"\","));
+        assertThrows(IllegalArgumentException.class, () -> POIImportService.splitCsvLine("a,\"open"));
+    }
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
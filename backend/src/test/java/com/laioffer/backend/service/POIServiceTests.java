@@ -0,0 +1,90 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.entity.POIType;
+import com.laioffer.backend.repository.POIRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// The database fallback of getClusters, while the in-memory index is not ready
+class POIServiceTests {
+
+    private static final POIIndexService.ClusterSettings SETTINGS = new POIIndexService.ClusterSettings(0, 16, 60, 512, 3);
+
+    private final POIRepository poiRepository = mock(POIRepository.class);
+    private final POIIndexService poiIndexService = mock(POIIndexService.class);
+    private final POIService service = new POIService(poiRepository, poiIndexService, mock(NearbyPOICache.class));
+
+    private record Cell(Long getCount, Double getLng, Double getLat, Long getId, String getTypes)
+            implements POIRepository.GridCluster {
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(poiIndexService.isReady()).thenReturn(false);
+        when(poiIndexService.getClusterSettings()).thenReturn(SETTINGS);
+    }
+
+    @Test
+    void groupsFromTheDatabaseBecomeClustersAndSinglePOIs() {
+        when(poiRepository.clusterActiveInBox(2.2, 48.8, 2.5, 48.9, SETTINGS.cellSize(12), 4)).thenReturn(List.of(
+                new Cell(5L, 2.35, 48.85, 11L, "ATTRACTION:3,RESTAURANT:2"),
+                new Cell(1L, 2.29, 48.86, 42L, "ACCOMMODATION:1")));
+
+        POIService.ClusterResponse response = service.getClusters(2.2, 48.8, 2.5, 48.9, 12);
+
+        assertEquals(12, response.zoom());
+        POIService.ClusterView cluster = response.clusters().get(0);
+        assertEquals(5, cluster.count());
+        assertNull(cluster.poiId());
+        assertEquals(Map.of(POIType.ATTRACTION, 3, POIType.RESTAURANT, 2), cluster.types());
+        POIService.ClusterView single = response.clusters().get(1);
+        assertEquals(42L, single.poiId());
+        assertEquals(48.86, single.lat());
+        verify(poiRepository, never()).findActiveInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble());
+    }
+
+    @Test
+    void tooManyCellsRetryOneZoomLower() {
+        when(poiRepository.clusterActiveInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(),
+                eq(SETTINGS.cellSize(12)), anyInt())).thenReturn(cells(4));
+        when(poiRepository.clusterActiveInBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(),
+                eq(SETTINGS.cellSize(11)), anyInt())).thenReturn(cells(2));
+
+        POIService.ClusterResponse response = service.getClusters(2.2, 48.8, 2.5, 48.9, 12);
+
+        assertEquals(11, response.zoom());
+        assertEquals(2, response.clusters().size());
+    }
+
+    @Test
+    void anAntimeridianBoxIsQueriedInTwoHalves() {
+        when(poiRepository.clusterActiveInBox(eq(170.0), anyDouble(), eq(180.0), anyDouble(), anyDouble(), anyInt()))
+                .thenReturn(cells(1));
+        when(poiRepository.clusterActiveInBox(eq(-180.0), anyDouble(), eq(-170.0), anyDouble(), anyDouble(), anyInt()))
+                .thenReturn(cells(1));
+
+        assertEquals(2, service.getClusters(170.0, -20.0, -170.0, -10.0, 5).clusters().size());
+    }
+
+    private static List<POIRepository.GridCluster> cells(int n) {
+        List<POIRepository.GridCluster> cells = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            cells.add(new Cell(2L, 2.3 + i * 0.01, 48.85, (long) i, "ATTRACTION:2"));
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,116 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.controller.TripPointBatchRequestBody;
+import com.laioffer.backend.controller.TripPointRequestBody;
+import com.laioffer.backend.entity.PointType;
+import com.laioffer.backend.entity.Trip;
+import com.laioffer.backend.entity.User;
+import com.laioffer.backend.repository.TripPointRepository;
+import com.laioffer.backend.repository.TripRepository;
+import com.laioffer.backend.repository.UserRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 500 single createTripPoint calls vs one applyBatch with the same 500 points
+@Tag("benchmark")
+@SpringBootTest
+class TripPointBatchBenchmarkTests {
+
+    private static final int POINTS = 500;
+
+    @Autowired
+    private TripPointService tripPointService;
+
+    @Autowired
+    private TripPointRepository tripPointRepository;
+
+    @Autowired
+    private TripRepository tripRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private User user;
+    private Trip trip;
+
+    @BeforeEach
+    void setUp() {
+        user = userRepository.save(new User("batch-benchmark", "batch-benchmark@example.com", "secret", null));
+        trip = tripRepository.save(Trip.builder()
+                .user(user)
+                .name("Batch benchmark")
+                .startDate(LocalDate.of(2025, 5, 1))
+                .endDate(LocalDate.of(2025, 5, 10))
+                .totalBudget(BigDecimal.TEN)
+                .destination("Paris")
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        transactionTemplate.executeWithoutResult(status -> {
+            tripPointRepository.deleteByTripId(trip.getId());
+            tripRepository.deleteById(trip.getId());
+            userRepository.deleteById(user.getId());
+        });
+    }
+
+    @Test
+    void singleCallsVersusOneBatch() {
+        List<TripPointRequestBody> bodies = new ArrayList<>();
+        for (int i = 0; i < POINTS; i++) {
+            bodies.add(new TripPointRequestBody(
+                    trip.getId(),
+                    "point " + i,
+                    LocalDate.of(2025, 5, 1).plusDays(i % 10),
+                    i / 10 + 1,
+                    PointType.VISIT,
+                    60,
+                    LocalTime.of(9, 0),
+                    new TripPointRequestBody.LocationCoordinate(2.35 + i * 1e-4, 48.85),
+                    "somewhere",
+                    null));
+        }
+
+        // Warm up both paths once so class loading and connection setup don't count
+        tripPointService.createTripPoint(bodies.get(0));
+        tripPointService.applyBatch(batchOf(bodies.subList(0, 1)));
+
+        long start = System.nanoTime();
+        for (TripPointRequestBody body : bodies) {
+            tripPointService.createTripPoint(body);
+        }
+        long singleNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        tripPointService.applyBatch(batchOf(bodies));
+        long batchNanos = System.nanoTime() - start;
+
+        System.out.printf("%d single calls: %d ms, one batch call: %d ms (%.1fx)%n",
+                POINTS, singleNanos / 1_000_000, batchNanos / 1_000_000, (double) singleNanos / batchNanos);
+        assertEquals(2 * POINTS + 2, tripPointRepository.findByTripId(trip.getId()).size());
+    }
+
+    private TripPointBatchRequestBody batchOf(List<TripPointRequestBody> bodies) {
+        List<TripPointBatchRequestBody.Upsert> upserts = bodies.stream()
+                .map(body -> new TripPointBatchRequestBody.Upsert(null, body))
+                .toList();
+        return new TripPointBatchRequestBody(trip.getId(), upserts, List.of(), List.of());
+    }
+}
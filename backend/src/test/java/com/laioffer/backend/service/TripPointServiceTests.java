@@ -0,0 +1,88 @@
+package com.laioffer.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.laioffer.backend.controller.TripPointBatchRequestBody;
+import com.laioffer.backend.controller.TripPointRequestBody;
+import com.laioffer.backend.entity.PointType;
+import com.laioffer.backend.entity.Trip;
+import com.laioffer.backend.entity.TripPoint;
+import com.laioffer.backend.exception.CustomException;
+import com.laioffer.backend.repository.TripPointRepository;
+import com.laioffer.backend.repository.TripRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+// Request checks that must answer 400 rather than fail halfway with a 500
+class TripPointServiceTests {
+
+    private final TripPointRepository tripPointRepository = mock(TripPointRepository.class);
+    private final TripRepository tripRepository = mock(TripRepository.class);
+    private final TripPointService service = new TripPointService(tripPointRepository, tripRepository,
+            mock(PlatformTransactionManager.class), new ObjectMapper(), mock(EntityManager.class),
+            mock(DayScheduleService.class));
+
+    @Test
+    void malformedCursorsAreBadRequests() {
+        List<String> cursors = List.of("not a cursor!", encode("1:2"), encode("trip:1:2"), encode("1:99999999999:2"));
+        for (String cursor : cursors) {
+            CustomException e = assertThrows(CustomException.class,
+                    () -> service.getTripPointsByDay(LocalDate.of(2025, 5, 1), cursor, 20));
+            assertEquals(400, e.getStatus(), cursor);
+        }
+        verifyNoInteractions(tripPointRepository);
+    }
+
+    @Test
+    void incompleteBatchEntriesAreBadRequests() {
+        TripPointRequestBody point = new TripPointRequestBody(1L, "Louvre", LocalDate.of(2025, 5, 1), 1,
+                PointType.VISIT, null, null, null, null, null);
+        List<TripPointBatchRequestBody> batches = List.of(
+                new TripPointBatchRequestBody(1L, List.of(new TripPointBatchRequestBody.Upsert(null, null)), null, null),
+                new TripPointBatchRequestBody(1L, List.of(new TripPointBatchRequestBody.Upsert(null, point)),
+                        Arrays.asList(5L, null), null),
+                new TripPointBatchRequestBody(1L, null, null,
+                        List.of(new TripPointBatchRequestBody.Reorder(null, null, 2))),
+                new TripPointBatchRequestBody(1L, null, null,
+                        List.of(new TripPointBatchRequestBody.Reorder(7L, null, null))),
+                new TripPointBatchRequestBody(1L, null, null,
+                        List.of(new TripPointBatchRequestBody.Reorder(7L, null, 0))));
+        for (TripPointBatchRequestBody batch : batches) {
+            CustomException e = assertThrows(CustomException.class, () -> service.applyBatch(batch));
+            assertEquals(400, e.getStatus(), e.getMessage());
+        }
+        verifyNoInteractions(tripPointRepository, tripRepository);
+    }
+
+    @Test
+    void pointsOfOtherTripsAreBadRequests() {
+        Trip trip = Trip.builder().id(1L).build();
+        Trip other = Trip.builder().id(2L).build();
+        when(tripRepository.findById(1L)).thenReturn(Optional.of(trip));
+        when(tripPointRepository.findAllById(Set.of(7L)))
+                .thenReturn(List.of(TripPoint.builder().id(7L).trip(other).build()));
+
+        CustomException e = assertThrows(CustomException.class, () -> service.applyBatch(new TripPointBatchRequestBody(
+                1L, null, null, List.of(new TripPointBatchRequestBody.Reorder(7L, null, 2)))));
+
+        assertEquals(400, e.getStatus());
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
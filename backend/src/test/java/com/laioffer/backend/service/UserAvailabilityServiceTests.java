@@ -0,0 +1,76 @@
+package com.laioffer.backend.service;
+
+import com.laioffer.backend.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+// Filter rebuilds against a mocked repository: what the filter answers alone and what still needs a query
+class UserAvailabilityServiceTests {
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserAvailabilityService service = new UserAvailabilityService(userRepository,
+            new SimpleMeterRegistry(), true, 1_000, 0.0001);
+
+    @Test
+    void beforeTheFirstBuildEveryLookupIsAQuery() {
+        when(userRepository.existsByUsername("alice")).thenReturn(true);
+
+        assertTrue(service.isUsernameTaken("alice"));
+        assertFalse(service.isUsernameTaken("bob"));
+        verify(userRepository).existsByUsername("bob");
+    }
+
+    @Test
+    void aRebuildAnswersFreeValuesWithoutAQuery() throws InterruptedException {
+        when(userRepository.findAllUsernamesAndEmails())
+                .thenReturn(List.<Object[]>of(new Object[]{"alice", "alice@example.com"}));
+        when(userRepository.existsByUsername("alice")).thenReturn(true);
+        when(userRepository.existsByEmail("alice@example.com")).thenReturn(true);
+
+        rebuild();
+
+        assertFalse(service.isUsernameTaken("bob"));
+        assertFalse(service.isEmailTaken("bob@example.com"));
+        verify(userRepository, never()).existsByUsername("bob");
+        verify(userRepository, never()).existsByEmail("bob@example.com");
+        assertTrue(service.isUsernameTaken("alice"));
+        assertTrue(service.isEmailTaken("alice@example.com"));
+    }
+
+    @Test
+    void savesDuringTheScanAreReplayedIntoTheNewFilters() throws InterruptedException {
+        when(userRepository.findAllUsernamesAndEmails()).thenAnswer(invocation -> {
+            // Committed while the scan runs, so missing from its result
+            service.onSaved("carol", "carol@example.com");
+            return List.<Object[]>of(new Object[]{"alice", "alice@example.com"});
+        });
+        when(userRepository.existsByUsername("carol")).thenReturn(true);
+        when(userRepository.existsByEmail("carol@example.com")).thenReturn(true);
+
+        rebuild();
+        service.onSaved("dave", "dave@example.com");
+        when(userRepository.existsByUsername("dave")).thenReturn(true);
+
+        assertTrue(service.isUsernameTaken("carol"));
+        assertTrue(service.isEmailTaken("carol@example.com"));
+        assertTrue(service.isUsernameTaken("dave"));
+    }
+
+    private void rebuild() throws InterruptedException {
+        service.reload();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!service.isReady()) {
+            assertTrue(System.currentTimeMillis() < deadline, "filters not built");
+            Thread.sleep(5);
+        }
+    }
+}
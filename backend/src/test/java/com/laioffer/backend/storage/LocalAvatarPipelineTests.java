@@ -0,0 +1,73 @@
+package com.laioffer.backend.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Resizing and storing avatars against the filesystem backend, no GCS involved
+class LocalAvatarPipelineTests {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void storesSquareThumbnailsUnderTheReturnedUrl() throws IOException {
+        LocalBlobStorage storage = new LocalBlobStorage(root.toString(), "http://localhost:8080");
+        BufferedImage source = ImageResizer.decode(png(1200, 800), 10_000_000);
+
+        for (int size : new int[]{512, 40}) {
+            byte[] jpeg = ImageResizer.encodeJpeg(ImageResizer.squareThumbnail(source, size), 0.85f);
+            String url = storage.put("avatars/test/" + size + ".jpg", new ByteArrayInputStream(jpeg), "image/jpeg");
+
+            assertEquals("http://localhost:8080/files/avatars/test/" + size + ".jpg", url);
+            Path file = root.resolve("avatars/test/" + size + ".jpg");
+            assertTrue(Files.exists(file));
+            BufferedImage stored = ImageIO.read(file.toFile());
+            assertEquals(size, stored.getWidth());
+            assertEquals(size, stored.getHeight());
+        }
+    }
+
+    @Test
+    void doesNotUpscaleSmallImages() throws IOException {
+        BufferedImage source = ImageResizer.decode(png(30, 60), 10_000_000);
+        assertEquals(30, ImageResizer.squareThumbnail(source, 128).getWidth());
+    }
+
+    @Test
+    void rejectsOversizedAndNonImageUploads() throws IOException {
+        byte[] large = png(400, 400);
+        assertThrows(IOException.class, () -> ImageResizer.probe(large, 100_000));
+        assertThrows(IOException.class, () -> ImageResizer.probe("not an image".getBytes(), 100_000));
+    }
+
+    @Test
+    void rejectsKeysOutsideTheRoot() {
+        LocalBlobStorage storage = new LocalBlobStorage(root.toString(), "http://localhost:8080");
+        assertThrows(IllegalArgumentException.class,
+                () -> storage.put("../escape.jpg", new ByteArrayInputStream(new byte[1]), "image/jpeg"));
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, 0xff000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}